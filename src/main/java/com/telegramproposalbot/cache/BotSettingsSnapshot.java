@@ -0,0 +1,47 @@
+package com.telegramproposalbot.cache;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Неизменяемый снимок настроек бота с номером версии.
+ * Снимок заменяется целиком, поэтому читатели всегда видят согласованный набор настроек.
+ */
+public final class BotSettingsSnapshot {
+
+    private final Long botId;
+    private final long version;
+    private final Map<String, String> values;
+
+    public BotSettingsSnapshot(Long botId, long version, Map<String, String> values) {
+        this.botId = botId;
+        this.version = version;
+        this.values = Collections.unmodifiableMap(new HashMap<>(values));
+    }
+
+    /**
+     * Создает новый снимок с измененными настройками и следующей версией
+     */
+    public BotSettingsSnapshot with(Map<String, String> changes, long newVersion) {
+        Map<String, String> merged = new HashMap<>(values);
+        merged.putAll(changes);
+        return new BotSettingsSnapshot(botId, newVersion, merged);
+    }
+
+    public Long getBotId() {
+        return botId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String get(String key, String defaultValue) {
+        return values.getOrDefault(key, defaultValue);
+    }
+
+    public Map<String, String> asMap() {
+        return values;
+    }
+}
@@ -0,0 +1,49 @@
+package com.telegramproposalbot.cache;
+
+/**
+ * Неизменяемые сведения о канале бота, достаточные для публикации без обращения к БД и API
+ */
+public final class ChannelInfo {
+
+    // ID канала еще не получен из Telegram
+    public static final long UNRESOLVED_ID = -1L;
+
+    private final long chatId;
+    private final String username;
+    private final String title;
+    private final boolean canPostMessages;
+
+    public ChannelInfo(long chatId, String username, String title, boolean canPostMessages) {
+        this.chatId = chatId;
+        this.username = username;
+        this.title = title;
+        this.canPostMessages = canPostMessages;
+    }
+
+    public long getChatId() {
+        return chatId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public boolean canPostMessages() {
+        return canPostMessages;
+    }
+
+    public boolean isResolved() {
+        return chatId != UNRESOLVED_ID;
+    }
+
+    /**
+     * Идентификатор чата для методов Bot API: числовой ID или @username, если ID еще не получен
+     */
+    public String getTargetChatId() {
+        return isResolved() ? Long.toString(chatId) : "@" + username;
+    }
+}
@@ -0,0 +1,121 @@
+package com.telegramproposalbot.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Отпечаток содержимого предложения для поиска повторов.
+ * Медиа сравнивается по file_unique_id, который Telegram сохраняет для одного и того же файла
+ * у всех пользователей. Текст сравнивается по 64-битному SimHash нормализованных слов и пар слов:
+ * у почти одинаковых текстов отпечатки отличаются в нескольких битах.
+ */
+public final class ContentFingerprint {
+
+    // Короткие тексты сравниваются только точно: пара слов разницы заметно меняет отпечаток
+    private static final int MIN_TOKENS_FOR_NEAR_MATCH = 5;
+
+    private final String fileUniqueId;
+    private final long simHash;
+    private final int tokenCount;
+
+    private ContentFingerprint(String fileUniqueId, long simHash, int tokenCount) {
+        this.fileUniqueId = fileUniqueId;
+        this.simHash = simHash;
+        this.tokenCount = tokenCount;
+    }
+
+    /**
+     * Строит отпечаток медиа или текста
+     *
+     * @return null, если сравнивать нечего
+     */
+    public static ContentFingerprint of(String fileUniqueId, String text) {
+        if (fileUniqueId != null && !fileUniqueId.isEmpty()) {
+            return new ContentFingerprint(fileUniqueId, 0L, 0);
+        }
+        if (text == null) {
+            return null;
+        }
+
+        List<String> tokens = tokenize(text);
+        if (tokens.isEmpty()) {
+            return null;
+        }
+        return new ContentFingerprint(null, simHash(tokens), tokens.size());
+    }
+
+    public boolean isMedia() {
+        return fileUniqueId != null;
+    }
+
+    public String getFileUniqueId() {
+        return fileUniqueId;
+    }
+
+    public long getSimHash() {
+        return simHash;
+    }
+
+    /**
+     * Допустимое число различающихся бит для этого текста
+     */
+    public int allowedDistance(int maxDistance) {
+        return tokenCount >= MIN_TOKENS_FOR_NEAR_MATCH ? maxDistance : 0;
+    }
+
+    /**
+     * Нормализует текст: нижний регистр, только буквы и цифры, ё -> е
+     */
+    static List<String> tokenize(String text) {
+        String normalized = text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+        List<String> tokens = new ArrayList<>();
+        for (String token : normalized.split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * SimHash по словам и парам соседних слов: каждый признак голосует за биты своего хэша
+     */
+    static long simHash(List<String> tokens) {
+        int[] votes = new int[64];
+        for (int i = 0; i < tokens.size(); i++) {
+            vote(votes, hash(tokens.get(i)));
+            if (i > 0) {
+                vote(votes, hash(tokens.get(i - 1) + ' ' + tokens.get(i)));
+            }
+        }
+
+        long result = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (votes[bit] > 0) {
+                result |= 1L << bit;
+            }
+        }
+        return result;
+    }
+
+    private static void vote(int[] votes, long hash) {
+        for (int bit = 0; bit < 64; bit++) {
+            votes[bit] += ((hash >>> bit) & 1L) != 0 ? 1 : -1;
+        }
+    }
+
+    /**
+     * 64-битный FNV-1a с перемешиванием SplitMix64, чтобы биты хэша были независимы
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+}
@@ -0,0 +1,114 @@
+package com.telegramproposalbot.cache;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Ограниченный индекс отпечатков недавних предложений одного бота.
+ * Отпечатки текстов хранятся в кольцевом буфере примитивов и проверяются полным перебором
+ * по расстоянию Хэмминга: на сотнях записей это быстрее любой структуры с упаковкой.
+ * Медиа индексируются по file_unique_id. При переполнении вытесняются самые старые записи.
+ *
+ * @param <V> ссылка на предложение
+ */
+public class FingerprintIndex<V> {
+
+    private final int capacity;
+
+    // Кольцевой буфер текстовых отпечатков, растет до capacity по мере заполнения
+    private long[] hashes;
+    private Object[] values;
+    private long[] addedAt;
+    private int size;
+    private int next;
+
+    // Медиа: file_unique_id -> предложение и время добавления
+    private final Map<String, Entry<V>> media = new HashMap<>();
+    private final String[] mediaOrder;
+    private int mediaNext;
+
+    public FingerprintIndex(int capacity) {
+        this.capacity = capacity;
+        this.mediaOrder = new String[capacity];
+        int initial = Math.min(16, capacity);
+        this.hashes = new long[initial];
+        this.values = new Object[initial];
+        this.addedAt = new long[initial];
+    }
+
+    /**
+     * Находит предложение с тем же или почти тем же содержимым, добавленное после notBefore
+     *
+     * @return предложение или null
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized V find(ContentFingerprint fingerprint, int maxDistance, long notBefore) {
+        if (fingerprint.isMedia()) {
+            Entry<V> entry = media.get(fingerprint.getFileUniqueId());
+            return entry != null && entry.addedAt() >= notBefore ? entry.value() : null;
+        }
+
+        int allowed = fingerprint.allowedDistance(maxDistance);
+        Object best = null;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            if (addedAt[i] < notBefore) {
+                continue;
+            }
+            int distance = Long.bitCount(hashes[i] ^ fingerprint.getSimHash());
+            if (distance <= allowed && distance < bestDistance) {
+                best = values[i];
+                bestDistance = distance;
+            }
+        }
+        return (V) best;
+    }
+
+    /**
+     * Добавляет отпечаток предложения
+     */
+    public synchronized void add(ContentFingerprint fingerprint, V value, long nowMillis) {
+        if (fingerprint.isMedia()) {
+            String evicted = mediaOrder[mediaNext];
+            if (evicted != null) {
+                media.remove(evicted);
+            }
+            mediaOrder[mediaNext] = fingerprint.getFileUniqueId();
+            mediaNext = (mediaNext + 1) % capacity;
+            media.put(fingerprint.getFileUniqueId(), new Entry<>(value, nowMillis));
+            return;
+        }
+
+        if (size == hashes.length && size < capacity) {
+            int grown = Math.min(capacity, size * 2);
+            hashes = Arrays.copyOf(hashes, grown);
+            values = Arrays.copyOf(values, grown);
+            addedAt = Arrays.copyOf(addedAt, grown);
+            next = size;
+        }
+        hashes[next] = fingerprint.getSimHash();
+        values[next] = value;
+        addedAt[next] = nowMillis;
+        next = (next + 1) % hashes.length;
+        if (size < hashes.length) {
+            size++;
+        }
+    }
+
+    /**
+     * Удаляет отпечатки предложения, например после решения по нему
+     */
+    public synchronized void remove(V value) {
+        for (int i = 0; i < size; i++) {
+            if (value.equals(values[i])) {
+                // Запись остается в буфере, но больше не находится
+                addedAt[i] = Long.MIN_VALUE;
+            }
+        }
+        media.values().removeIf(entry -> value.equals(entry.value()));
+    }
+
+    private record Entry<V>(V value, long addedAt) {
+    }
+}
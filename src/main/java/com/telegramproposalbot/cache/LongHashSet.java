@@ -0,0 +1,69 @@
+package com.telegramproposalbot.cache;
+
+import java.util.Arrays;
+
+/**
+ * Неизменяемое множество примитивных long с открытой адресацией.
+ * Проверка принадлежности выполняется без упаковки значений и без аллокаций.
+ */
+public final class LongHashSet {
+
+    private static final LongHashSet EMPTY = new LongHashSet(new long[0]);
+
+    // Значения в порядке добавления
+    private final long[] values;
+    private final long[] table;
+    private final boolean[] used;
+    private final int mask;
+
+    private LongHashSet(long[] source) {
+        int capacity = Integer.highestOneBit(Math.max(2, source.length * 2 - 1)) << 1;
+        this.table = new long[capacity];
+        this.used = new boolean[capacity];
+        this.mask = capacity - 1;
+
+        long[] unique = new long[source.length];
+        int size = 0;
+        for (long value : source) {
+            int slot = slotOf(value);
+            while (used[slot] && table[slot] != value) {
+                slot = (slot + 1) & mask;
+            }
+            if (!used[slot]) {
+                used[slot] = true;
+                table[slot] = value;
+                unique[size++] = value;
+            }
+        }
+        this.values = size == unique.length ? unique : Arrays.copyOf(unique, size);
+    }
+
+    public static LongHashSet of(long[] values) {
+        return values.length == 0 ? EMPTY : new LongHashSet(values);
+    }
+
+    public boolean contains(long value) {
+        int slot = slotOf(value);
+        while (used[slot]) {
+            if (table[slot] == value) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public long[] toArray() {
+        return values.clone();
+    }
+
+    private int slotOf(long value) {
+        // Перемешивание битов, чтобы близкие ID не попадали в соседние ячейки
+        long hash = value * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,114 @@
+package com.telegramproposalbot.cache;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Кэш членства пользователей в списке бота (администраторы, заблокированные).
+ * Для каждого бота список загружается из БД целиком одним запросом и хранится
+ * в виде неизменяемого LongHashSet. При изменении списка снимок бота сбрасывается.
+ * Снимок помнит версию списков бота в БД на момент загрузки: изменения, сделанные
+ * на других экземплярах, обнаруживаются сверкой версий в evictStale.
+ */
+public class MembershipCache {
+
+    private final LongFunction<long[]> loader;
+    private final LongUnaryOperator versionLoader;
+    private final Map<Long, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    // Увеличивается при каждом сбросе, чтобы не сохранить снимок, загруженный до изменения
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * @param loader        загружает из БД Telegram ID всех участников списка бота
+     * @param versionLoader загружает из БД текущую версию списков бота
+     */
+    public MembershipCache(LongFunction<long[]> loader, LongUnaryOperator versionLoader) {
+        this.loader = loader;
+        this.versionLoader = versionLoader;
+    }
+
+    /**
+     * Проверяет, входит ли пользователь в список бота
+     */
+    public boolean contains(long botId, long telegramId) {
+        return snapshot(botId).contains(telegramId);
+    }
+
+    /**
+     * Возвращает снимок списка бота, загружая его при необходимости
+     */
+    public LongHashSet snapshot(long botId) {
+        Snapshot snapshot = snapshots.get(botId);
+        if (snapshot != null) {
+            return snapshot.members();
+        }
+
+        long loadedAt = generation.get();
+        // Версия читается до списка: изменение между чтениями даст более новую версию в БД,
+        // и снимок будет сброшен при следующей сверке
+        long version = versionLoader.applyAsLong(botId);
+        snapshot = new Snapshot(version, LongHashSet.of(loader.apply(botId)));
+        // Если за время загрузки список менялся, снимок не кэшируем
+        if (generation.get() == loadedAt) {
+            Snapshot existing = snapshots.putIfAbsent(botId, snapshot);
+            if (existing != null) {
+                return existing.members();
+            }
+        }
+        return snapshot.members();
+    }
+
+    /**
+     * ID ботов, снимки которых сейчас в кэше
+     */
+    public Set<Long> cachedBotIds() {
+        return Set.copyOf(snapshots.keySet());
+    }
+
+    /**
+     * Сбрасывает снимки, загруженные до изменения списков на любом экземпляре
+     *
+     * @param versions текущие версии списков ботов в БД
+     */
+    public void evictStale(Map<Long, Long> versions) {
+        versions.forEach((botId, version) -> {
+            Snapshot snapshot = snapshots.get(botId);
+            if (snapshot != null && snapshot.version() < version) {
+                generation.incrementAndGet();
+                snapshots.remove(botId, snapshot);
+            }
+        });
+    }
+
+    /**
+     * Сбрасывает снимок бота. Внутри транзакции сброс выполняется после фиксации,
+     * чтобы конкурентное чтение не закэшировало незафиксированное состояние.
+     */
+    public void invalidate(long botId) {
+        evict(botId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(botId);
+                }
+            });
+        }
+    }
+
+    private void evict(long botId) {
+        generation.incrementAndGet();
+        snapshots.remove(botId);
+    }
+
+    private record Snapshot(long version, LongHashSet members) {
+    }
+}
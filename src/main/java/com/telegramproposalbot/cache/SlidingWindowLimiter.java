@@ -0,0 +1,130 @@
+package com.telegramproposalbot.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Счетчики скользящих окон по паре (бот, пользователь) без блокировок.
+ * Каждое окно приближается двумя соседними фиксированными окнами: оценка равна
+ * prev * (доля предыдущего окна, еще попадающая в скользящее) + cur.
+ * Состояние окна упаковано в один long (номер окна, prev, cur) и меняется через CAS,
+ * поэтому проверка не блокирует потоки и не создает объектов для известного пользователя.
+ */
+public class SlidingWindowLimiter {
+
+    private static final long COUNT_MASK = 0xFFFFL;
+    private static final long WINDOW_MASK = 0xFFFFFFFFL;
+
+    // ID бота -> ID пользователя -> состояния окон по правилам бота
+    private final Map<Long, Map<Long, UserWindows>> bots = new ConcurrentHashMap<>();
+
+    /**
+     * Учитывает сообщение пользователя во всех окнах и проверяет лимиты.
+     * Отклоненные сообщения тоже учитываются, поэтому непрерывный поток сообщений
+     * остается ограниченным, пока пользователь не сделает паузу.
+     *
+     * @return true, если ни один лимит не превышен
+     */
+    public boolean tryAcquire(long botId, long userId, Rule[] rules, long nowMillis) {
+        if (rules.length == 0) {
+            return true;
+        }
+        Map<Long, UserWindows> users = bots.computeIfAbsent(botId, id -> new ConcurrentHashMap<>());
+        UserWindows windows = users.computeIfAbsent(userId, id -> new UserWindows(rules.length));
+        if (windows.states.length() != rules.length) {
+            // Набор правил изменился: начинаем считать заново
+            windows = new UserWindows(rules.length);
+            users.put(userId, windows);
+        }
+        windows.lastSeen = nowMillis;
+
+        boolean allowed = true;
+        for (int i = 0; i < rules.length; i++) {
+            if (!acquire(windows.states, i, rules[i], nowMillis)) {
+                allowed = false;
+            }
+        }
+        return allowed;
+    }
+
+    /**
+     * Удаляет пользователей, не писавших дольше idleMillis
+     */
+    public void evictIdle(long nowMillis, long idleMillis) {
+        bots.values().forEach(users -> users.values().removeIf(windows -> nowMillis - windows.lastSeen > idleMillis));
+        bots.values().removeIf(Map::isEmpty);
+    }
+
+    /**
+     * Удаляет счетчики бота
+     */
+    public void evictBot(long botId) {
+        bots.remove(botId);
+    }
+
+    /**
+     * Количество отслеживаемых пользователей
+     */
+    public int size() {
+        int size = 0;
+        for (Map<Long, UserWindows> users : bots.values()) {
+            size += users.size();
+        }
+        return size;
+    }
+
+    private static boolean acquire(AtomicLongArray states, int index, Rule rule, long nowMillis) {
+        long window = nowMillis / rule.windowMillis;
+        double previousWeight = 1.0 - (double) (nowMillis % rule.windowMillis) / rule.windowMillis;
+
+        while (true) {
+            long state = states.get(index);
+            long stateWindow = state >>> 32;
+            long previous = (state >>> 16) & COUNT_MASK;
+            long current = state & COUNT_MASK;
+
+            // Сдвигаем окна, если с прошлого сообщения время ушло вперед
+            if (stateWindow != (window & WINDOW_MASK)) {
+                previous = stateWindow == ((window - 1) & WINDOW_MASK) ? current : 0;
+                current = 0;
+            }
+
+            current = Math.min(current + 1, COUNT_MASK);
+            long next = ((window & WINDOW_MASK) << 32) | (previous << 16) | current;
+            if (states.compareAndSet(index, state, next)) {
+                return previous * previousWeight + current <= rule.limit;
+            }
+        }
+    }
+
+    /**
+     * Правило: не больше limit сообщений за windowMillis
+     */
+    public static final class Rule {
+        private final int limit;
+        private final long windowMillis;
+
+        public Rule(int limit, long windowMillis) {
+            this.limit = limit;
+            this.windowMillis = windowMillis;
+        }
+
+        public int getLimit() {
+            return limit;
+        }
+
+        public long getWindowMillis() {
+            return windowMillis;
+        }
+    }
+
+    private static final class UserWindows {
+        private final AtomicLongArray states;
+        private volatile long lastSeen;
+
+        UserWindows(int rules) {
+            this.states = new AtomicLongArray(rules);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.telegramproposalbot.cluster;
+
+import com.telegramproposalbot.repository.BotRepository;
+import com.telegramproposalbot.service.BotService;
+import com.telegramproposalbot.telegram.bot.MainBot;
+import com.telegramproposalbot.telegram.bot.ProposalBot;
+import com.telegramproposalbot.telegram.engine.LongPollingEngine;
+import com.telegramproposalbot.telegram.runtime.BotRuntimeRegistry;
+import com.telegramproposalbot.telegram.runtime.BotWarmStarter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Распределяет ботов между экземплярами по кольцу консистентного хеширования.
+ * При изменении состава кластера сразу останавливает ботов, переехавших на другие экземпляры,
+ * а своих новых ботов запускает после паузы, чтобы прежний владелец успел прекратить опрос
+ * и Telegram не отвечал 409 обоим. Первое распределение после старта экземпляра
+ * запускает его ботов - это и есть загрузка ботов при старте приложения.
+ * Главный бот распределяется так же, как боты-предложки, под ключом {@link #MAIN_BOT_KEY}:
+ * его опрашивает только один экземпляр кластера.
+ */
+@Component
+public class BotShardBalancer {
+
+    // Ключ главного бота на кольце, ID ботов-предложек начинаются с 1
+    public static final long MAIN_BOT_KEY = 0L;
+
+    private final ClusterMembership membership;
+    private final BotService botService;
+    private final BotRuntimeRegistry runtimeRegistry;
+    private final BotWarmStarter warmStarter;
+    private final BotRepository botRepository;
+    private final MainBot mainBot;
+    private final LongPollingEngine pollingEngine;
+    private final long handoffDelayMillis;
+    private final long fullRebalanceMillis;
+
+    private long seenVersion = -1;
+    private long changedAt;
+    private long lastFullRebalance;
+    private boolean startsDeferred;
+
+    @Autowired
+    public BotShardBalancer(ClusterMembership membership,
+                            BotService botService,
+                            BotRuntimeRegistry runtimeRegistry,
+                            BotWarmStarter warmStarter,
+                            BotRepository botRepository,
+                            MainBot mainBot,
+                            LongPollingEngine pollingEngine,
+                            @Value("${telegram.cluster.handoff-delay-ms:10000}") long handoffDelayMillis,
+                            @Value("${telegram.cluster.rebalance-interval-ms:60000}") long fullRebalanceMillis) {
+        this.membership = membership;
+        this.botService = botService;
+        this.runtimeRegistry = runtimeRegistry;
+        this.warmStarter = warmStarter;
+        this.botRepository = botRepository;
+        this.mainBot = mainBot;
+        this.pollingEngine = pollingEngine;
+        this.handoffDelayMillis = handoffDelayMillis;
+        this.fullRebalanceMillis = fullRebalanceMillis;
+    }
+
+    /**
+     * Проверяет, нужно ли перераспределить ботов: после изменения состава кластера
+     * и периодически, чтобы подхватить новых и отключенных ботов
+     */
+    @Scheduled(fixedDelayString = "${telegram.cluster.rebalance-check-ms:5000}")
+    public void check() {
+        // До первого heartbeat состав кластера неизвестен, и все боты считались бы своими
+        if (membership.getNodes().isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long version = membership.getVersion();
+        if (version != seenVersion) {
+            seenVersion = version;
+            changedAt = now;
+            rebalance(now);
+        } else if (startsDeferred || now - lastFullRebalance >= fullRebalanceMillis) {
+            rebalance(now);
+        }
+    }
+
+    private void rebalance(long now) {
+        List<Long> activeIds = botRepository.findActiveIds();
+        Set<Long> owned = new HashSet<>();
+        for (Long botId : activeIds) {
+            if (botService.shouldRunLocally(botId)) {
+                owned.add(botId);
+            }
+        }
+
+        // Сначала отдаем чужих ботов. Остановка ждет обработки очередей бота,
+        // поэтому идет в пуле стартера, а не в потоке планировщика
+        List<Long> moved = new ArrayList<>();
+        for (ProposalBot bot : runtimeRegistry.getAll()) {
+            Long botId = bot.getContext().getBotId();
+            if (!owned.contains(botId)) {
+                moved.add(botId);
+            }
+        }
+        warmStarter.stop(moved);
+        boolean ownsMainBot = membership.isLocal(MAIN_BOT_KEY);
+        if (!ownsMainBot && pollingEngine.isPolling(mainBot)) {
+            pollingEngine.stop(mainBot);
+            System.out.println("MainBot передан другому экземпляру");
+        }
+
+        // Новых ботов запускаем после паузы, если в кластере есть другие экземпляры
+        startsDeferred = membership.getNodes().size() > 1 && now - changedAt < handoffDelayMillis;
+        if (startsDeferred) {
+            return;
+        }
+
+        if (ownsMainBot && pollingEngine.start(mainBot)) {
+            System.out.println("MainBot успешно зарегистрирован!");
+        }
+
+        // Запуск идет в фоне параллельно, уже запущенных ботов стартер пропустит
+        warmStarter.start(owned);
+        lastFullRebalance = now;
+    }
+}
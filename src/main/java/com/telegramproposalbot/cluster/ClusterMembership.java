@@ -0,0 +1,131 @@
+package com.telegramproposalbot.cluster;
+
+import com.telegramproposalbot.entity.ClusterNode;
+import com.telegramproposalbot.repository.ClusterNodeRepository;
+import com.telegramproposalbot.telegram.engine.NamedThreadFactory;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Состав кластера: экземпляры отмечаются в таблице cluster_nodes heartbeat-ами,
+ * по живым экземплярам строится кольцо консистентного хеширования, которое определяет,
+ * какой экземпляр обслуживает бота. Heartbeat отправляется в отдельном потоке: задачи общего
+ * планировщика могут выполняться долго, а пропущенные heartbeat-ы исключат экземпляр из кластера.
+ */
+@Component
+public class ClusterMembership {
+
+    private static final int VIRTUAL_NODES = 128;
+
+    private final ClusterNodeRepository nodeRepository;
+    private final NodeIdentity nodeIdentity;
+    private final long nodeTimeoutMillis;
+    private final long heartbeatMillis;
+    private final ScheduledExecutorService heartbeats =
+            Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("cluster-heartbeat-"));
+
+    private volatile ConsistentHashRing ring = new ConsistentHashRing(List.of(), VIRTUAL_NODES);
+
+    // Увеличивается при каждом изменении состава кластера
+    private final AtomicLong version = new AtomicLong();
+
+    @Autowired
+    public ClusterMembership(ClusterNodeRepository nodeRepository,
+                             NodeIdentity nodeIdentity,
+                             @Value("${telegram.cluster.node-timeout-ms:15000}") long nodeTimeoutMillis,
+                             @Value("${telegram.cluster.heartbeat-ms:5000}") long heartbeatMillis) {
+        this.nodeRepository = nodeRepository;
+        this.nodeIdentity = nodeIdentity;
+        this.nodeTimeoutMillis = nodeTimeoutMillis;
+        this.heartbeatMillis = heartbeatMillis;
+    }
+
+    /**
+     * Запускает heartbeat-ы после создания всех бинов, как и задачи планировщика
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public void start() {
+        heartbeats.scheduleWithFixedDelay(() -> {
+            try {
+                heartbeat();
+            } catch (Exception e) {
+                // Ошибка не должна останавливать следующие heartbeat-ы
+                System.err.println("Не удалось отправить heartbeat: " + e.getMessage());
+            }
+        }, 0, heartbeatMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Отправляет heartbeat и перестраивает кольцо, если состав кластера изменился
+     */
+    public void heartbeat() {
+        Date now = new Date();
+        String nodeId = nodeIdentity.getNodeId();
+        if (nodeRepository.touch(nodeId, now) == 0) {
+            nodeRepository.save(new ClusterNode(nodeId));
+        }
+
+        Date since = new Date(now.getTime() - nodeTimeoutMillis);
+        List<String> alive = nodeRepository.findAliveNodeIds(since);
+        if (!alive.contains(nodeId)) {
+            // Собственный heartbeat только что записан, даже если часы узлов расходятся
+            alive = new ArrayList<>(alive);
+            alive.add(nodeId);
+        }
+
+        if (!alive.stream().sorted().toList().equals(ring.getNodes())) {
+            ring = new ConsistentHashRing(alive, VIRTUAL_NODES);
+            version.incrementAndGet();
+            System.out.println("Состав кластера изменился: " + ring.getNodes());
+        }
+
+        // Записи давно умерших экземпляров больше не нужны
+        nodeRepository.deleteDeadBefore(new Date(now.getTime() - nodeTimeoutMillis * 10));
+    }
+
+    /**
+     * Проверяет, должен ли бот обслуживаться этим экземпляром.
+     * Пока кольцо не построено, экземпляр считается единственным.
+     */
+    public boolean isLocal(Long botId) {
+        String owner = ring.ownerOf(botId);
+        return owner == null || owner.equals(nodeIdentity.getNodeId());
+    }
+
+    /**
+     * Версия состава кластера, меняется при каждом входе или выходе экземпляра
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Живые экземпляры кластера
+     */
+    public List<String> getNodes() {
+        return ring.getNodes();
+    }
+
+    @PreDestroy
+    public void leave() {
+        heartbeats.shutdownNow();
+        // Остальные экземпляры заберут ботов, не дожидаясь истечения heartbeat
+        try {
+            nodeRepository.deleteById(nodeIdentity.getNodeId());
+        } catch (Exception e) {
+            System.err.println("Не удалось удалить экземпляр из кластера: " + e.getMessage());
+        }
+    }
+}
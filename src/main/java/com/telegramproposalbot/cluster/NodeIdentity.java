@@ -0,0 +1,34 @@
+package com.telegramproposalbot.cluster;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.util.UUID;
+
+/**
+ * Идентификатор экземпляра приложения в кластере.
+ * Задается свойством telegram.cluster.node-id, иначе строится из имени хоста и случайного суффикса,
+ * чтобы перезапущенный экземпляр не унаследовал аренды предыдущего.
+ */
+@Component
+public class NodeIdentity {
+
+    private final String nodeId;
+
+    public NodeIdentity(@Value("${telegram.cluster.node-id:}") String nodeId) {
+        this.nodeId = nodeId.isBlank() ? hostName() + "-" + UUID.randomUUID().toString().substring(0, 8) : nodeId;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "node";
+        }
+    }
+}
@@ -1,22 +0,0 @@
-package com.telegramproposalbot.config;
-
-import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Configuration;
-import org.telegram.telegrambots.meta.TelegramBotsApi;
-import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
-import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
-
-/**
- * Конфигурация Telegram API
- */
-@Configuration
-public class TelegramBotConfig {
-
-    /**
-     * Создает и конфигурирует TelegramBotsApi
-     */
-    @Bean
-    public TelegramBotsApi telegramBotsApi() throws TelegramApiException {
-        return new TelegramBotsApi(DefaultBotSession.class);
-    }
-}
\ No newline at end of file
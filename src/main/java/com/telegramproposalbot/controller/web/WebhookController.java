@@ -0,0 +1,58 @@
+package com.telegramproposalbot.controller.web;
+
+import com.telegramproposalbot.telegram.bot.ProposalBot;
+import com.telegramproposalbot.telegram.engine.UpdateDispatcher;
+import com.telegramproposalbot.telegram.engine.WebhookRegistrar;
+import com.telegramproposalbot.telegram.runtime.BotRuntimeRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+/**
+ * Единая точка приема вебхуков для всех ботов-предложек
+ */
+@RestController
+@RequestMapping("/tg")
+public class WebhookController {
+
+    private final BotRuntimeRegistry runtimeRegistry;
+    private final UpdateDispatcher dispatcher;
+    private final WebhookRegistrar webhookRegistrar;
+
+    @Autowired
+    public WebhookController(BotRuntimeRegistry runtimeRegistry,
+                             UpdateDispatcher dispatcher,
+                             WebhookRegistrar webhookRegistrar) {
+        this.runtimeRegistry = runtimeRegistry;
+        this.dispatcher = dispatcher;
+        this.webhookRegistrar = webhookRegistrar;
+    }
+
+    /**
+     * Принимает обновление от Telegram и передает его диспетчеру.
+     * Ответ отправляется сразу, не дожидаясь обработки обновления.
+     */
+    @PostMapping("/{botId}/{secret}")
+    public ResponseEntity<Void> onUpdate(
+            @PathVariable Long botId,
+            @PathVariable String secret,
+            @RequestHeader(value = WebhookRegistrar.SECRET_HEADER, required = false) String headerSecret,
+            @RequestBody Update update) {
+        ProposalBot bot = runtimeRegistry.get(botId);
+        if (bot == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+
+        if (!webhookRegistrar.isValidSecret(bot.getContext().getToken(), secret, headerSecret)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        // Если очередь чата переполнена, Telegram повторит доставку позже
+        if (!dispatcher.tryDispatch(bot, update)) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        }
+        return ResponseEntity.ok().build();
+    }
+}
@@ -43,6 +43,15 @@ public class Bot {
     @Temporal(TemporalType.TIMESTAMP)
     private Date updatedAt;
 
+    // Версия настроек bot_settings, увеличивается при каждом их изменении.
+    // Меняется только запросом UPDATE, сохранение сущности не перезапишет ее старым значением
+    @Column(name = "settings_version", updatable = false)
+    private Long settingsVersion = 0L;
+
+    // Версия списков администраторов и заблокированных, увеличивается при каждом их изменении
+    @Column(name = "members_version", updatable = false)
+    private Long membersVersion = 0L;
+
     // Конструкторы
     public Bot() {
     }
@@ -139,4 +148,20 @@ public class Bot {
     public void setUpdatedAt(Date updatedAt) {
         this.updatedAt = updatedAt;
     }
+
+    public Long getSettingsVersion() {
+        return settingsVersion != null ? settingsVersion : 0L;
+    }
+
+    public void setSettingsVersion(Long settingsVersion) {
+        this.settingsVersion = settingsVersion;
+    }
+
+    public Long getMembersVersion() {
+        return membersVersion != null ? membersVersion : 0L;
+    }
+
+    public void setMembersVersion(Long membersVersion) {
+        this.membersVersion = membersVersion;
+    }
 }
\ No newline at end of file
@@ -26,10 +26,18 @@ public class Channel {
     @Column(name = "channel_title")
     private String channelTitle;
 
+    // Может ли бот публиковать сообщения в канале
+    @Column(name = "can_post_messages")
+    private Boolean canPostMessages;
+
     @Column(name = "created_at")
     @Temporal(TemporalType.TIMESTAMP)
     private Date createdAt;
 
+    @Column(name = "refreshed_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date refreshedAt;
+
     // Конструкторы
     public Channel() {
     }
@@ -90,4 +98,20 @@ public class Channel {
     public void setCreatedAt(Date createdAt) {
         this.createdAt = createdAt;
     }
+
+    public Boolean getCanPostMessages() {
+        return canPostMessages;
+    }
+
+    public void setCanPostMessages(Boolean canPostMessages) {
+        this.canPostMessages = canPostMessages;
+    }
+
+    public Date getRefreshedAt() {
+        return refreshedAt;
+    }
+
+    public void setRefreshedAt(Date refreshedAt) {
+        this.refreshedAt = refreshedAt;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,59 @@
+package com.telegramproposalbot.entity;
+
+import jakarta.persistence.*;
+import java.util.Date;
+
+/**
+ * Экземпляр приложения в кластере. Живым считается экземпляр с недавним heartbeat.
+ */
+@Entity
+@Table(name = "cluster_nodes")
+public class ClusterNode {
+
+    @Id
+    @Column(name = "node_id", length = 64)
+    private String nodeId;
+
+    @Column(name = "heartbeat_at", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date heartbeatAt;
+
+    @Column(name = "started_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date startedAt;
+
+    // Конструкторы
+    public ClusterNode() {
+    }
+
+    public ClusterNode(String nodeId) {
+        this.nodeId = nodeId;
+        this.startedAt = new Date();
+        this.heartbeatAt = this.startedAt;
+    }
+
+    // Геттеры и сеттеры
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public Date getHeartbeatAt() {
+        return heartbeatAt;
+    }
+
+    public void setHeartbeatAt(Date heartbeatAt) {
+        this.heartbeatAt = heartbeatAt;
+    }
+
+    public Date getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(Date startedAt) {
+        this.startedAt = startedAt;
+    }
+}
@@ -0,0 +1,123 @@
+package com.telegramproposalbot.entity;
+
+import jakarta.persistence.*;
+import java.util.Date;
+
+/**
+ * Связь между сообщением пользователя и сообщениями, отправленными администратору
+ */
+@Entity
+@Table(name = "message_links", indexes = {
+        @Index(name = "idx_message_links_forwarded", columnList = "bot_id, admin_chat_id, admin_forwarded_message_id"),
+        @Index(name = "idx_message_links_control", columnList = "bot_id, admin_chat_id, admin_control_message_id"),
+        @Index(name = "idx_message_links_user", columnList = "bot_id, user_id, user_message_id"),
+        @Index(name = "idx_message_links_created", columnList = "created_at")
+})
+public class MessageLink {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "bot_id", nullable = false)
+    private Long botId;
+
+    @Column(name = "admin_chat_id", nullable = false)
+    private Long adminChatId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "user_message_id", nullable = false)
+    private Integer userMessageId;
+
+    @Column(name = "admin_forwarded_message_id", nullable = false)
+    private Integer adminForwardedMessageId;
+
+    @Column(name = "admin_control_message_id", nullable = false)
+    private Integer adminControlMessageId;
+
+    @Column(name = "created_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createdAt;
+
+    // Конструкторы
+    public MessageLink() {
+    }
+
+    public MessageLink(Long botId, Long adminChatId, Long userId, Integer userMessageId,
+                       Integer adminForwardedMessageId, Integer adminControlMessageId) {
+        this.botId = botId;
+        this.adminChatId = adminChatId;
+        this.userId = userId;
+        this.userMessageId = userMessageId;
+        this.adminForwardedMessageId = adminForwardedMessageId;
+        this.adminControlMessageId = adminControlMessageId;
+        this.createdAt = new Date();
+    }
+
+    // Геттеры и сеттеры
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getBotId() {
+        return botId;
+    }
+
+    public void setBotId(Long botId) {
+        this.botId = botId;
+    }
+
+    public Long getAdminChatId() {
+        return adminChatId;
+    }
+
+    public void setAdminChatId(Long adminChatId) {
+        this.adminChatId = adminChatId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Integer getUserMessageId() {
+        return userMessageId;
+    }
+
+    public void setUserMessageId(Integer userMessageId) {
+        this.userMessageId = userMessageId;
+    }
+
+    public Integer getAdminForwardedMessageId() {
+        return adminForwardedMessageId;
+    }
+
+    public void setAdminForwardedMessageId(Integer adminForwardedMessageId) {
+        this.adminForwardedMessageId = adminForwardedMessageId;
+    }
+
+    public Integer getAdminControlMessageId() {
+        return adminControlMessageId;
+    }
+
+    public void setAdminControlMessageId(Integer adminControlMessageId) {
+        this.adminControlMessageId = adminControlMessageId;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+}
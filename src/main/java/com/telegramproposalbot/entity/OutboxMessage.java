@@ -0,0 +1,185 @@
+package com.telegramproposalbot.entity;
+
+import jakarta.persistence.*;
+import java.util.Date;
+
+/**
+ * Исходящий запрос к Telegram API, записанный в одной транзакции с изменением состояния.
+ * Отправляется фоновым ретранслятором не менее одного раза. Экземпляр, взявший запись
+ * в работу, держит аренду до lease_until, после ее истечения запись может забрать другой.
+ */
+@Entity
+@Table(name = "outbox_messages", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_outbox_messages_key", columnNames = "idempotency_key")
+}, indexes = {
+        @Index(name = "idx_outbox_messages_due", columnList = "status, next_attempt_at"),
+        @Index(name = "idx_outbox_messages_sent", columnList = "sent_at")
+})
+public class OutboxMessage {
+
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_SENT = "SENT";
+    public static final String STATUS_FAILED = "FAILED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "bot_id", nullable = false)
+    private Long botId;
+
+    @Column(name = "idempotency_key", nullable = false, length = 191)
+    private String idempotencyKey;
+
+    @Column(name = "method_class", nullable = false)
+    private String methodClass;
+
+    @Column(name = "payload", nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @Column(name = "status", nullable = false, length = 16)
+    private String status = STATUS_PENDING;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date nextAttemptAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "lease_owner", length = 64)
+    private String leaseOwner;
+
+    @Column(name = "lease_until")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date leaseUntil;
+
+    @Column(name = "created_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createdAt;
+
+    @Column(name = "sent_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date sentAt;
+
+    // Конструкторы
+    public OutboxMessage() {
+    }
+
+    public OutboxMessage(Long botId, String idempotencyKey, String methodClass, String payload) {
+        this.botId = botId;
+        this.idempotencyKey = idempotencyKey;
+        this.methodClass = methodClass;
+        this.payload = payload;
+        this.createdAt = new Date();
+        this.nextAttemptAt = this.createdAt;
+    }
+
+    // Геттеры и сеттеры
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getBotId() {
+        return botId;
+    }
+
+    public void setBotId(Long botId) {
+        this.botId = botId;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public String getMethodClass() {
+        return methodClass;
+    }
+
+    public void setMethodClass(String methodClass) {
+        this.methodClass = methodClass;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public Date getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(Date nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Date getSentAt() {
+        return sentAt;
+    }
+
+    public void setSentAt(Date sentAt) {
+        this.sentAt = sentAt;
+    }
+
+    public String getLeaseOwner() {
+        return leaseOwner;
+    }
+
+    public void setLeaseOwner(String leaseOwner) {
+        this.leaseOwner = leaseOwner;
+    }
+
+    public Date getLeaseUntil() {
+        return leaseUntil;
+    }
+
+    public void setLeaseUntil(Date leaseUntil) {
+        this.leaseUntil = leaseUntil;
+    }
+}
@@ -0,0 +1,266 @@
+package com.telegramproposalbot.entity;
+
+import jakarta.persistence.*;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Сущность для представления предложенного пользователем сообщения.
+ * Хранится только то, что нужно для модерации и публикации, а не весь объект Message.
+ */
+@Entity
+@Table(name = "proposals",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"bot_id", "chat_id", "message_id"}),
+        indexes = {
+                @Index(name = "idx_proposals_bot_user", columnList = "bot_id, user_id"),
+                @Index(name = "idx_proposals_status_updated", columnList = "status, updated_at")
+        })
+public class Proposal {
+
+    public static final String STATUS_PENDING = "PENDING";
+    // Идет публикация сразу в несколько каналов
+    public static final String STATUS_PUBLISHING = "PUBLISHING";
+    public static final String STATUS_PUBLISHED = "PUBLISHED";
+    public static final String STATUS_REJECTED = "REJECTED";
+    public static final String STATUS_SCHEDULED = "SCHEDULED";
+
+    public static final String TYPE_TEXT = "TEXT";
+    public static final String TYPE_PHOTO = "PHOTO";
+    public static final String TYPE_VIDEO = "VIDEO";
+    public static final String TYPE_DOCUMENT = "DOCUMENT";
+    public static final String TYPE_STICKER = "STICKER";
+    public static final String TYPE_VOICE = "VOICE";
+    public static final String TYPE_VIDEO_NOTE = "VIDEO_NOTE";
+    // Медиагруппа: элементы хранятся в ProposalMedia
+    public static final String TYPE_ALBUM = "ALBUM";
+    public static final String TYPE_OTHER = "OTHER";
+
+    // Допустимые переходы статусов. Повторное планирование переносит публикацию, остальные
+    // повторы запрещены: второй администратор не может опубликовать или отклонить предложение еще раз
+    private static final Map<String, Set<String>> TRANSITIONS = Map.of(
+            STATUS_PENDING, Set.of(STATUS_PUBLISHING, STATUS_PUBLISHED, STATUS_REJECTED, STATUS_SCHEDULED),
+            STATUS_PUBLISHING, Set.of(STATUS_PUBLISHED, STATUS_PENDING),
+            STATUS_SCHEDULED, Set.of(STATUS_SCHEDULED, STATUS_PUBLISHED, STATUS_PENDING),
+            STATUS_REJECTED, Set.of(STATUS_PENDING),
+            STATUS_PUBLISHED, Set.of());
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "bot_id", nullable = false)
+    private Long botId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "chat_id", nullable = false)
+    private Long chatId;
+
+    @Column(name = "message_id", nullable = false)
+    private Integer messageId;
+
+    @Column(name = "message_type", nullable = false, length = 20)
+    private String type;
+
+    // Текст сообщения или подпись к медиа
+    @Column(name = "text", columnDefinition = "TEXT")
+    private String text;
+
+    @Column(name = "file_id")
+    private String fileId;
+
+    @Column(name = "file_unique_id")
+    private String fileUniqueId;
+
+    @Column(name = "file_name")
+    private String fileName;
+
+    @Column(name = "status", nullable = false, length = 20)
+    private String status = STATUS_PENDING;
+
+    // Сколько раз это же содержимое прислали повторно, пока предложение ждало решения
+    @Column(name = "duplicate_count", nullable = false)
+    private int duplicateCount;
+
+    @Column(name = "last_duplicate_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date lastDuplicateAt;
+
+    @Column(name = "created_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createdAt;
+
+    // Время последней смены статуса: для PUBLISHING - начало публикации
+    @Column(name = "updated_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date updatedAt;
+
+    // Увеличивается при каждой смене статуса, смена проходит только при совпадении версии
+    @Version
+    @Column(name = "version", nullable = false)
+    private long version;
+
+    // Конструкторы
+    public Proposal() {
+    }
+
+    public Proposal(Long botId, Long userId, Long chatId, Integer messageId, String type) {
+        this.botId = botId;
+        this.userId = userId;
+        this.chatId = chatId;
+        this.messageId = messageId;
+        this.type = type;
+        this.createdAt = new Date();
+        this.updatedAt = this.createdAt;
+    }
+
+    public boolean isPending() {
+        return STATUS_PENDING.equals(status);
+    }
+
+    public boolean isScheduled() {
+        return STATUS_SCHEDULED.equals(status);
+    }
+
+    /**
+     * Проверяет, можно ли перевести предложение из текущего статуса в указанный
+     */
+    public boolean canTransitionTo(String newStatus) {
+        return TRANSITIONS.getOrDefault(status, Set.of()).contains(newStatus);
+    }
+
+    public boolean isText() {
+        return TYPE_TEXT.equals(type);
+    }
+
+    // Геттеры и сеттеры
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getBotId() {
+        return botId;
+    }
+
+    public void setBotId(Long botId) {
+        this.botId = botId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getChatId() {
+        return chatId;
+    }
+
+    public void setChatId(Long chatId) {
+        this.chatId = chatId;
+    }
+
+    public Integer getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(Integer messageId) {
+        this.messageId = messageId;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public String getFileId() {
+        return fileId;
+    }
+
+    public void setFileId(String fileId) {
+        this.fileId = fileId;
+    }
+
+    public String getFileUniqueId() {
+        return fileUniqueId;
+    }
+
+    public void setFileUniqueId(String fileUniqueId) {
+        this.fileUniqueId = fileUniqueId;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Date getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Date updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public int getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    public void setDuplicateCount(int duplicateCount) {
+        this.duplicateCount = duplicateCount;
+    }
+
+    public Date getLastDuplicateAt() {
+        return lastDuplicateAt;
+    }
+
+    public void setLastDuplicateAt(Date lastDuplicateAt) {
+        this.lastDuplicateAt = lastDuplicateAt;
+    }
+}
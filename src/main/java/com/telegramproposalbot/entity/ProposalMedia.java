@@ -0,0 +1,98 @@
+package com.telegramproposalbot.entity;
+
+import jakarta.persistence.*;
+
+/**
+ * Элемент медиагруппы (альбома), присланной как одно предложение.
+ * Файлы не скачиваются: хранится только file_id, по которому Telegram отправит тот же файл повторно.
+ */
+@Entity
+@Table(name = "proposal_media",
+        indexes = @Index(name = "idx_proposal_media_proposal", columnList = "proposal_id, position"))
+public class ProposalMedia {
+
+    public static final String TYPE_PHOTO = "PHOTO";
+    public static final String TYPE_VIDEO = "VIDEO";
+    public static final String TYPE_DOCUMENT = "DOCUMENT";
+    public static final String TYPE_AUDIO = "AUDIO";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "proposal_id", nullable = false)
+    private Long proposalId;
+
+    // Порядок элемента в альбоме
+    @Column(name = "position", nullable = false)
+    private int position;
+
+    @Column(name = "media_type", nullable = false, length = 20)
+    private String type;
+
+    @Column(name = "file_id", nullable = false)
+    private String fileId;
+
+    @Column(name = "file_unique_id")
+    private String fileUniqueId;
+
+    // Конструкторы
+    public ProposalMedia() {
+    }
+
+    public ProposalMedia(int position, String type, String fileId, String fileUniqueId) {
+        this.position = position;
+        this.type = type;
+        this.fileId = fileId;
+        this.fileUniqueId = fileUniqueId;
+    }
+
+    // Геттеры и сеттеры
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getProposalId() {
+        return proposalId;
+    }
+
+    public void setProposalId(Long proposalId) {
+        this.proposalId = proposalId;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public void setPosition(int position) {
+        this.position = position;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getFileId() {
+        return fileId;
+    }
+
+    public void setFileId(String fileId) {
+        this.fileId = fileId;
+    }
+
+    public String getFileUniqueId() {
+        return fileUniqueId;
+    }
+
+    public void setFileUniqueId(String fileUniqueId) {
+        this.fileUniqueId = fileUniqueId;
+    }
+}
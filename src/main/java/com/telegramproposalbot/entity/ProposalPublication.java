@@ -0,0 +1,137 @@
+package com.telegramproposalbot.entity;
+
+import jakarta.persistence.*;
+import java.util.Date;
+
+/**
+ * Результат публикации предложения в один канал
+ */
+@Entity
+@Table(name = "proposal_publications",
+        indexes = @Index(name = "idx_proposal_publications_proposal", columnList = "proposal_id"))
+public class ProposalPublication {
+
+    public static final String STATUS_SENT = "SENT";
+    public static final String STATUS_FAILED = "FAILED";
+    // Ответ Telegram не получен вовремя: сообщение могло быть опубликовано, канал нужно проверить вручную
+    public static final String STATUS_UNKNOWN = "UNKNOWN";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "proposal_id", nullable = false)
+    private Long proposalId;
+
+    @Column(name = "bot_id", nullable = false)
+    private Long botId;
+
+    @Column(name = "channel_id", nullable = false)
+    private Long channelId;
+
+    @Column(name = "status", nullable = false, length = 20)
+    private String status;
+
+    // Сообщение в канале, если публикация удалась
+    @Column(name = "channel_message_id")
+    private Integer channelMessageId;
+
+    @Column(name = "error", length = 1000)
+    private String error;
+
+    @Column(name = "created_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createdAt;
+
+    // Конструкторы
+    public ProposalPublication() {
+    }
+
+    public ProposalPublication(Long proposalId, Long botId, Long channelId, String status) {
+        this.proposalId = proposalId;
+        this.botId = botId;
+        this.channelId = channelId;
+        this.status = status;
+        this.createdAt = new Date();
+    }
+
+    public boolean isSent() {
+        return STATUS_SENT.equals(status);
+    }
+
+    public boolean isUnknown() {
+        return STATUS_UNKNOWN.equals(status);
+    }
+
+    /**
+     * Сообщение опубликовано или могло быть опубликовано
+     */
+    public boolean isMaybeSent() {
+        return isSent() || isUnknown();
+    }
+
+    // Геттеры и сеттеры
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getProposalId() {
+        return proposalId;
+    }
+
+    public void setProposalId(Long proposalId) {
+        this.proposalId = proposalId;
+    }
+
+    public Long getBotId() {
+        return botId;
+    }
+
+    public void setBotId(Long botId) {
+        this.botId = botId;
+    }
+
+    public Long getChannelId() {
+        return channelId;
+    }
+
+    public void setChannelId(Long channelId) {
+        this.channelId = channelId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Integer getChannelMessageId() {
+        return channelMessageId;
+    }
+
+    public void setChannelMessageId(Integer channelMessageId) {
+        this.channelMessageId = channelMessageId;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+}
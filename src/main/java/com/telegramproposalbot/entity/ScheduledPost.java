@@ -0,0 +1,212 @@
+package com.telegramproposalbot.entity;
+
+import jakarta.persistence.*;
+import java.util.Date;
+
+/**
+ * Отложенная публикация предложения в канал
+ */
+@Entity
+@Table(name = "scheduled_posts", indexes = {
+        @Index(name = "idx_scheduled_posts_due", columnList = "status, scheduled_at"),
+        @Index(name = "idx_scheduled_posts_proposal", columnList = "bot_id, user_id, user_message_id"),
+        @Index(name = "idx_scheduled_posts_lease", columnList = "lease_owner")
+})
+public class ScheduledPost {
+
+    public static final String STATUS_SCHEDULED = "SCHEDULED";
+    public static final String STATUS_PUBLISHED = "PUBLISHED";
+    public static final String STATUS_CANCELLED = "CANCELLED";
+    public static final String STATUS_FAILED = "FAILED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "bot_id", nullable = false)
+    private Long botId;
+
+    @Column(name = "channel_id", nullable = false)
+    private Long channelId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "user_message_id", nullable = false)
+    private Integer userMessageId;
+
+    // Текст публикации в записях, созданных до появления payload
+    @Column(name = "text", columnDefinition = "TEXT")
+    private String text;
+
+    // Запрос публикации в канал, сериализованный так же, как в outbox
+    @Column(name = "method_class")
+    private String methodClass;
+
+    @Column(name = "payload", columnDefinition = "TEXT")
+    private String payload;
+
+    @Column(name = "disable_notification")
+    private boolean disableNotification;
+
+    @Column(name = "scheduled_at", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date scheduledAt;
+
+    @Column(name = "status", nullable = false, length = 16)
+    private String status = STATUS_SCHEDULED;
+
+    @Column(name = "lease_owner", length = 64)
+    private String leaseOwner;
+
+    @Column(name = "lease_until")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date leaseUntil;
+
+    @Column(name = "created_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createdAt;
+
+    @Column(name = "published_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date publishedAt;
+
+    // Конструкторы
+    public ScheduledPost() {
+    }
+
+    public ScheduledPost(Long botId, Long channelId, Long userId, Integer userMessageId, String text, Date scheduledAt) {
+        this.botId = botId;
+        this.channelId = channelId;
+        this.userId = userId;
+        this.userMessageId = userMessageId;
+        this.text = text;
+        this.scheduledAt = scheduledAt;
+        this.createdAt = new Date();
+    }
+
+    // Геттеры и сеттеры
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getBotId() {
+        return botId;
+    }
+
+    public void setBotId(Long botId) {
+        this.botId = botId;
+    }
+
+    public Long getChannelId() {
+        return channelId;
+    }
+
+    public void setChannelId(Long channelId) {
+        this.channelId = channelId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Integer getUserMessageId() {
+        return userMessageId;
+    }
+
+    public void setUserMessageId(Integer userMessageId) {
+        this.userMessageId = userMessageId;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public String getMethodClass() {
+        return methodClass;
+    }
+
+    public void setMethodClass(String methodClass) {
+        this.methodClass = methodClass;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public boolean isDisableNotification() {
+        return disableNotification;
+    }
+
+    public void setDisableNotification(boolean disableNotification) {
+        this.disableNotification = disableNotification;
+    }
+
+    public Date getScheduledAt() {
+        return scheduledAt;
+    }
+
+    public void setScheduledAt(Date scheduledAt) {
+        this.scheduledAt = scheduledAt;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Date getPublishedAt() {
+        return publishedAt;
+    }
+
+    public void setPublishedAt(Date publishedAt) {
+        this.publishedAt = publishedAt;
+    }
+
+    public String getLeaseOwner() {
+        return leaseOwner;
+    }
+
+    public void setLeaseOwner(String leaseOwner) {
+        this.leaseOwner = leaseOwner;
+    }
+
+    public Date getLeaseUntil() {
+        return leaseUntil;
+    }
+
+    public void setLeaseUntil(Date leaseUntil) {
+        this.leaseUntil = leaseUntil;
+    }
+
+    public boolean isScheduled() {
+        return STATUS_SCHEDULED.equals(status);
+    }
+}
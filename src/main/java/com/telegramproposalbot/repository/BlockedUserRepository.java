@@ -2,6 +2,8 @@ package com.telegramproposalbot.repository;
 
 import com.telegramproposalbot.entity.BlockedUser;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -28,6 +30,12 @@ public interface BlockedUserRepository extends JpaRepository<BlockedUser, Long>
      */
     List<BlockedUser> findByBotId(Long botId);
 
+    /**
+     * Находит Telegram ID всех заблокированных пользователей бота
+     */
+    @Query("SELECT b.telegramId FROM BlockedUser b WHERE b.botId = :botId")
+    List<Long> findTelegramIdsByBotId(@Param("botId") Long botId);
+
     /**
      * Удаляет запись о блокировке пользователя
      */
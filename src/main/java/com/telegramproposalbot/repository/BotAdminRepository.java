@@ -2,6 +2,8 @@ package com.telegramproposalbot.repository;
 
 import com.telegramproposalbot.entity.BotAdmin;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -28,6 +30,12 @@ public interface BotAdminRepository extends JpaRepository<BotAdmin, Long> {
      */
     List<BotAdmin> findByBotId(Long botId);
 
+    /**
+     * Находит Telegram ID всех администраторов бота
+     */
+    @Query("SELECT a.telegramId FROM BotAdmin a WHERE a.botId = :botId ORDER BY a.id")
+    List<Long> findTelegramIdsByBotId(@Param("botId") Long botId);
+
     /**
      * Находит главного администратора бота
      */
@@ -2,8 +2,12 @@ package com.telegramproposalbot.repository;
 
 import com.telegramproposalbot.entity.Bot;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -42,4 +46,49 @@ public interface BotRepository extends JpaRepository<Bot, Long> {
      * Находит активных ботов
      */
     List<Bot> findByActiveTrue();
-}
\ No newline at end of file
+
+    /**
+     * Находит ID активных ботов
+     */
+    @Query("SELECT b.id FROM Bot b WHERE b.active = true")
+    List<Long> findActiveIds();
+
+    /**
+     * Находит версию настроек бота
+     */
+    @Query("SELECT b.settingsVersion FROM Bot b WHERE b.id = :botId")
+    Optional<Long> findSettingsVersion(@Param("botId") Long botId);
+
+    /**
+     * Находит версии настроек нескольких ботов: пары [ID бота, версия]
+     */
+    @Query("SELECT b.id, b.settingsVersion FROM Bot b WHERE b.id IN :botIds")
+    List<Object[]> findSettingsVersions(@Param("botIds") Collection<Long> botIds);
+
+    /**
+     * Находит версии списков администраторов и заблокированных: пары [ID бота, версия]
+     */
+    @Query("SELECT b.id, b.membersVersion FROM Bot b WHERE b.id IN :botIds")
+    List<Object[]> findMembersVersions(@Param("botIds") Collection<Long> botIds);
+
+    /**
+     * Находит версию списков администраторов и заблокированных бота
+     */
+    @Query("SELECT b.membersVersion FROM Bot b WHERE b.id = :botId")
+    Optional<Long> findMembersVersion(@Param("botId") Long botId);
+
+    /**
+     * Увеличивает версию настроек бота. Строка бота блокируется до конца транзакции,
+     * поэтому конкурентные изменения получают разные версии
+     */
+    @Modifying
+    @Query("UPDATE Bot b SET b.settingsVersion = COALESCE(b.settingsVersion, 0) + 1 WHERE b.id = :botId")
+    int incrementSettingsVersion(@Param("botId") Long botId);
+
+    /**
+     * Увеличивает версию списков администраторов и заблокированных, чтобы другие экземпляры сбросили кэш
+     */
+    @Modifying
+    @Query("UPDATE Bot b SET b.membersVersion = COALESCE(b.membersVersion, 0) + 1 WHERE b.id = :botId")
+    int incrementMembersVersion(@Param("botId") Long botId);
+}
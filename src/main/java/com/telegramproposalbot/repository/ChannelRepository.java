@@ -1,9 +1,13 @@
 package com.telegramproposalbot.repository;
 
 import com.telegramproposalbot.entity.Channel;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
@@ -47,4 +51,10 @@ public interface ChannelRepository extends JpaRepository<Channel, Long> {
      * Подсчитывает количество каналов у бота
      */
     long countByBotId(Long botId);
+
+    /**
+     * Находит каналы, не обновлявшиеся из Telegram с указанного момента
+     */
+    @Query("SELECT c FROM Channel c WHERE c.refreshedAt IS NULL OR c.refreshedAt < :before ORDER BY c.refreshedAt")
+    List<Channel> findStale(@Param("before") Date before, Pageable pageable);
 }
\ No newline at end of file
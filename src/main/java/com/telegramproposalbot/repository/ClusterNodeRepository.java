@@ -0,0 +1,43 @@
+package com.telegramproposalbot.repository;
+
+import com.telegramproposalbot.entity.ClusterNode;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Репозиторий для работы с сущностью ClusterNode
+ */
+@Repository
+public interface ClusterNodeRepository extends JpaRepository<ClusterNode, String> {
+
+    /**
+     * Находит ID экземпляров, отправивших heartbeat не раньше указанного момента
+     */
+    @Query("SELECT n.nodeId FROM ClusterNode n WHERE n.heartbeatAt >= :since ORDER BY n.nodeId")
+    List<String> findAliveNodeIds(@Param("since") Date since);
+
+    /**
+     * Обновляет heartbeat экземпляра
+     *
+     * @return 0, если записи экземпляра еще нет
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE ClusterNode n SET n.heartbeatAt = :now WHERE n.nodeId = :nodeId")
+    int touch(@Param("nodeId") String nodeId, @Param("now") Date now);
+
+    /**
+     * Удаляет записи экземпляров, не отправлявших heartbeat с указанного момента
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ClusterNode n WHERE n.heartbeatAt < :before")
+    int deleteDeadBefore(@Param("before") Date before);
+}
@@ -0,0 +1,50 @@
+package com.telegramproposalbot.repository;
+
+import com.telegramproposalbot.entity.MessageLink;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Репозиторий для работы с сущностью MessageLink
+ */
+@Repository
+public interface MessageLinkRepository extends JpaRepository<MessageLink, Long> {
+
+    /**
+     * Находит связь по пересланному администратору сообщению
+     */
+    Optional<MessageLink> findFirstByBotIdAndAdminChatIdAndAdminForwardedMessageId(Long botId, Long adminChatId,
+                                                                                   Integer adminForwardedMessageId);
+
+    /**
+     * Находит связь по сообщению с кнопками управления
+     */
+    Optional<MessageLink> findFirstByBotIdAndAdminChatIdAndAdminControlMessageId(Long botId, Long adminChatId,
+                                                                                 Integer adminControlMessageId);
+
+    /**
+     * Находит связи сообщения пользователя со всеми администраторами
+     */
+    List<MessageLink> findByBotIdAndUserIdAndUserMessageId(Long botId, Long userId, Integer userMessageId);
+
+    /**
+     * Удаляет связи, созданные раньше указанного момента
+     */
+    @Modifying
+    @Query("DELETE FROM MessageLink l WHERE l.createdAt < :before")
+    int deleteCreatedBefore(@Param("before") Date before);
+
+    /**
+     * Удаляет все связи бота
+     */
+    @Modifying
+    @Query("DELETE FROM MessageLink l WHERE l.botId = :botId")
+    int deleteByBotId(@Param("botId") Long botId);
+}
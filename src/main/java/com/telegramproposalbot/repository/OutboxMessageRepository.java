@@ -0,0 +1,65 @@
+package com.telegramproposalbot.repository;
+
+import com.telegramproposalbot.entity.OutboxMessage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Репозиторий для работы с сущностью OutboxMessage
+ */
+@Repository
+public interface OutboxMessageRepository extends JpaRepository<OutboxMessage, Long> {
+
+    /**
+     * Проверяет, записан ли уже запрос с таким ключом идемпотентности
+     */
+    boolean existsByIdempotencyKey(String idempotencyKey);
+
+    /**
+     * Находит ID запросов, которые пора отправить и которые никто не держит в аренде, в порядке записи
+     */
+    @Query("SELECT m.id FROM OutboxMessage m WHERE m.status = 'PENDING' AND m.nextAttemptAt <= :now " +
+            "AND (m.leaseUntil IS NULL OR m.leaseUntil < :now) ORDER BY m.id")
+    List<Long> findClaimableIds(@Param("now") Date now, Pageable pageable);
+
+    /**
+     * Берет запросы в аренду. Условие повторяется в UPDATE, поэтому каждую строку
+     * получает только один экземпляр.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE OutboxMessage m SET m.leaseOwner = :owner, m.leaseUntil = :until WHERE m.id IN :ids " +
+            "AND m.status = 'PENDING' AND (m.leaseUntil IS NULL OR m.leaseUntil < :now)")
+    int claim(@Param("ids") Collection<Long> ids, @Param("owner") String owner,
+              @Param("until") Date until, @Param("now") Date now);
+
+    /**
+     * Находит запросы, арендованные экземпляром, в порядке записи
+     */
+    @Query("SELECT m FROM OutboxMessage m WHERE m.id IN :ids AND m.leaseOwner = :owner AND m.status = 'PENDING' " +
+            "ORDER BY m.id")
+    List<OutboxMessage> findLeased(@Param("ids") Collection<Long> ids, @Param("owner") String owner);
+
+    /**
+     * Удаляет отправленные запросы, отправленные раньше указанного момента
+     */
+    @Modifying
+    @Query("DELETE FROM OutboxMessage m WHERE m.status = 'SENT' AND m.sentAt < :before")
+    int deleteSentBefore(@Param("before") Date before);
+
+    /**
+     * Удаляет все запросы бота
+     */
+    @Modifying
+    @Query("DELETE FROM OutboxMessage m WHERE m.botId = :botId")
+    int deleteByBotId(@Param("botId") Long botId);
+}
@@ -0,0 +1,29 @@
+package com.telegramproposalbot.repository;
+
+import com.telegramproposalbot.entity.ProposalMedia;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Репозиторий для работы с сущностью ProposalMedia
+ */
+@Repository
+public interface ProposalMediaRepository extends JpaRepository<ProposalMedia, Long> {
+
+    /**
+     * Находит элементы альбома в исходном порядке
+     */
+    List<ProposalMedia> findByProposalIdOrderByPosition(Long proposalId);
+
+    /**
+     * Удаляет элементы альбомов всех предложений бота
+     */
+    @Modifying
+    @Query("DELETE FROM ProposalMedia m WHERE m.proposalId IN (SELECT p.id FROM Proposal p WHERE p.botId = :botId)")
+    int deleteByBotId(@Param("botId") Long botId);
+}
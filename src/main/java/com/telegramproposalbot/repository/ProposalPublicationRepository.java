@@ -0,0 +1,34 @@
+package com.telegramproposalbot.repository;
+
+import com.telegramproposalbot.entity.ProposalPublication;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Репозиторий для работы с сущностью ProposalPublication
+ */
+@Repository
+public interface ProposalPublicationRepository extends JpaRepository<ProposalPublication, Long> {
+
+    /**
+     * Находит результаты публикации предложения по каналам
+     */
+    List<ProposalPublication> findByProposalId(Long proposalId);
+
+    /**
+     * Удаляет результаты прошлых попыток публикации предложения
+     */
+    void deleteByProposalId(Long proposalId);
+
+    /**
+     * Удаляет результаты публикации всех предложений бота
+     */
+    @Modifying
+    @Query("DELETE FROM ProposalPublication p WHERE p.botId = :botId")
+    int deleteByBotId(@Param("botId") Long botId);
+}
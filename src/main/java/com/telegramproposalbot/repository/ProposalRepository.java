@@ -0,0 +1,70 @@
+package com.telegramproposalbot.repository;
+
+import com.telegramproposalbot.entity.Proposal;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Репозиторий для работы с сущностью Proposal
+ */
+@Repository
+public interface ProposalRepository extends JpaRepository<Proposal, Long> {
+
+    /**
+     * Находит предложение по сообщению пользователя
+     */
+    Optional<Proposal> findByBotIdAndChatIdAndMessageId(Long botId, Long chatId, Integer messageId);
+
+    /**
+     * Находит последние предложения из чата пользователя с указанным статусом
+     */
+    List<Proposal> findTop20ByBotIdAndChatIdAndStatusOrderByIdDesc(Long botId, Long chatId, String status);
+
+    /**
+     * Находит самые давние предложения ботов, статус которых не менялся с указанного момента
+     */
+    List<Proposal> findTop100ByBotIdInAndStatusAndUpdatedAtBeforeOrderByUpdatedAt(Collection<Long> botIds,
+                                                                                String status, Date before);
+
+    /**
+     * Проверяет, присылал ли пользователь сообщения боту
+     */
+    boolean existsByBotIdAndUserId(Long botId, Long userId);
+
+    /**
+     * Учитывает повторную отправку содержимого предложения одним UPDATE без чтения строки
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Proposal p SET p.duplicateCount = p.duplicateCount + 1, p.lastDuplicateAt = :now " +
+            "WHERE p.id = :id")
+    int incrementDuplicateCount(@Param("id") Long id, @Param("now") Date now);
+
+    /**
+     * Меняет статус предложения, только если его версия не изменилась с момента чтения.
+     * Контекст сохраняемости очищается, чтобы следующее чтение вернуло новую версию.
+     *
+     * @return 0, если предложение уже изменил другой администратор или экземпляр
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Proposal p SET p.status = :status, p.version = p.version + 1, p.updatedAt = :now " +
+            "WHERE p.id = :id AND p.version = :version")
+    int updateStatus(@Param("id") Long id, @Param("version") long version,
+                     @Param("status") String status, @Param("now") Date now);
+
+    /**
+     * Удаляет все предложения бота
+     */
+    @Modifying
+    @Query("DELETE FROM Proposal p WHERE p.botId = :botId")
+    int deleteByBotId(@Param("botId") Long botId);
+}
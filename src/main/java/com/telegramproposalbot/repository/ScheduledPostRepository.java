@@ -0,0 +1,100 @@
+package com.telegramproposalbot.repository;
+
+import com.telegramproposalbot.entity.ScheduledPost;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Репозиторий для работы с сущностью ScheduledPost
+ */
+@Repository
+public interface ScheduledPostRepository extends JpaRepository<ScheduledPost, Long> {
+
+    /**
+     * Находит запланированную публикацию предложения
+     */
+    Optional<ScheduledPost> findFirstByBotIdAndUserIdAndUserMessageIdAndStatus(Long botId, Long userId,
+                                                                               Integer userMessageId, String status);
+
+    /**
+     * Находит ID свободных запланированных публикаций ботов со сроком раньше указанного момента:
+     * без аренды или с истекшей арендой. Ближайшие первыми.
+     */
+    @Query("SELECT p.id FROM ScheduledPost p WHERE p.status = 'SCHEDULED' AND p.botId IN :botIds " +
+            "AND p.scheduledAt < :before AND (p.leaseUntil IS NULL OR p.leaseUntil < :now) ORDER BY p.scheduledAt")
+    List<Long> findClaimableIds(@Param("botIds") Collection<Long> botIds, @Param("before") Date before,
+                                @Param("now") Date now, Pageable pageable);
+
+    /**
+     * Берет публикации в аренду. Условие повторяется в UPDATE, поэтому каждую строку
+     * получает только один экземпляр, даже если несколько выбрали ее одновременно.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE ScheduledPost p SET p.leaseOwner = :owner, p.leaseUntil = :until WHERE p.id IN :ids " +
+            "AND p.status = 'SCHEDULED' AND (p.leaseUntil IS NULL OR p.leaseUntil < :now)")
+    int claim(@Param("ids") Collection<Long> ids, @Param("owner") String owner,
+              @Param("until") Date until, @Param("now") Date now);
+
+    /**
+     * Продлевает аренду запланированных публикаций экземпляра для указанных ботов.
+     * Аренды публикаций остальных ботов истекают и достаются их новым владельцам.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE ScheduledPost p SET p.leaseUntil = :until WHERE p.leaseOwner = :owner " +
+            "AND p.status = 'SCHEDULED' AND p.botId IN :botIds")
+    int renewLeases(@Param("owner") String owner, @Param("botIds") Collection<Long> botIds,
+                    @Param("until") Date until);
+
+    /**
+     * Освобождает аренды экземпляра, чтобы их сразу забрали остальные
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE ScheduledPost p SET p.leaseOwner = NULL, p.leaseUntil = NULL " +
+            "WHERE p.leaseOwner = :owner AND p.status = 'SCHEDULED'")
+    int releaseLeases(@Param("owner") String owner);
+
+    /**
+     * Освобождает аренду одной публикации экземпляра
+     */
+    @Modifying
+    @Query("UPDATE ScheduledPost p SET p.leaseOwner = NULL, p.leaseUntil = NULL " +
+            "WHERE p.id = :id AND p.leaseOwner = :owner AND p.status = 'SCHEDULED'")
+    int releaseLease(@Param("id") Long id, @Param("owner") String owner);
+
+    /**
+     * Находит запланированные публикации, арендованные экземпляром
+     */
+    @Query("SELECT p FROM ScheduledPost p WHERE p.id IN :ids AND p.leaseOwner = :owner AND p.status = 'SCHEDULED'")
+    List<ScheduledPost> findLeased(@Param("ids") Collection<Long> ids, @Param("owner") String owner);
+
+    /**
+     * Переводит наступившую публикацию в новый статус, только если она все еще
+     * запланирована и арендована этим экземпляром
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ScheduledPost p SET p.status = :status, p.publishedAt = :now, p.leaseOwner = NULL, " +
+            "p.leaseUntil = NULL WHERE p.id = :id AND p.status = 'SCHEDULED' AND p.leaseOwner = :owner " +
+            "AND p.scheduledAt <= :now")
+    int complete(@Param("id") Long id, @Param("owner") String owner, @Param("status") String status,
+                 @Param("now") Date now);
+
+    /**
+     * Удаляет все отложенные публикации бота
+     */
+    @Modifying
+    @Query("DELETE FROM ScheduledPost p WHERE p.botId = :botId")
+    int deleteByBotId(@Param("botId") Long botId);
+}
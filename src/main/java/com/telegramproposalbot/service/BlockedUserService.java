@@ -1,12 +1,19 @@
 package com.telegramproposalbot.service;
 
+import com.telegramproposalbot.cache.MembershipCache;
 import com.telegramproposalbot.entity.BlockedUser;
 import com.telegramproposalbot.repository.BlockedUserRepository;
+import com.telegramproposalbot.repository.BotRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Сервис для управления заблокированными пользователями
@@ -15,10 +22,22 @@ import java.util.List;
 public class BlockedUserService {
 
     private final BlockedUserRepository blockedUserRepository;
+    private final OutboxService outboxService;
+    private final BotRepository botRepository;
+
+    // Кэш списков заблокированных пользователей ботов
+    private final MembershipCache blockedCache;
 
     @Autowired
-    public BlockedUserService(BlockedUserRepository blockedUserRepository) {
+    public BlockedUserService(BlockedUserRepository blockedUserRepository, OutboxService outboxService,
+                              BotRepository botRepository) {
         this.blockedUserRepository = blockedUserRepository;
+        this.outboxService = outboxService;
+        this.botRepository = botRepository;
+        this.blockedCache = new MembershipCache(botId -> blockedUserRepository.findTelegramIdsByBotId(botId).stream()
+                        .mapToLong(Long::longValue)
+                        .toArray(),
+                botId -> botRepository.findMembersVersion(botId).orElse(0L));
     }
 
     /**
@@ -33,7 +52,20 @@ public class BlockedUserService {
 
         // Создаем новую запись о блокировке
         BlockedUser blockedUser = new BlockedUser(botId, telegramId);
-        return blockedUserRepository.save(blockedUser);
+        BlockedUser saved = blockedUserRepository.save(blockedUser);
+        listChanged(botId);
+        return saved;
+    }
+
+    /**
+     * Блокирует пользователя и в той же транзакции ставит уведомление в outbox
+     */
+    @Transactional
+    public BlockedUser blockUser(Long botId, Long telegramId, BotApiMethod<?> notification) {
+        BlockedUser blockedUser = blockUser(botId, telegramId);
+        // Повторная блокировка не отправляет уведомление еще раз
+        outboxService.enqueue(botId, "block:" + botId + ":" + blockedUser.getId(), notification);
+        return blockedUser;
     }
 
     /**
@@ -42,13 +74,28 @@ public class BlockedUserService {
     @Transactional
     public void unblockUser(Long botId, Long telegramId) {
         blockedUserRepository.deleteByBotIdAndTelegramId(botId, telegramId);
+        listChanged(botId);
+    }
+
+    /**
+     * Разблокирует пользователя и в той же транзакции ставит уведомление в outbox
+     */
+    @Transactional
+    public void unblockUser(Long botId, Long telegramId, BotApiMethod<?> notification) {
+        BlockedUser blockedUser = blockedUserRepository.findByBotIdAndTelegramId(botId, telegramId).orElse(null);
+        // Повторная разблокировка не отправляет уведомление еще раз
+        if (blockedUser == null) {
+            return;
+        }
+        unblockUser(botId, telegramId);
+        outboxService.enqueue(botId, "unblock:" + botId + ":" + blockedUser.getId(), notification);
     }
 
     /**
      * Проверяет, заблокирован ли пользователь
      */
     public boolean isBlocked(Long botId, Long telegramId) {
-        return blockedUserRepository.existsByBotIdAndTelegramId(botId, telegramId);
+        return blockedCache.contains(botId, telegramId);
     }
 
     /**
@@ -72,5 +119,38 @@ public class BlockedUserService {
     public void clearBlockedUsers(Long botId) {
         List<BlockedUser> blockedUsers = blockedUserRepository.findByBotId(botId);
         blockedUserRepository.deleteAll(blockedUsers);
+        listChanged(botId);
+    }
+
+    /**
+     * Удаляет из кэша список заблокированных пользователей остановленного бота
+     */
+    public void evictBot(Long botId) {
+        blockedCache.invalidate(botId);
+    }
+
+    /**
+     * Сбрасывает закэшированные списки, измененные на других экземплярах
+     */
+    @Scheduled(fixedDelayString = "${telegram.members.version-check-ms:5000}")
+    public void evictStale() {
+        Set<Long> botIds = blockedCache.cachedBotIds();
+        if (botIds.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Long> versions = new HashMap<>();
+        for (Object[] row : botRepository.findMembersVersions(botIds)) {
+            versions.put((Long) row[0], row[1] != null ? (Long) row[1] : 0L);
+        }
+        blockedCache.evictStale(versions);
+    }
+
+    /**
+     * Сбрасывает список заблокированных пользователей на этом экземпляре и увеличивает версию в БД для остальных
+     */
+    private void listChanged(Long botId) {
+        botRepository.incrementMembersVersion(botId);
+        blockedCache.invalidate(botId);
     }
-}
\ No newline at end of file
+}
@@ -1,14 +1,21 @@
 package com.telegramproposalbot.service;
 
+import com.telegramproposalbot.cache.MembershipCache;
 import com.telegramproposalbot.entity.BotAdmin;
 import com.telegramproposalbot.exception.UnauthorizedException;
 import com.telegramproposalbot.repository.BotAdminRepository;
+import com.telegramproposalbot.repository.BotRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -19,11 +26,21 @@ public class BotAdminService {
 
     private final BotAdminRepository botAdminRepository;
     private final SubscriptionService subscriptionService;
+    private final BotRepository botRepository;
+
+    // Кэш списков администраторов ботов
+    private final MembershipCache adminCache;
 
     @Autowired
-    public BotAdminService(BotAdminRepository botAdminRepository, SubscriptionService subscriptionService) {
+    public BotAdminService(BotAdminRepository botAdminRepository, SubscriptionService subscriptionService,
+                           BotRepository botRepository) {
         this.botAdminRepository = botAdminRepository;
         this.subscriptionService = subscriptionService;
+        this.botRepository = botRepository;
+        this.adminCache = new MembershipCache(botId -> botAdminRepository.findTelegramIdsByBotId(botId).stream()
+                        .mapToLong(Long::longValue)
+                        .toArray(),
+                botId -> botRepository.findMembersVersion(botId).orElse(0L));
     }
 
     /**
@@ -59,7 +76,9 @@ public class BotAdminService {
         admin.setMainAdmin(isMainAdmin);
         admin.setCreatedAt(new Date());
 
-        return botAdminRepository.save(admin);
+        BotAdmin saved = botAdminRepository.save(admin);
+        listChanged(botId);
+        return saved;
     }
 
     /**
@@ -82,13 +101,14 @@ public class BotAdminService {
 
         // Удаляем администратора
         botAdminRepository.deleteByBotIdAndTelegramId(botId, telegramId);
+        listChanged(botId);
     }
 
     /**
      * Проверяет, является ли пользователь администратором бота
      */
     public boolean isAdmin(Long botId, Long telegramId) {
-        return botAdminRepository.existsByBotIdAndTelegramId(botId, telegramId);
+        return adminCache.contains(botId, telegramId);
     }
 
     /**
@@ -111,8 +131,8 @@ public class BotAdminService {
      * Получает список ID всех администраторов бота
      */
     public List<Long> getAdminIds(Long botId) {
-        return botAdminRepository.findByBotId(botId).stream()
-                .map(BotAdmin::getTelegramId)
+        return Arrays.stream(adminCache.snapshot(botId).toArray())
+                .boxed()
                 .collect(Collectors.toList());
     }
 
@@ -130,5 +150,38 @@ public class BotAdminService {
     public void deleteAdminsByBotId(Long botId) {
         List<BotAdmin> admins = botAdminRepository.findByBotId(botId);
         botAdminRepository.deleteAll(admins);
+        listChanged(botId);
+    }
+
+    /**
+     * Удаляет из кэша список администраторов остановленного бота
+     */
+    public void evictBot(Long botId) {
+        adminCache.invalidate(botId);
+    }
+
+    /**
+     * Сбрасывает закэшированные списки, измененные на других экземплярах
+     */
+    @Scheduled(fixedDelayString = "${telegram.members.version-check-ms:5000}")
+    public void evictStale() {
+        Set<Long> botIds = adminCache.cachedBotIds();
+        if (botIds.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Long> versions = new HashMap<>();
+        for (Object[] row : botRepository.findMembersVersions(botIds)) {
+            versions.put((Long) row[0], row[1] != null ? (Long) row[1] : 0L);
+        }
+        adminCache.evictStale(versions);
+    }
+
+    /**
+     * Сбрасывает список администраторов на этом экземпляре и увеличивает версию в БД для остальных
+     */
+    private void listChanged(Long botId) {
+        botRepository.incrementMembersVersion(botId);
+        adminCache.invalidate(botId);
     }
-}
\ No newline at end of file
+}
@@ -1,8 +1,11 @@
 package com.telegramproposalbot.service;
 
+import com.telegramproposalbot.cache.TransactionHooks;
+import com.telegramproposalbot.cluster.ClusterMembership;
 import com.telegramproposalbot.dto.BotSettingsDTO;
 import com.telegramproposalbot.entity.Bot;
 import com.telegramproposalbot.entity.BotSettings;
+import com.telegramproposalbot.entity.ScheduledPost;
 import com.telegramproposalbot.entity.User;
 import com.telegramproposalbot.exception.BotCreationException;
 import com.telegramproposalbot.exception.BotNotFoundException;
@@ -10,16 +13,32 @@ import com.telegramproposalbot.exception.UnauthorizedException;
 import com.telegramproposalbot.repository.BotRepository;
 import com.telegramproposalbot.repository.BotSettingsRepository;
 import com.telegramproposalbot.telegram.bot.ProposalBot;
+import com.telegramproposalbot.telegram.engine.LongPollingEngine;
+import com.telegramproposalbot.telegram.engine.MediaGroupCollector;
+import com.telegramproposalbot.telegram.engine.OutboundSender;
+import com.telegramproposalbot.telegram.engine.TelegramApiClient;
+import com.telegramproposalbot.telegram.engine.UpdateDispatcher;
+import com.telegramproposalbot.telegram.engine.WebhookRegistrar;
+import com.telegramproposalbot.telegram.runtime.BotConfig;
+import com.telegramproposalbot.telegram.runtime.BotConfigChangedEvent;
+import com.telegramproposalbot.telegram.runtime.BotRuntimeRegistry;
+import com.telegramproposalbot.telegram.runtime.ControlMessageUpdater;
+import com.telegramproposalbot.telegram.runtime.ProposalBotFactory;
 import jakarta.activation.DataHandler;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
-import org.telegram.telegrambots.meta.TelegramBotsApi;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.telegram.telegrambots.meta.api.methods.PartialBotApiMethod;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import org.springframework.context.ApplicationContext;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 
 
 @Service
@@ -27,18 +46,38 @@ public class BotService {
 
     private final BotRepository botRepository;
     private final BotSettingsRepository botSettingsRepository;
+    private final BotSettingsService botSettingsService;
     private final BotAdminService botAdminService;
-    private final TelegramBotsApi telegramBotsApi;
+    private final LongPollingEngine pollingEngine;
+    private final WebhookRegistrar webhookRegistrar;
+    private final UpdateDispatcher updateDispatcher;
+    private final MediaGroupCollector mediaGroupCollector;
+    private final ControlMessageUpdater controlMessageUpdater;
+    private final OutboundSender outboundSender;
     private final SubscriptionService subscriptionService;
     private final ChannelService channelService;
     private final BlockedUserService blockedUserService;
-
-    @Autowired
-    private ApplicationContext applicationContext;
-
-
-    // Кэш запущенных ботов
-    private final Map<Long, ProposalBot> runningBots = new ConcurrentHashMap<>();
+    private final ProposalService proposalService;
+    private final MessageLinkService messageLinkService;
+    private final ScheduledPostService scheduledPostService;
+    private final OutboxService outboxService;
+    private final FloodControlService floodControlService;
+    private final DuplicateDetectionService duplicateDetectionService;
+    private final ProposalBotFactory proposalBotFactory;
+
+    // Реестр запущенных ботов
+    private final BotRuntimeRegistry runtimeRegistry;
+    private final ClusterMembership clusterMembership;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    // Способ получения обновлений: polling или webhook
+    @Value("${telegram.ingestion.mode:polling}")
+    private String ingestionMode;
+
+    // Сколько ждать обработки принятых обновлений и отправки исходящих при остановке бота
+    @Value("${telegram.lifecycle.drain-timeout-ms:10000}")
+    private long drainTimeoutMillis;
 
     // Кэш состояний администраторов
     private final Map<String, String> adminStates = new ConcurrentHashMap<>();
@@ -46,20 +85,52 @@ public class BotService {
     @Autowired
     public BotService(BotRepository botRepository,
                       BotSettingsRepository botSettingsRepository,
+                      BotSettingsService botSettingsService,
                       BotAdminService botAdminService,
-                      TelegramBotsApi telegramBotsApi,
+                      LongPollingEngine pollingEngine,
+                      WebhookRegistrar webhookRegistrar,
+                      UpdateDispatcher updateDispatcher,
+                      MediaGroupCollector mediaGroupCollector,
+                      ControlMessageUpdater controlMessageUpdater,
+                      OutboundSender outboundSender,
                       SubscriptionService subscriptionService,
                       ChannelService channelService,
                       BlockedUserService blockedUserService,
-                      ApplicationContext applicationContext) {
+                      ProposalService proposalService,
+                      MessageLinkService messageLinkService,
+                      ScheduledPostService scheduledPostService,
+                      OutboxService outboxService,
+                      FloodControlService floodControlService,
+                      DuplicateDetectionService duplicateDetectionService,
+                      ProposalBotFactory proposalBotFactory,
+                      BotRuntimeRegistry runtimeRegistry,
+                      ClusterMembership clusterMembership,
+                      ApplicationEventPublisher eventPublisher,
+                      PlatformTransactionManager transactionManager) {
         this.botRepository = botRepository;
         this.botSettingsRepository = botSettingsRepository;
+        this.botSettingsService = botSettingsService;
         this.botAdminService = botAdminService;
-        this.telegramBotsApi = telegramBotsApi;
+        this.pollingEngine = pollingEngine;
+        this.webhookRegistrar = webhookRegistrar;
+        this.updateDispatcher = updateDispatcher;
+        this.mediaGroupCollector = mediaGroupCollector;
+        this.controlMessageUpdater = controlMessageUpdater;
+        this.outboundSender = outboundSender;
         this.subscriptionService = subscriptionService;
         this.channelService = channelService;
         this.blockedUserService = blockedUserService;
-        this.applicationContext = applicationContext;
+        this.proposalService = proposalService;
+        this.messageLinkService = messageLinkService;
+        this.scheduledPostService = scheduledPostService;
+        this.outboxService = outboxService;
+        this.floodControlService = floodControlService;
+        this.duplicateDetectionService = duplicateDetectionService;
+        this.proposalBotFactory = proposalBotFactory;
+        this.runtimeRegistry = runtimeRegistry;
+        this.clusterMembership = clusterMembership;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     /**
@@ -110,41 +181,143 @@ public class BotService {
      * Запускает бота в Telegram
      */
     public void startBot(Bot bot) throws TelegramApiException {
-        // Проверяем, запущен ли уже этот бот
-        if (runningBots.containsKey(bot.getId())) {
+        // Проверяем, запущен ли уже этот бот и обслуживает ли его этот экземпляр
+        if (runtimeRegistry.contains(bot.getId()) || !shouldRunLocally(bot.getId())) {
             return;
         }
 
-        // Создаем экземпляр бота
-        // Используем конструктор с зависимостями через Spring
-        ProposalBot proposalBot = applicationContext.getBean(ProposalBot.class);
-
-        // Инициализируем бота с токеном и конфигурацией
-        proposalBot.initialize(bot.getToken(), bot);
+        // Создаем отдельный экземпляр бота со своим токеном и конфигурацией
+        ProposalBot proposalBot = proposalBotFactory.create(bot);
 
-        // Регистрируем бота в Telegram API
-        telegramBotsApi.registerBot(proposalBot);
+        // Добавляем в реестр запущенных ботов; при гонке побеждает первый экземпляр
+        if (!runtimeRegistry.register(proposalBot)) {
+            return;
+        }
 
-        // Добавляем в кэш запущенных ботов
-        runningBots.put(bot.getId(), proposalBot);
+        if (isWebhookMode()) {
+            // Обновления будут приходить на общий эндпоинт /tg/{botId}/{secret}
+            try {
+                webhookRegistrar.register(bot.getId(), bot.getToken()).join();
+            } catch (Exception e) {
+                runtimeRegistry.remove(bot.getId());
+                throw new TelegramApiException("Не удалось установить вебхук бота", TelegramApiClient.unwrap(e));
+            }
+        } else {
+            // Подключаем бота к общему движку опроса обновлений
+            pollingEngine.start(proposalBot);
+        }
     }
 
     /**
-     * Останавливает работу бота
+     * Останавливает работу бота на этом экземпляре: прекращает прием обновлений, дожидается обработки уже
+     * принятых и отправки исходящих сообщений, затем освобождает кэши бота.
+     * Ожидание ограничено telegram.lifecycle.drain-timeout-ms, после возврата бота можно запускать снова.
+     * Вебхук бота не удаляется: его используют остальные экземпляры кластера, см. {@link #deactivateBot}.
      */
     public void stopBot(Long botId) {
-        ProposalBot bot = runningBots.remove(botId);
-        if (bot != null) {
-            // TelegramBotsApi не предоставляет метод unregisterBot,
-            // но мы можем остановить обработку обновлений
-            // В реальном приложении нужно корректно обработать остановку
+        // После удаления из реестра вебхуки бота больше не принимаются
+        ProposalBot bot = runtimeRegistry.remove(botId);
+        if (bot == null) {
+            return;
+        }
+        String token = bot.getContext().getToken();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainTimeoutMillis);
+
+        try {
+            if (!isWebhookMode()) {
+                // Прерываем незавершенный getUpdates, иначе новый опрос того же токена получит 409
+                pollingEngine.stop(bot).get(drainTimeoutMillis, TimeUnit.MILLISECONDS);
+            }
+        } catch (Exception e) {
+            System.err.println("Не удалось закрыть прием обновлений бота " + botId + ": " +
+                    TelegramApiClient.unwrap(e).getMessage());
+        }
+
+        // Недособранные альбомы, в том числе начатые последними обновлениями, ставим в очереди чатов
+        // и обрабатываем вместе с ними, пока очереди отправки бота еще открыты
+        boolean drained = awaitUntil(() -> !updateDispatcher.hasPending(bot), deadline);
+        mediaGroupCollector.flush(botId);
+        if (!drained || !awaitUntil(() -> !updateDispatcher.hasPending(bot), deadline)) {
+            System.err.println("Бот " + botId + " остановлен, не дождавшись обработки всех обновлений");
         }
+        updateDispatcher.release(bot);
+        // Ожидающие обновления кнопок отправляем сразу
+        controlMessageUpdater.flush(botId);
+        if (!awaitUntil(() -> outboundSender.getPendingCount(token) == 0, deadline)) {
+            System.err.println("Бот " + botId + " остановлен с неотправленными сообщениями: " +
+                    outboundSender.getPendingCount(token));
+        }
+        outboundSender.release(token);
+        // Связи, созданные последними обновлениями, записываем в БД до очистки кэша
+        messageLinkService.flush();
+
+        proposalService.evictBot(botId);
+        messageLinkService.evictBot(botId);
+        channelService.evictBot(botId);
+        botSettingsService.evict(botId);
+        botAdminService.evictBot(botId);
+        blockedUserService.evictBot(botId);
+        floodControlService.evictBot(botId);
+        duplicateDetectionService.evictBot(botId);
+        adminStates.keySet().removeIf(key -> key.startsWith(botId + ":"));
     }
 
     /**
-     * Перезапускает бота после изменения настроек
+     * Останавливает выключенного или удаленного бота на этом экземпляре и удаляет его вебхук в Telegram.
+     * Остальные экземпляры остановят бота при следующем распределении ботов.
+     */
+    private void deactivateBot(Long botId, String token) {
+        stopBot(botId);
+        if (isWebhookMode()) {
+            try {
+                webhookRegistrar.unregister(token).join();
+            } catch (Exception e) {
+                System.err.println("Не удалось удалить вебхук бота " + botId + ": " +
+                        TelegramApiClient.unwrap(e).getMessage());
+            }
+        }
+    }
+
+    /**
+     * Ожидает выполнения условия не дольше указанного момента
+     *
+     * @return false, если время ожидания истекло
+     */
+    private static boolean awaitUntil(BooleanSupplier condition, long deadlineNanos) {
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() >= deadlineNanos) {
+                return false;
+            }
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Проверяет, должен ли бот работать на этом экземпляре.
+     * При опросе каждого бота опрашивает только один экземпляр кластера, иначе Telegram отвечает 409.
+     * Вебхуки принимает любой экземпляр за балансировщиком, поэтому в этом режиме боты есть на всех.
+     */
+    public boolean shouldRunLocally(Long botId) {
+        return isWebhookMode() || clusterMembership.isLocal(botId);
+    }
+
+    /**
+     * Проверяет, получают ли боты обновления через вебхуки
+     */
+    private boolean isWebhookMode() {
+        return "webhook".equalsIgnoreCase(ingestionMode);
+    }
+
+    /**
+     * Перезапускает бота. Изменения настроек применяются без перезапуска, см. BotConfigReloader.
+     * Без транзакции: остановка ждет завершения обработки и не должна удерживать соединение с БД.
      */
-    @Transactional
     public void restartBot(Long botId) throws BotNotFoundException, TelegramApiException {
         Bot bot = botRepository.findById(botId)
                 .orElseThrow(() -> new BotNotFoundException("Бот не найден"));
@@ -169,16 +342,18 @@ public class BotService {
         // Автоматическое форматирование публикуемых сообщений
         defaultSettings.add(new BotSettings(botId, "auto_format", "true"));
 
+        // Лимиты сообщений одного пользователя: количество/секунды через запятую
+        defaultSettings.add(new BotSettings(botId, FloodControlService.SETTING_KEY, "20/60,200/86400"));
+
         botSettingsRepository.saveAll(defaultSettings);
+        botSettingsService.evict(botId);
     }
 
     /**
      * Получает настройку бота по ключу
      */
     public String getBotSetting(Long botId, String key, String defaultValue) {
-        return botSettingsRepository.findByBotIdAndKey(botId, key)
-                .map(BotSettings::getValue)
-                .orElse(defaultValue);
+        return botSettingsService.getSetting(botId, key, defaultValue);
     }
 
     /**
@@ -263,21 +438,14 @@ public class BotService {
      * Получает все настройки бота
      */
     public Map<String, String> getBotSettingsMap(Long botId) {
-        List<BotSettings> settings = botSettingsRepository.findByBotId(botId);
-        Map<String, String> settingsMap = new HashMap<>();
-
-        for (BotSettings setting : settings) {
-            settingsMap.put(setting.getKey(), setting.getValue());
-        }
-
-        return settingsMap;
+        return botSettingsService.getSnapshot(botId).asMap();
     }
 
     /**
      * Проверяет, доступна ли Premium функция
      */
-    public boolean hasPremiumFeature(Bot bot, String feature) {
-        return subscriptionService.hasPremiumFeature(bot.getOwnerId(), feature);
+    public boolean hasPremiumFeature(Long ownerId, String feature) {
+        return subscriptionService.hasPremiumFeature(ownerId, feature);
     }
 
     /**
@@ -288,13 +456,25 @@ public class BotService {
     }
 
     /**
-     * Планирует отложенную публикацию
+     * Планирует отложенную публикацию предложения или переносит уже запланированную
+     */
+    public ScheduledPost schedulePublication(Long botId, Long userId, Integer messageId, Long channelId,
+                                             PartialBotApiMethod<?> publication, Date scheduledDate) {
+        return scheduledPostService.schedule(botId, userId, messageId, channelId, publication, scheduledDate);
+    }
+
+    /**
+     * Находит запланированную публикацию предложения
      */
-    public void schedulePublication(Long botId, Long channelId, String text, Date scheduledDate) {
-        // В реальном приложении здесь будет логика для планирования публикации
-        // Можно использовать Spring Scheduler или другие механизмы
-        System.out.println("Запланирована публикация для бота " + botId +
-                " в канал " + channelId + " на " + scheduledDate);
+    public ScheduledPost getScheduledPublication(Long botId, Long userId, Integer messageId) {
+        return scheduledPostService.getScheduledPost(botId, userId, messageId);
+    }
+
+    /**
+     * Отменяет отложенную публикацию предложения
+     */
+    public boolean cancelScheduledPublication(Long botId, Long userId, Integer messageId) {
+        return scheduledPostService.cancel(botId, userId, messageId);
     }
 
     /**
@@ -336,8 +516,7 @@ public class BotService {
                 .orElseThrow(() -> new BotNotFoundException("Бот не найден"));
 
         bot.setName(name);
-        bot.setUpdatedAt(new Date());
-        return botRepository.save(bot);
+        return saveConfig(bot, false);
     }
 
     /**
@@ -349,8 +528,7 @@ public class BotService {
                 .orElseThrow(() -> new BotNotFoundException("Бот не найден"));
 
         bot.setWelcomeMessage(welcomeMessage);
-        bot.setUpdatedAt(new Date());
-        return botRepository.save(bot);
+        return saveConfig(bot, false);
     }
 
     /**
@@ -362,8 +540,7 @@ public class BotService {
                 .orElseThrow(() -> new BotNotFoundException("Бот не найден"));
 
         bot.setConfirmationMessage(confirmationMessage);
-        bot.setUpdatedAt(new Date());
-        return botRepository.save(bot);
+        return saveConfig(bot, false);
     }
 
     /**
@@ -371,42 +548,34 @@ public class BotService {
      */
     @Transactional
     public BotSettings saveBotSetting(Long botId, String key, String value) {
-        Optional<BotSettings> existingSetting = botSettingsRepository.findByBotIdAndKey(botId, key);
-
-        if (existingSetting.isPresent()) {
-            BotSettings setting = existingSetting.get();
-            setting.setValue(value);
-            setting.setUpdatedAt(new Date());
-            return botSettingsRepository.save(setting);
-        } else {
-            BotSettings newSetting = new BotSettings(botId, key, value);
-            return botSettingsRepository.save(newSetting);
-        }
+        return botSettingsService.saveSettings(botId, Map.of(key, value)).get(0);
     }
 
     /**
-     * Включает/выключает бота
+     * Включает/выключает бота.
+     * Без транзакции: состояние фиксируется отдельной транзакцией, а запуск и остановка выполняются
+     * после нее - остановка ждет завершения обработки и не должна удерживать соединение с БД.
      */
-    @Transactional
     public Bot toggleBotActive(Long botId, boolean active) throws BotNotFoundException {
         Bot bot = botRepository.findById(botId)
                 .orElseThrow(() -> new BotNotFoundException("Бот не найден"));
 
         bot.setActive(active);
         bot.setUpdatedAt(new Date());
+        Bot saved = transactionTemplate.execute(status -> botRepository.save(bot));
 
         // Если бот включается, запускаем его, иначе останавливаем
         if (active) {
             try {
-                startBot(bot);
+                startBot(saved);
             } catch (TelegramApiException e) {
                 throw new RuntimeException("Ошибка при запуске бота", e);
             }
         } else {
-            stopBot(botId);
+            deactivateBot(botId, saved.getToken());
         }
 
-        return botRepository.save(bot);
+        return saved;
     }
 
     /**
@@ -459,40 +628,71 @@ public class BotService {
             bot.setConfirmationMessage(settings.getConfirmationMessage());
         }
 
-        // Обновляем дополнительные настройки
+        // Обновляем дополнительные настройки одним изменением версии
+        Map<String, String> changedSettings = new HashMap<>();
         if (settings.getPublicationFooter() != null) {
-            saveBotSetting(botId, "publication_footer", settings.getPublicationFooter());
+            changedSettings.put("publication_footer", settings.getPublicationFooter());
         }
 
         if (settings.getAutoFormat() != null) {
-            saveBotSetting(botId, "auto_format", settings.getAutoFormat().toString());
+            changedSettings.put("auto_format", settings.getAutoFormat().toString());
         }
 
         if (settings.getShowStatistics() != null) {
-            saveBotSetting(botId, "show_statistics", settings.getShowStatistics().toString());
+            changedSettings.put("show_statistics", settings.getShowStatistics().toString());
+        }
+
+        // saveSettings увеличивает версию в БД и у этой же сущности бота
+        boolean settingsChanged = !changedSettings.isEmpty();
+        if (settingsChanged) {
+            botSettingsService.saveSettings(botId, changedSettings);
         }
 
+        return saveConfig(bot, settingsChanged);
+    }
+
+    /**
+     * Сохраняет измененную конфигурацию бота с новой версией и после фиксации
+     * публикует событие, по которому запущенный экземпляр подменяет конфигурацию
+     *
+     * @param versionBumped версия уже увеличена сохранением настроек в этой транзакции
+     */
+    private Bot saveConfig(Bot bot, boolean versionBumped) {
+        if (!versionBumped) {
+            bot.setSettingsVersion(botSettingsService.incrementVersion(bot.getId()));
+        }
         bot.setUpdatedAt(new Date());
-        return botRepository.save(bot);
+        Bot saved = botRepository.save(bot);
+
+        BotConfig config = BotConfig.from(saved);
+        TransactionHooks.afterCommit(() -> eventPublisher.publishEvent(new BotConfigChangedEvent(config)));
+        return saved;
     }
 
     /**
-     * Удаляет бота
+     * Удаляет бота. Без транзакции: бот останавливается после фиксации удаления.
      */
-    @Transactional
     public void deleteBot(Long botId) throws BotNotFoundException {
         Bot bot = getBotById(botId);
 
-        // Останавливаем бота, если он запущен
-        stopBot(botId);
+        transactionTemplate.executeWithoutResult(status -> {
+            // Удаляем связанные записи
+            botAdminService.deleteAdminsByBotId(botId);
+            blockedUserService.clearBlockedUsers(botId);
+            channelService.deleteChannelsByBotId(botId);
+            botSettingsRepository.deleteByBotId(botId);
+            botSettingsService.evict(botId);
+            // Отложенные публикации и неотправленные запросы бота после удаления не нужны
+            scheduledPostService.deleteScheduledPostsByBotId(botId);
+            outboxService.deleteMessagesByBotId(botId);
+            messageLinkService.deleteLinksByBotId(botId);
+            proposalService.deleteProposalsByBotId(botId);
+
+            // Удаляем самого бота
+            botRepository.delete(bot);
+        });
 
-        // Удаляем связанные записи
-        botAdminService.deleteAdminsByBotId(botId);
-        blockedUserService.clearBlockedUsers(botId);
-        channelService.deleteChannelsByBotId(botId);
-        botSettingsRepository.deleteByBotId(botId);
-
-        // Удаляем самого бота
-        botRepository.delete(bot);
+        // Останавливаем бота, если он запущен
+        deactivateBot(botId, bot.getToken());
     }
 }
\ No newline at end of file
@@ -0,0 +1,157 @@
+package com.telegramproposalbot.service;
+
+import com.telegramproposalbot.cache.BotSettingsSnapshot;
+import com.telegramproposalbot.cache.TransactionHooks;
+import com.telegramproposalbot.entity.BotSettings;
+import com.telegramproposalbot.repository.BotRepository;
+import com.telegramproposalbot.repository.BotSettingsRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Сервис настроек ботов с кэшем неизменяемых снимков.
+ * Чтение настроек не обращается к БД. При изменении снимок заменяется целиком после фиксации транзакции.
+ * Версия снимка совпадает с bots.settings_version, поэтому другие узлы могут обнаружить устаревший снимок.
+ */
+@Service
+public class BotSettingsService {
+
+    private final BotSettingsRepository botSettingsRepository;
+    private final BotRepository botRepository;
+    private final Map<Long, BotSettingsSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    @Autowired
+    public BotSettingsService(BotSettingsRepository botSettingsRepository, BotRepository botRepository) {
+        this.botSettingsRepository = botSettingsRepository;
+        this.botRepository = botRepository;
+    }
+
+    /**
+     * Возвращает снимок настроек бота, загружая его при необходимости
+     */
+    public BotSettingsSnapshot getSnapshot(Long botId) {
+        BotSettingsSnapshot snapshot = snapshots.get(botId);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        return publish(load(botId));
+    }
+
+    /**
+     * Получает настройку бота по ключу
+     */
+    public String getSetting(Long botId, String key, String defaultValue) {
+        return getSnapshot(botId).get(key, defaultValue);
+    }
+
+    /**
+     * Сохраняет настройки бота и увеличивает их версию
+     */
+    @Transactional
+    public List<BotSettings> saveSettings(Long botId, Map<String, String> changes) {
+        List<BotSettings> saved = new ArrayList<>();
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+            BotSettings setting = botSettingsRepository.findByBotIdAndKey(botId, change.getKey())
+                    .orElseGet(() -> new BotSettings(botId, change.getKey(), null));
+            setting.setValue(change.getValue());
+            setting.setUpdatedAt(new Date());
+            saved.add(botSettingsRepository.save(setting));
+        }
+
+        long version = incrementVersion(botId);
+        // Сущность бота в этой транзакции получает ту же версию для события смены конфигурации
+        botRepository.findById(botId).ifPresent(bot -> bot.setSettingsVersion(version));
+
+        Map<String, String> applied = new HashMap<>(changes);
+        TransactionHooks.afterCommit(() -> {
+            BotSettingsSnapshot current = snapshots.get(botId);
+            // Изменение применяется только к непосредственно предыдущей версии: иначе снимок
+            // пропустил бы изменения других узлов, получив при этом актуальную версию
+            if (current != null && version > 0 && current.getVersion() == version - 1) {
+                publish(current.with(applied, version));
+            } else {
+                snapshots.remove(botId);
+            }
+        });
+        return saved;
+    }
+
+    /**
+     * Атомарно увеличивает версию настроек бота в БД
+     *
+     * @return новая версия или -1, если бота нет
+     */
+    @Transactional
+    public long incrementVersion(Long botId) {
+        if (botRepository.incrementSettingsVersion(botId) == 0) {
+            return -1;
+        }
+        // Транзакция видит свое изменение, а строка заблокирована до ее фиксации
+        return botRepository.findSettingsVersion(botId).orElse(-1L);
+    }
+
+    /**
+     * Удаляет снимок настроек бота из кэша
+     */
+    public void evict(Long botId) {
+        snapshots.remove(botId);
+        TransactionHooks.afterCommit(() -> snapshots.remove(botId));
+    }
+
+    /**
+     * Проверяет, отстает ли закэшированный снимок от версии в БД
+     */
+    public boolean isStale(Long botId) {
+        BotSettingsSnapshot snapshot = snapshots.get(botId);
+        if (snapshot == null) {
+            return false;
+        }
+        long dbVersion = botRepository.findSettingsVersion(botId).orElse(0L);
+        return dbVersion != snapshot.getVersion();
+    }
+
+    /**
+     * Сбрасывает снимки, измененные на других узлах
+     */
+    @Scheduled(fixedDelayString = "${telegram.settings.version-check-ms:30000}")
+    public void dropStaleSnapshots() {
+        if (snapshots.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Long> versions = new HashMap<>();
+        for (Object[] row : botRepository.findSettingsVersions(new ArrayList<>(snapshots.keySet()))) {
+            versions.put((Long) row[0], row[1] != null ? (Long) row[1] : 0L);
+        }
+
+        snapshots.forEach((botId, snapshot) -> {
+            Long dbVersion = versions.get(botId);
+            if (dbVersion == null || dbVersion != snapshot.getVersion()) {
+                snapshots.remove(botId, snapshot);
+            }
+        });
+    }
+
+    private BotSettingsSnapshot load(Long botId) {
+        // Версию читаем до настроек: при гонке снимок окажется старее и будет сброшен проверкой версий
+        long version = botRepository.findSettingsVersion(botId).orElse(0L);
+        Map<String, String> values = new HashMap<>();
+        for (BotSettings setting : botSettingsRepository.findByBotId(botId)) {
+            values.put(setting.getKey(), setting.getValue());
+        }
+        return new BotSettingsSnapshot(botId, version, values);
+    }
+
+    /**
+     * Публикует снимок, если он не старее уже закэшированного
+     */
+    private BotSettingsSnapshot publish(BotSettingsSnapshot snapshot) {
+        return snapshots.merge(snapshot.getBotId(), snapshot,
+                (current, candidate) -> candidate.getVersion() >= current.getVersion() ? candidate : current);
+    }
+}
@@ -0,0 +1,270 @@
+package com.telegramproposalbot.service;
+
+import com.telegramproposalbot.cache.ChannelInfo;
+import com.telegramproposalbot.entity.Proposal;
+import com.telegramproposalbot.entity.ProposalPublication;
+import com.telegramproposalbot.repository.ProposalPublicationRepository;
+import com.telegramproposalbot.telegram.engine.NamedThreadFactory;
+import com.telegramproposalbot.telegram.engine.OutboundSender;
+import com.telegramproposalbot.telegram.engine.TelegramApiClient;
+import com.telegramproposalbot.telegram.runtime.BotRuntimeRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.telegram.telegrambots.meta.api.methods.PartialBotApiMethod;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.MessageId;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Публикация одного предложения сразу в несколько каналов.
+ * Перед отправкой предложение переводится в статус PUBLISHING, поэтому второй администратор
+ * не может опубликовать или отклонить его параллельно. В той же транзакции для каждого канала
+ * записывается результат UNKNOWN: с этого момента сообщение могло выйти в канал. Запросы ко всем
+ * каналам ставятся в OutboundSender одновременно: у каждого канала своя очередь и свой лимит,
+ * поэтому медленный канал не задерживает остальные. Ответ по каждому каналу записывается в БД,
+ * как только он получен, в том числе после таймаута.
+ * <p>
+ * Когда ответили все каналы или истек timeout-seconds, предложение отмечается опубликованным,
+ * если хотя бы одна публикация удалась или не подтверждена, и возвращается на рассмотрение,
+ * только если все каналы ответили ошибкой. Повторная публикация неподтвержденного сообщения
+ * дала бы дубль, поэтому такие каналы администраторы проверяют вручную.
+ * <p>
+ * Если экземпляр упал во время публикации или запись результатов не удалась, предложение
+ * осталось бы в PUBLISHING навсегда. Такие предложения периодически находит экземпляр,
+ * на котором запущен бот, и завершает по уже записанным результатам по тем же правилам.
+ */
+@Service
+public class ChannelPublicationService {
+
+    private final OutboundSender sender;
+    private final ProposalService proposalService;
+    private final ProposalPublicationRepository publicationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final BotRuntimeRegistry runtimeRegistry;
+    private final long timeoutSeconds;
+    private final long staleMillis;
+
+    // Запись результатов выполняется не в потоках HTTP-клиента
+    private final ExecutorService completionExecutor =
+            Executors.newSingleThreadExecutor(new NamedThreadFactory("channel-publish-"));
+
+    @Autowired
+    public ChannelPublicationService(OutboundSender sender,
+                                     ProposalService proposalService,
+                                     ProposalPublicationRepository publicationRepository,
+                                     PlatformTransactionManager transactionManager,
+                                     BotRuntimeRegistry runtimeRegistry,
+                                     @Value("${telegram.publish.timeout-seconds:60}") long timeoutSeconds,
+                                     @Value("${telegram.publish.stale-after-seconds:300}") long staleAfterSeconds) {
+        this.sender = sender;
+        this.proposalService = proposalService;
+        this.publicationRepository = publicationRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.runtimeRegistry = runtimeRegistry;
+        this.timeoutSeconds = timeoutSeconds;
+        this.staleMillis = TimeUnit.SECONDS.toMillis(staleAfterSeconds);
+    }
+
+    /**
+     * Публикует предложение во все переданные каналы одновременно.
+     * Запросы onPublished (например, уведомление автора) ставятся в outbox, если удалась хотя бы одна публикация.
+     *
+     * @return результаты по каналам на момент завершения или null, если предложение уже публикуется или обработано
+     */
+    public CompletableFuture<List<ProposalPublication>> publish(String token, Proposal proposal,
+                                                                List<ChannelPost> posts,
+                                                                List<? extends PartialBotApiMethod<?>> onPublished) {
+        List<ProposalPublication> publications = transactionTemplate.execute(status -> start(proposal, posts));
+        if (publications == null) {
+            return null;
+        }
+
+        List<CompletableFuture<?>> answers = new ArrayList<>(posts.size());
+        for (int i = 0; i < posts.size(); i++) {
+            ChannelPost post = posts.get(i);
+            if (post.method() == null) {
+                continue;
+            }
+            ProposalPublication publication = publications.get(i);
+            // Ответ записывается, когда бы он ни пришел. Таймаут ставится на копию: сам запрос
+            // остается в очереди чата до ответа Telegram, иначе следующий запрос в канал ушел бы раньше
+            CompletableFuture<ProposalPublication> saved = sender.send(token, post.method())
+                    .handleAsync((sent, error) -> {
+                        if (error == null) {
+                            publication.setStatus(ProposalPublication.STATUS_SENT);
+                            publication.setChannelMessageId(messageIdOf(sent));
+                            publication.setError(null);
+                        } else {
+                            publication.setStatus(ProposalPublication.STATUS_FAILED);
+                            publication.setError(truncate(TelegramApiClient.unwrap(error).getMessage()));
+                        }
+                        return publicationRepository.save(publication);
+                    }, completionExecutor);
+            answers.add(saved.copy()
+                    .orTimeout(timeoutSeconds, TimeUnit.SECONDS)
+                    .exceptionally(error -> {
+                        // Без ответа или без записи в БД канал остается UNKNOWN
+                        Throwable cause = TelegramApiClient.unwrap(error);
+                        if (!(cause instanceof TimeoutException)) {
+                            System.err.println("Не удалось записать результат публикации предложения " +
+                                    proposal.getId() + " в канал " + publication.getChannelId() + ": " +
+                                    cause.getMessage());
+                        }
+                        return null;
+                    }));
+        }
+
+        CompletableFuture<List<ProposalPublication>> completed = CompletableFuture
+                .allOf(answers.toArray(new CompletableFuture[0]))
+                .thenApplyAsync(ignored -> transactionTemplate.execute(status -> {
+                    finish(proposal, onPublished);
+                    return publicationRepository.findByProposalId(proposal.getId());
+                }), completionExecutor);
+        completed.whenComplete((result, error) -> {
+            if (error != null) {
+                // Предложение останется в PUBLISHING и будет завершено по записанным результатам
+                System.err.println("Ошибка завершения публикации предложения " + proposal.getId() + ": " +
+                        error.getMessage());
+            }
+        });
+        return completed;
+    }
+
+    /**
+     * Результаты публикации предложения по каналам
+     */
+    public List<ProposalPublication> getPublications(Proposal proposal) {
+        return publicationRepository.findByProposalId(proposal.getId());
+    }
+
+    /**
+     * Завершает публикации, зависшие в PUBLISHING: предложение отмечается опубликованным,
+     * если в БД есть удачная или неподтвержденная публикация, иначе возвращается на рассмотрение.
+     * Кнопки у всех администраторов обновит ControlMessageUpdater, поэтому зависшие предложения
+     * обрабатывает только экземпляр, на котором запущен бот.
+     */
+    @Scheduled(fixedDelayString = "${telegram.publish.sweep-interval-ms:60000}")
+    public void recoverStale() {
+        // Выбираем только предложения своих ботов, иначе чужие заняли бы все 100 мест в выборке
+        List<Long> botIds = List.copyOf(runtimeRegistry.getBotIds());
+        for (Proposal proposal : proposalService.findStuck(botIds, Proposal.STATUS_PUBLISHING, staleMillis)) {
+            try {
+                Proposal finished = transactionTemplate.execute(status -> finish(proposal, List.of()));
+                if (finished != null) {
+                    System.out.println("Зависшая публикация предложения " + proposal.getId() + " завершена: " +
+                            finished.getStatus());
+                }
+            } catch (Exception e) {
+                System.err.println("Не удалось завершить зависшую публикацию предложения " + proposal.getId() + ": " +
+                        e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Переводит предложение в PUBLISHING и записывает для каждого канала результат UNKNOWN,
+     * а для недоступных каналов сразу FAILED
+     *
+     * @return результаты в порядке каналов или null, если статус изменить не удалось
+     */
+    private List<ProposalPublication> start(Proposal proposal, List<ChannelPost> posts) {
+        if (proposalService.updateStatus(proposal.getBotId(), proposal.getChatId(), proposal.getMessageId(),
+                Proposal.STATUS_PUBLISHING) == null) {
+            return null;
+        }
+        // Прошлые попытки могли закончиться только ошибками во всех каналах
+        publicationRepository.deleteByProposalId(proposal.getId());
+
+        List<ProposalPublication> publications = new ArrayList<>(posts.size());
+        for (ChannelPost post : posts) {
+            publications.add(post.method() == null
+                    ? failed(proposal, post, post.error())
+                    : unknown(proposal, post, "нет ответа от Telegram за " + timeoutSeconds + " с"));
+        }
+        return publicationRepository.saveAll(publications);
+    }
+
+    /**
+     * Завершает публикацию по записанным результатам: предложение отмечается опубликованным,
+     * если хотя бы одна публикация удалась или не подтверждена, иначе возвращается на рассмотрение
+     *
+     * @return обновленное предложение или null, если его статус уже изменил кто-то другой
+     */
+    private Proposal finish(Proposal proposal, List<? extends PartialBotApiMethod<?>> onPublished) {
+        List<ProposalPublication> publications = publicationRepository.findByProposalId(proposal.getId());
+        if (publications.stream().anyMatch(ProposalPublication::isSent)) {
+            return proposalService.updateStatus(proposal.getBotId(), proposal.getChatId(), proposal.getMessageId(),
+                    Proposal.STATUS_PUBLISHED, onPublished);
+        } else if (publications.stream().anyMatch(ProposalPublication::isUnknown)) {
+            // Сообщение могло выйти в канал: автора не уведомляем, пока публикация не подтверждена
+            return proposalService.updateStatus(proposal.getBotId(), proposal.getChatId(), proposal.getMessageId(),
+                    Proposal.STATUS_PUBLISHED);
+        }
+        return proposalService.updateStatus(proposal.getBotId(), proposal.getChatId(), proposal.getMessageId(),
+                Proposal.STATUS_PENDING);
+    }
+
+    private static ProposalPublication unknown(Proposal proposal, ChannelPost post, String error) {
+        ProposalPublication publication = new ProposalPublication(proposal.getId(), proposal.getBotId(),
+                post.channel().getChatId(), ProposalPublication.STATUS_UNKNOWN);
+        publication.setError(error);
+        return publication;
+    }
+
+    private static ProposalPublication failed(Proposal proposal, ChannelPost post, String error) {
+        ProposalPublication publication = new ProposalPublication(proposal.getId(), proposal.getBotId(),
+                post.channel().getChatId(), ProposalPublication.STATUS_FAILED);
+        publication.setError(truncate(error));
+        return publication;
+    }
+
+    private static String truncate(String error) {
+        return error != null && error.length() > 1000 ? error.substring(0, 1000) : error;
+    }
+
+    /**
+     * ID сообщения в канале из ответа sendMessage, sendPhoto, sendMediaGroup или copyMessage
+     */
+    private static Integer messageIdOf(Object sent) {
+        if (sent instanceof Message message) {
+            return message.getMessageId();
+        } else if (sent instanceof List<?> messages && !messages.isEmpty()
+                && messages.get(0) instanceof Message first) {
+            return first.getMessageId();
+        } else if (sent instanceof MessageId messageId && messageId.getMessageId() != null) {
+            return messageId.getMessageId().intValue();
+        }
+        return null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        completionExecutor.shutdown();
+    }
+
+    /**
+     * Публикация в один канал. Если method равен null, в канал публиковать нельзя по причине error.
+     */
+    public record ChannelPost(ChannelInfo channel, PartialBotApiMethod<?> method, String error) {
+
+        public static ChannelPost of(ChannelInfo channel, PartialBotApiMethod<?> method) {
+            return new ChannelPost(channel, method, null);
+        }
+
+        public static ChannelPost unavailable(ChannelInfo channel, String error) {
+            return new ChannelPost(channel, null, error);
+        }
+    }
+}
@@ -1,23 +1,43 @@
 package com.telegramproposalbot.service;
 
+import com.telegramproposalbot.cache.ChannelInfo;
+import com.telegramproposalbot.cache.TransactionHooks;
 import com.telegramproposalbot.entity.Bot;
 import com.telegramproposalbot.entity.Channel;
 import com.telegramproposalbot.exception.BotNotFoundException;
 import com.telegramproposalbot.repository.BotRepository;
 import com.telegramproposalbot.repository.ChannelRepository;
+import com.telegramproposalbot.telegram.engine.OutboundSender;
+import com.telegramproposalbot.telegram.engine.TelegramApiClient;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-
+import org.telegram.telegrambots.meta.api.methods.groupadministration.GetChat;
+import org.telegram.telegrambots.meta.api.methods.groupadministration.GetChatMember;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.chatmember.ChatMember;
+import org.telegram.telegrambots.meta.api.objects.chatmember.ChatMemberAdministrator;
+import org.telegram.telegrambots.meta.api.objects.chatmember.ChatMemberOwner;
 
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /**
- * Сервис для управления каналами Telegram
+ * Сервис для управления каналами Telegram.
+ * Каналы каждого бота держатся в памяти неизменяемым списком, поэтому публикация
+ * не обращается ни к БД, ни к Telegram API. Числовой ID, название и права бота в канале
+ * получаются через getChat при добавлении и периодически обновляются в фоне.
  */
 @Service
 public class ChannelService {
@@ -25,14 +45,32 @@ public class ChannelService {
     private final ChannelRepository channelRepository;
     private final BotRepository botRepository;
     private final SubscriptionService subscriptionService;
+    private final OutboundSender sender;
+    private final long refreshIntervalMillis;
+    private final int refreshBatchSize;
+
+    // Реестр каналов по ID бота
+    private final Map<Long, List<ChannelInfo>> registry = new ConcurrentHashMap<>();
+
+    // Увеличивается при каждом сбросе, чтобы не сохранить список, загруженный до изменения
+    private final AtomicLong generation = new AtomicLong();
+
+    // ID каналов, обновление которых еще не завершено
+    private final Set<Long> refreshing = ConcurrentHashMap.newKeySet();
 
     @Autowired
     public ChannelService(ChannelRepository channelRepository,
                           BotRepository botRepository,
-                          SubscriptionService subscriptionService) {
+                          SubscriptionService subscriptionService,
+                          OutboundSender sender,
+                          @Value("${telegram.channels.refresh-interval-ms:3600000}") long refreshIntervalMillis,
+                          @Value("${telegram.channels.refresh-batch-size:50}") int refreshBatchSize) {
         this.channelRepository = channelRepository;
         this.botRepository = botRepository;
         this.subscriptionService = subscriptionService;
+        this.sender = sender;
+        this.refreshIntervalMillis = refreshIntervalMillis;
+        this.refreshBatchSize = refreshBatchSize;
     }
 
     /**
@@ -58,19 +96,24 @@ public class ChannelService {
             return false;
         }
 
-        // В реальном приложении здесь нужно проверить, является ли бот админом канала
-        // Для этого нужно использовать Telegram API метод getChatAdministrators
-
-        // Создаем и сохраняем новый канал
+        // Получаем числовой ID, название канала и права бота в нем
         Channel channel = new Channel();
         channel.setBotId(botId);
-        // Здесь должен быть запрос к Telegram API для получения channelId
-        // Для примера используем -1 как ID канала
-        channel.setChannelId(-1L);
         channel.setChannelUsername(channelUsername);
-        channel.setChannelTitle("@" + channelUsername); // В реальном приложении получаем из Telegram API
+        try {
+            resolve(bot.getToken(), channel).join();
+        } catch (Exception e) {
+            System.err.println("Не удалось получить канал @" + channelUsername + ": " +
+                    TelegramApiClient.unwrap(e).getMessage());
+            return false;
+        }
+
+        if (channelRepository.existsByBotIdAndChannelId(botId, channel.getChannelId())) {
+            return false;
+        }
 
         channelRepository.save(channel);
+        invalidate(botId);
         return true;
     }
 
@@ -85,6 +128,7 @@ public class ChannelService {
         }
 
         channelRepository.deleteByBotIdAndChannelUsernameIgnoreCase(botId, channelUsername);
+        invalidate(botId);
         return true;
     }
 
@@ -99,32 +143,42 @@ public class ChannelService {
      * Получает список ID всех каналов бота
      */
     public List<Long> getChannelIds(Long botId) {
-        return channelRepository.findByBotId(botId).stream()
-                .map(Channel::getChannelId)
+        return getRegisteredChannels(botId).stream()
+                .map(ChannelInfo::getChatId)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Получает сведения о канале бота из реестра
+     */
+    public ChannelInfo getChannel(Long botId, Long channelId) {
+        for (ChannelInfo channel : getRegisteredChannels(botId)) {
+            if (channel.getChatId() == channelId) {
+                return channel;
+            }
+        }
+        return null;
+    }
+
     /**
      * Получает имя пользователя канала по ID
      */
     public String getChannelUsername(Long botId, Long channelId) {
-        return channelRepository.findByBotIdAndChannelId(botId, channelId)
-                .map(Channel::getChannelUsername)
-                .orElse(null);
+        ChannelInfo channel = getChannel(botId, channelId);
+        return channel != null ? channel.getUsername() : null;
     }
 
     /**
      * Получает информацию о каналах в формате для отображения
      */
     public List<Map<String, String>> getChannelsInfo(Long botId) {
-        List<Channel> channels = channelRepository.findByBotId(botId);
         List<Map<String, String>> channelsInfo = new ArrayList<>();
 
-        for (Channel channel : channels) {
+        for (ChannelInfo channel : getRegisteredChannels(botId)) {
             Map<String, String> info = new HashMap<>();
-            info.put("id", channel.getChannelId().toString());
-            info.put("username", channel.getChannelUsername());
-            info.put("title", channel.getChannelTitle());
+            info.put("id", Long.toString(channel.getChatId()));
+            info.put("username", channel.getUsername());
+            info.put("title", channel.getTitle());
             channelsInfo.add(info);
         }
 
@@ -132,13 +186,83 @@ public class ChannelService {
     }
 
     /**
-     * Проверяет права бота в канале
-     * В реальном приложении должен делать запрос к Telegram API
+     * Возвращает каналы бота из реестра, загружая их из БД при первом обращении
+     */
+    public List<ChannelInfo> getRegisteredChannels(Long botId) {
+        List<ChannelInfo> channels = registry.get(botId);
+        if (channels != null) {
+            return channels;
+        }
+
+        long loadedAt = generation.get();
+        channels = channelRepository.findByBotId(botId).stream()
+                .map(ChannelService::toInfo)
+                .toList();
+        // Если за время загрузки каналы менялись, список не кэшируем
+        if (generation.get() == loadedAt) {
+            List<ChannelInfo> existing = registry.putIfAbsent(botId, channels);
+            if (existing != null) {
+                return existing;
+            }
+        }
+        return channels;
+    }
+
+    /**
+     * Проверяет, может ли бот публиковать сообщения в канале
      */
     public boolean checkBotPermissions(String botToken, String channelUsername) {
-        // Заглушка, в реальном приложении здесь будет проверка прав через Telegram API
-        return true;
+        Channel channel = new Channel();
+        channel.setChannelUsername(channelUsername);
+        try {
+            resolve(botToken, channel).join();
+            return Boolean.TRUE.equals(channel.getCanPostMessages());
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Обновляет в фоне ID, названия и права бота для давно не обновлявшихся каналов.
+     * Каждый канал записывается по завершении своих запросов, поток планировщика их не ждет.
+     */
+    @Scheduled(fixedDelayString = "${telegram.channels.refresh-check-ms:60000}")
+    public void refreshChannels() {
+        Date before = new Date(System.currentTimeMillis() - refreshIntervalMillis);
+        List<Channel> channels = channelRepository.findStale(before, PageRequest.of(0, refreshBatchSize));
+
+        Map<Long, String> tokens = new HashMap<>();
+        for (Channel channel : channels) {
+            // Канал, запросы которого еще не завершились, не запрашиваем повторно
+            if (!refreshing.add(channel.getId())) {
+                continue;
+            }
+            String token = tokens.computeIfAbsent(channel.getBotId(),
+                    botId -> botRepository.findById(botId).map(Bot::getToken).orElse(null));
+            if (token == null) {
+                refreshing.remove(channel.getId());
+                continue;
+            }
+            resolve(token, channel).whenComplete((ignored, error) -> {
+                try {
+                    if (error != null) {
+                        System.err.println("Не удалось обновить канал @" + channel.getChannelUsername() + ": " +
+                                TelegramApiClient.unwrap(error).getMessage());
+                        // Повторим попытку в следующем цикле обновления
+                        channel.setRefreshedAt(new Date());
+                    }
+                    channelRepository.save(channel);
+                    invalidate(channel.getBotId());
+                } catch (Exception e) {
+                    System.err.println("Не удалось сохранить канал @" + channel.getChannelUsername() + ": " +
+                            e.getMessage());
+                } finally {
+                    refreshing.remove(channel.getId());
+                }
+            });
+        }
     }
+
     /**
      * Удаляет все каналы, связанные с ботом
      */
@@ -146,5 +270,60 @@ public class ChannelService {
     public void deleteChannelsByBotId(Long botId) {
         List<Channel> channels = channelRepository.findByBotId(botId);
         channelRepository.deleteAll(channels);
+        invalidate(botId);
+    }
+
+    /**
+     * Удаляет каналы бота из реестра
+     */
+    public void evictBot(Long botId) {
+        registry.remove(botId);
+    }
+
+    /**
+     * Запрашивает у Telegram ID, название канала и права бота и записывает их в сущность
+     */
+    private CompletableFuture<Void> resolve(String token, Channel channel) {
+        String target = channel.getChannelId() != null && channel.getChannelId() != ChannelInfo.UNRESOLVED_ID
+                ? channel.getChannelId().toString()
+                : "@" + channel.getChannelUsername();
+        long botUserId = Long.parseLong(token.substring(0, token.indexOf(':')));
+
+        CompletableFuture<Chat> chat = sender.send(token, new GetChat(target));
+        CompletableFuture<ChatMember> member = sender.send(token, new GetChatMember(target, botUserId));
+        return chat.thenAcceptBoth(member, (chatInfo, botMember) -> {
+            channel.setChannelId(chatInfo.getId());
+            channel.setChannelTitle(chatInfo.getTitle() != null ? chatInfo.getTitle() : "@" + channel.getChannelUsername());
+            if (chatInfo.getUserName() != null) {
+                channel.setChannelUsername(chatInfo.getUserName());
+            }
+            channel.setCanPostMessages(canPost(botMember));
+            channel.setRefreshedAt(new Date());
+        });
+    }
+
+    private static boolean canPost(ChatMember member) {
+        if (member instanceof ChatMemberOwner) {
+            return true;
+        }
+        return member instanceof ChatMemberAdministrator administrator
+                && Boolean.TRUE.equals(administrator.getCanPostMessages());
+    }
+
+    /**
+     * Сбрасывает реестр каналов бота после фиксации транзакции
+     */
+    private void invalidate(Long botId) {
+        generation.incrementAndGet();
+        registry.remove(botId);
+        TransactionHooks.afterCommit(() -> {
+            generation.incrementAndGet();
+            registry.remove(botId);
+        });
+    }
+
+    private static ChannelInfo toInfo(Channel channel) {
+        return new ChannelInfo(channel.getChannelId(), channel.getChannelUsername(), channel.getChannelTitle(),
+                !Boolean.FALSE.equals(channel.getCanPostMessages()));
     }
 }
\ No newline at end of file
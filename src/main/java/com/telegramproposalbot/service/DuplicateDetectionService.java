@@ -0,0 +1,104 @@
+package com.telegramproposalbot.service;
+
+import com.telegramproposalbot.cache.ContentFingerprint;
+import com.telegramproposalbot.cache.FingerprintIndex;
+import com.telegramproposalbot.entity.Proposal;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск повторно присланного содержимого.
+ * Для каждого бота в памяти хранится ограниченный индекс отпечатков недавних предложений.
+ * Если новое сообщение совпадает с предложением, которое еще ждет решения, оно не пересылается
+ * администраторам, а увеличивает счетчик повторов этого предложения.
+ */
+@Service
+public class DuplicateDetectionService {
+
+    private final ProposalService proposalService;
+    private final int indexSize;
+    private final int maxDistance;
+    private final long windowMillis;
+    private final Counter collapsed;
+
+    private final Map<Long, FingerprintIndex<Origin>> indexes = new ConcurrentHashMap<>();
+
+    @Autowired
+    public DuplicateDetectionService(ProposalService proposalService,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${telegram.dedup.index-size:500}") int indexSize,
+                                     @Value("${telegram.dedup.max-distance:10}") int maxDistance,
+                                     @Value("${telegram.dedup.window-hours:72}") long windowHours) {
+        this.proposalService = proposalService;
+        this.indexSize = indexSize;
+        this.maxDistance = maxDistance;
+        this.windowMillis = TimeUnit.HOURS.toMillis(windowHours);
+        this.collapsed = Counter.builder("telegram.dedup.collapsed")
+                .description("Повторные сообщения, учтенные в существующих предложениях")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Находит ожидающее решения предложение с тем же содержимым
+     *
+     * @return исходное предложение или null
+     */
+    public Proposal findDuplicate(Long botId, ContentFingerprint fingerprint) {
+        if (fingerprint == null) {
+            return null;
+        }
+        FingerprintIndex<Origin> index = indexes.get(botId);
+        if (index == null) {
+            return null;
+        }
+
+        Origin origin = index.find(fingerprint, maxDistance, System.currentTimeMillis() - windowMillis);
+        if (origin == null) {
+            return null;
+        }
+        Proposal original = proposalService.getPendingProposal(botId, origin.chatId(), origin.messageId());
+        if (original == null) {
+            // По предложению уже приняли решение: повтор рассматривается как новое предложение
+            index.remove(origin);
+            return null;
+        }
+        return original;
+    }
+
+    /**
+     * Учитывает повтор в исходном предложении
+     */
+    public void collapse(Proposal original) {
+        proposalService.registerDuplicate(original);
+        collapsed.increment();
+    }
+
+    /**
+     * Добавляет отпечаток нового предложения в индекс бота
+     */
+    public void remember(Proposal proposal, ContentFingerprint fingerprint) {
+        if (fingerprint == null) {
+            return;
+        }
+        indexes.computeIfAbsent(proposal.getBotId(), botId -> new FingerprintIndex<>(indexSize))
+                .add(fingerprint, new Origin(proposal.getChatId(), proposal.getMessageId()),
+                        System.currentTimeMillis());
+    }
+
+    /**
+     * Удаляет индекс остановленного бота
+     */
+    public void evictBot(Long botId) {
+        indexes.remove(botId);
+    }
+
+    private record Origin(Long chatId, Integer messageId) {
+    }
+}
@@ -0,0 +1,122 @@
+package com.telegramproposalbot.service;
+
+import com.telegramproposalbot.cache.BotSettingsSnapshot;
+import com.telegramproposalbot.cache.SlidingWindowLimiter;
+import com.telegramproposalbot.cache.SlidingWindowLimiter.Rule;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограничение частоты сообщений пользователей бота.
+ * Лимиты задаются настройкой бота flood_limits в формате "количество/секунды" через запятую,
+ * например "20/60,200/86400"; пустое значение или 0 отключает ограничение.
+ * По умолчанию ограничение выключено: оно действует только для ботов, у которых задана настройка.
+ * Проверка выполняется в памяти, поэтому лишние сообщения отбрасываются до обращений к БД и API.
+ */
+@Service
+public class FloodControlService {
+
+    public static final String SETTING_KEY = "flood_limits";
+
+    private static final Rule[] NO_RULES = new Rule[0];
+
+    private final BotSettingsService botSettingsService;
+    private final SlidingWindowLimiter limiter = new SlidingWindowLimiter();
+    private final String defaultLimits;
+    private final Counter dropped;
+
+    // Разобранные правила привязаны к снимку настроек и обновляются вместе с ним
+    private final Map<Long, ParsedRules> rules = new ConcurrentHashMap<>();
+
+    @Autowired
+    public FloodControlService(BotSettingsService botSettingsService,
+                               MeterRegistry meterRegistry,
+                               @Value("${telegram.flood.default-limits:0}") String defaultLimits) {
+        this.botSettingsService = botSettingsService;
+        this.defaultLimits = defaultLimits;
+        this.dropped = Counter.builder("telegram.flood.dropped")
+                .description("Сообщения пользователей, отброшенные из-за превышения лимитов")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Учитывает сообщение пользователя и проверяет лимиты бота
+     *
+     * @return false, если сообщение нужно отбросить
+     */
+    public boolean tryAcquire(Long botId, Long userId) {
+        if (limiter.tryAcquire(botId, userId, rulesOf(botId), System.currentTimeMillis())) {
+            return true;
+        }
+        dropped.increment();
+        return false;
+    }
+
+    /**
+     * Удаляет счетчики пользователей, которые давно не писали
+     */
+    @Scheduled(fixedDelayString = "${telegram.flood.cleanup-interval-ms:300000}")
+    public void cleanup() {
+        long longestWindow = TimeUnit.MINUTES.toMillis(1);
+        for (ParsedRules parsed : rules.values()) {
+            for (Rule rule : parsed.rules) {
+                longestWindow = Math.max(longestWindow, rule.getWindowMillis());
+            }
+        }
+        // Счетчик старше двух окон уже не влияет на оценку
+        limiter.evictIdle(System.currentTimeMillis(), longestWindow * 2);
+    }
+
+    /**
+     * Удаляет счетчики и правила остановленного бота
+     */
+    public void evictBot(Long botId) {
+        limiter.evictBot(botId);
+        rules.remove(botId);
+    }
+
+    private Rule[] rulesOf(Long botId) {
+        BotSettingsSnapshot snapshot = botSettingsService.getSnapshot(botId);
+        ParsedRules parsed = rules.get(botId);
+        if (parsed == null || parsed.snapshot != snapshot) {
+            parsed = new ParsedRules(snapshot, parse(botId, snapshot.get(SETTING_KEY, defaultLimits)));
+            rules.put(botId, parsed);
+        }
+        return parsed.rules;
+    }
+
+    private Rule[] parse(Long botId, String value) {
+        if (value == null || value.isBlank() || value.trim().equals("0")) {
+            return NO_RULES;
+        }
+
+        List<Rule> parsed = new ArrayList<>();
+        try {
+            for (String part : value.split(",")) {
+                String[] limitAndSeconds = part.trim().split("/");
+                int limit = Integer.parseInt(limitAndSeconds[0].trim());
+                long seconds = Long.parseLong(limitAndSeconds[1].trim());
+                if (limit > 0 && seconds > 0) {
+                    parsed.add(new Rule(limit, TimeUnit.SECONDS.toMillis(seconds)));
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Неверная настройка " + SETTING_KEY + " бота " + botId + ": " + value);
+            return value.equals(defaultLimits) ? NO_RULES : parse(botId, defaultLimits);
+        }
+        return parsed.toArray(NO_RULES);
+    }
+
+    private record ParsedRules(BotSettingsSnapshot snapshot, Rule[] rules) {
+    }
+}
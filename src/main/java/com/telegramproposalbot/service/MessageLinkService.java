@@ -0,0 +1,228 @@
+package com.telegramproposalbot.service;
+
+import com.telegramproposalbot.cache.ExpiringLruCache;
+import com.telegramproposalbot.entity.MessageLink;
+import com.telegramproposalbot.repository.MessageLinkRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Индекс связей между сообщениями пользователей и сообщениями администраторов.
+ * Связь ищется по (чат администратора, пересланное сообщение) или
+ * по (чат администратора, сообщение с кнопками) за O(1) в кэше, при промахе - по индексу в БД.
+ * Связи одного сообщения пользователя со всеми администраторами также хранятся списком.
+ * Новые связи сразу попадают в кэш и сохраняются в БД пачками. Если пачку записать не удалось,
+ * связи записываются по одной, и связь, которую max-write-attempts раз отвергла БД,
+ * отбрасывается, чтобы одна испорченная запись не блокировала остальные.
+ */
+@Service
+public class MessageLinkService {
+
+    private final MessageLinkRepository messageLinkRepository;
+    private final ExpiringLruCache<LinkKey, MessageLink> byForwarded;
+    private final ExpiringLruCache<LinkKey, MessageLink> byControl;
+    private final ExpiringLruCache<LinkKey, List<MessageLink>> byUserMessage;
+    private final ConcurrentLinkedDeque<PendingLink> pendingWrites = new ConcurrentLinkedDeque<>();
+    private final TransactionTemplate transactionTemplate;
+    private final int retentionDays;
+    private final int maxWriteAttempts;
+
+    @Autowired
+    public MessageLinkService(MessageLinkRepository messageLinkRepository,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${telegram.links.cache.max-size:20000}") int cacheMaxSize,
+                              @Value("${telegram.links.cache.ttl-minutes:1440}") long cacheTtlMinutes,
+                              @Value("${telegram.links.retention-days:30}") int retentionDays,
+                              @Value("${telegram.links.max-write-attempts:5}") int maxWriteAttempts) {
+        this.messageLinkRepository = messageLinkRepository;
+        this.byForwarded = new ExpiringLruCache<>(cacheMaxSize, TimeUnit.MINUTES.toNanos(cacheTtlMinutes));
+        this.byControl = new ExpiringLruCache<>(cacheMaxSize, TimeUnit.MINUTES.toNanos(cacheTtlMinutes));
+        this.byUserMessage = new ExpiringLruCache<>(cacheMaxSize, TimeUnit.MINUTES.toNanos(cacheTtlMinutes));
+        this.retentionDays = retentionDays;
+        this.maxWriteAttempts = maxWriteAttempts;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Добавляет связь в индекс. В БД она будет записана при следующем сбросе.
+     */
+    public void addLink(MessageLink link) {
+        index(link);
+        // Связи с администраторами добавляются из разных потоков по мере доставки
+        LinkKey key = new LinkKey(link.getBotId(), link.getUserId(), link.getUserMessageId());
+        synchronized (byUserMessage) {
+            List<MessageLink> links = new ArrayList<>();
+            List<MessageLink> existing = byUserMessage.get(key);
+            if (existing != null) {
+                links.addAll(existing);
+            }
+            links.add(link);
+            byUserMessage.put(key, List.copyOf(links));
+        }
+        pendingWrites.add(new PendingLink(link, 0));
+    }
+
+    /**
+     * Находит связь по сообщению, пересланному администратору
+     */
+    public MessageLink findByForwardedMessage(Long botId, Long adminChatId, Integer forwardedMessageId) {
+        LinkKey key = new LinkKey(botId, adminChatId, forwardedMessageId);
+        MessageLink link = byForwarded.get(key);
+        if (link == null) {
+            link = messageLinkRepository
+                    .findFirstByBotIdAndAdminChatIdAndAdminForwardedMessageId(botId, adminChatId, forwardedMessageId)
+                    .orElse(null);
+            if (link != null) {
+                index(link);
+            }
+        }
+        return link;
+    }
+
+    /**
+     * Находит связь по сообщению с кнопками управления
+     */
+    public MessageLink findByControlMessage(Long botId, Long adminChatId, Integer controlMessageId) {
+        LinkKey key = new LinkKey(botId, adminChatId, controlMessageId);
+        MessageLink link = byControl.get(key);
+        if (link == null) {
+            link = messageLinkRepository
+                    .findFirstByBotIdAndAdminChatIdAndAdminControlMessageId(botId, adminChatId, controlMessageId)
+                    .orElse(null);
+            if (link != null) {
+                index(link);
+            }
+        }
+        return link;
+    }
+
+    /**
+     * Находит сообщения всех администраторов, которым было отправлено сообщение пользователя
+     */
+    public List<MessageLink> findByUserMessage(Long botId, Long userId, Integer userMessageId) {
+        LinkKey key = new LinkKey(botId, userId, userMessageId);
+        List<MessageLink> links = byUserMessage.get(key);
+        if (links == null) {
+            links = List.copyOf(messageLinkRepository.findByBotIdAndUserIdAndUserMessageId(botId, userId,
+                    userMessageId));
+            if (!links.isEmpty()) {
+                byUserMessage.put(key, links);
+            }
+        }
+        return links;
+    }
+
+    /**
+     * Сохраняет накопленные связи в БД одной пачкой.
+     * Если запись пачки не удалась, связи записываются по одной: неудавшиеся возвращаются
+     * в начало очереди, а отвергнутые БД max-write-attempts раз отбрасываются.
+     */
+    @Scheduled(fixedDelayString = "${telegram.links.flush-interval-ms:1000}")
+    public void flush() {
+        List<PendingLink> batch = new ArrayList<>();
+        PendingLink pending;
+        while ((pending = pendingWrites.poll()) != null) {
+            batch.add(pending);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    messageLinkRepository.saveAll(batch.stream().map(PendingLink::link).toList()));
+            return;
+        } catch (Exception e) {
+            System.err.println("Не удалось сохранить " + batch.size() + " связей сообщений одной пачкой: " +
+                    e.getMessage());
+            // Транзакция откатилась, выданные ID недействительны
+            batch.forEach(failed -> failed.link().setId(null));
+        }
+
+        List<PendingLink> retry = new ArrayList<>();
+        for (PendingLink failed : batch) {
+            MessageLink link = failed.link();
+            try {
+                transactionTemplate.executeWithoutResult(status -> messageLinkRepository.save(link));
+            } catch (Exception e) {
+                link.setId(null);
+                // Попытки считаем только при ошибке в самих данных: при недоступной БД связи не теряем
+                int attempts = e instanceof DataIntegrityViolationException ? failed.attempts() + 1 : failed.attempts();
+                if (attempts >= maxWriteAttempts) {
+                    System.err.println("Связь сообщения " + link.getUserMessageId() + " бота " + link.getBotId() +
+                            " с администратором " + link.getAdminChatId() + " отброшена после " + attempts +
+                            " попыток: " + e.getMessage());
+                } else {
+                    retry.add(new PendingLink(link, attempts));
+                }
+            }
+        }
+        for (int i = retry.size() - 1; i >= 0; i--) {
+            pendingWrites.addFirst(retry.get(i));
+        }
+    }
+
+    /**
+     * Удаляет устаревшие связи из кэша и БД
+     */
+    @Scheduled(fixedDelayString = "${telegram.links.cleanup-interval-ms:3600000}")
+    @Transactional
+    public void cleanup() {
+        byForwarded.evictExpired();
+        byControl.evictExpired();
+        byUserMessage.evictExpired();
+        Date before = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retentionDays));
+        messageLinkRepository.deleteCreatedBefore(before);
+    }
+
+    /**
+     * Удаляет все связи бота, в том числе еще не записанные в БД
+     */
+    @Transactional
+    public void deleteLinksByBotId(Long botId) {
+        pendingWrites.removeIf(pending -> pending.link().getBotId().equals(botId));
+        messageLinkRepository.deleteByBotId(botId);
+        evictBot(botId);
+    }
+
+    /**
+     * Удаляет связи бота из кэша
+     */
+    public void evictBot(Long botId) {
+        byForwarded.removeIf((key, link) -> key.botId().equals(botId));
+        byControl.removeIf((key, link) -> key.botId().equals(botId));
+        byUserMessage.removeIf((key, links) -> key.botId().equals(botId));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Не теряем связи, еще не записанные в БД
+        flush();
+    }
+
+    private void index(MessageLink link) {
+        byForwarded.put(new LinkKey(link.getBotId(), link.getAdminChatId(), link.getAdminForwardedMessageId()), link);
+        byControl.put(new LinkKey(link.getBotId(), link.getAdminChatId(), link.getAdminControlMessageId()), link);
+    }
+
+    // Связь, ожидающая записи в БД, и сколько раз БД ее отвергла
+    private record PendingLink(MessageLink link, int attempts) {
+    }
+
+    // Для списка связей по сообщению пользователя вместо чата администратора хранится ID пользователя
+    private record LinkKey(Long botId, Long chatId, Integer messageId) {
+    }
+}
@@ -0,0 +1,270 @@
+package com.telegramproposalbot.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.telegramproposalbot.cache.TransactionHooks;
+import com.telegramproposalbot.cluster.NodeIdentity;
+import com.telegramproposalbot.entity.Bot;
+import com.telegramproposalbot.entity.OutboxMessage;
+import com.telegramproposalbot.repository.BotRepository;
+import com.telegramproposalbot.repository.OutboxMessageRepository;
+import com.telegramproposalbot.telegram.engine.NamedThreadFactory;
+import com.telegramproposalbot.telegram.engine.OutboundSender;
+import com.telegramproposalbot.telegram.engine.TelegramApiClient;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.telegram.telegrambots.meta.api.methods.PartialBotApiMethod;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Транзакционный outbox исходящих запросов к Telegram API.
+ * Запрос записывается в БД в той же транзакции, что и изменение состояния, и после фиксации
+ * отправляется ретранслятором пачками через OutboundSender. Запись помечается отправленной
+ * только после ответа Telegram, поэтому при падении процесса запрос будет отправлен повторно
+ * (доставка не менее одного раза). Ключ идемпотентности не дает записать один запрос дважды.
+ * Несколько экземпляров приложения разбирают outbox параллельно: каждый берет пачку записей
+ * в аренду условным UPDATE, истекшие аренды упавших экземпляров забирают остальные.
+ * Ретранслятор не ждет ответов: результат каждой записи сохраняется, как только получен,
+ * поэтому медленный чат не задерживает следующие пачки. Число записей в отправке ограничено.
+ */
+@Service
+public class OutboxService {
+
+    private final OutboxMessageRepository outboxRepository;
+    private final BotRepository botRepository;
+    private final OutboundSender sender;
+    private final NodeIdentity nodeIdentity;
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long sendTimeoutSeconds;
+    private final int retentionDays;
+    private final int maxInFlight;
+
+    // Ретранслятор работает в одном потоке, поэтому пачки не пересекаются
+    private final ExecutorService relayExecutor =
+            Executors.newSingleThreadExecutor(new NamedThreadFactory("outbox-relay-"));
+    // Результаты записываются не в потоках HTTP-клиента
+    private final ExecutorService resultExecutor =
+            Executors.newSingleThreadExecutor(new NamedThreadFactory("outbox-results-"));
+    private final AtomicBoolean relayQueued = new AtomicBoolean();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    @Autowired
+    public OutboxService(OutboxMessageRepository outboxRepository,
+                         BotRepository botRepository,
+                         OutboundSender sender,
+                         NodeIdentity nodeIdentity,
+                         @Value("${telegram.outbox.batch-size:100}") int batchSize,
+                         @Value("${telegram.outbox.max-attempts:10}") int maxAttempts,
+                         @Value("${telegram.outbox.send-timeout-seconds:120}") long sendTimeoutSeconds,
+                         @Value("${telegram.outbox.retention-days:7}") int retentionDays,
+                         @Value("${telegram.outbox.max-in-flight:1000}") int maxInFlight) {
+        this.outboxRepository = outboxRepository;
+        this.botRepository = botRepository;
+        this.sender = sender;
+        this.nodeIdentity = nodeIdentity;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.sendTimeoutSeconds = sendTimeoutSeconds;
+        this.retentionDays = retentionDays;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Записывает запрос в outbox в текущей транзакции.
+     * Повторная запись с тем же ключом идемпотентности игнорируется.
+     */
+    @Transactional
+    public void enqueue(Long botId, String idempotencyKey, PartialBotApiMethod<?> method) {
+        if (outboxRepository.existsByIdempotencyKey(idempotencyKey)) {
+            return;
+        }
+
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(method);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Не удалось сериализовать запрос " + method.getMethod(), e);
+        }
+        outboxRepository.save(new OutboxMessage(botId, idempotencyKey, method.getClass().getName(), payload));
+
+        // Отправляем сразу после фиксации, не дожидаясь планового опроса
+        TransactionHooks.afterCommit(this::wakeUp);
+    }
+
+    /**
+     * Удаляет все запросы бота, в том числе неотправленные
+     */
+    @Transactional
+    public void deleteMessagesByBotId(Long botId) {
+        outboxRepository.deleteByBotId(botId);
+    }
+
+    /**
+     * Плановый опрос: подхватывает повторные попытки и записи, оставшиеся после перезапуска
+     */
+    @Scheduled(fixedDelayString = "${telegram.outbox.poll-interval-ms:1000}")
+    public void poll() {
+        wakeUp();
+    }
+
+    /**
+     * Удаляет давно отправленные записи
+     */
+    @Scheduled(fixedDelayString = "${telegram.outbox.cleanup-interval-ms:3600000}")
+    @Transactional
+    public void cleanup() {
+        Date before = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retentionDays));
+        outboxRepository.deleteSentBefore(before);
+    }
+
+    private void wakeUp() {
+        if (relayQueued.compareAndSet(false, true)) {
+            relayExecutor.execute(this::relay);
+        }
+    }
+
+    private void relay() {
+        relayQueued.set(false);
+        try {
+            List<Long> claimable;
+            int limit;
+            do {
+                // Остальное заберем плановым опросом, когда часть ответов будет получена
+                limit = Math.min(batchSize, maxInFlight - inFlight.get());
+                if (limit <= 0) {
+                    break;
+                }
+                Date now = new Date();
+                claimable = outboxRepository.findClaimableIds(now, PageRequest.of(0, limit));
+                if (claimable.isEmpty()) {
+                    break;
+                }
+
+                // Аренда рассчитана на время отправки записи, после нее запись заберет другой экземпляр
+                Date leaseUntil = new Date(now.getTime() + TimeUnit.SECONDS.toMillis(sendTimeoutSeconds));
+                outboxRepository.claim(claimable, nodeIdentity.getNodeId(), leaseUntil, now);
+                List<OutboxMessage> batch = outboxRepository.findLeased(claimable, nodeIdentity.getNodeId());
+                if (!batch.isEmpty()) {
+                    deliver(batch);
+                }
+            } while (claimable.size() == limit);
+        } catch (Exception e) {
+            System.err.println("Ошибка ретрансляции outbox: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Ставит пачку в очередь отправки, не дожидаясь ответов.
+     * Каждая запись сохраняется отдельно, когда получен ответ на нее.
+     */
+    private void deliver(List<OutboxMessage> batch) {
+        Map<Long, String> tokens = new HashMap<>();
+
+        // Запросы ставятся в очередь в порядке записи, порядок в чате сохраняет OutboundSender
+        for (OutboxMessage message : batch) {
+            String token = tokens.computeIfAbsent(message.getBotId(),
+                    botId -> botRepository.findById(botId).map(Bot::getToken).orElse(null));
+            if (token == null) {
+                markFailed(message, "бот не найден", false);
+                release(message);
+                continue;
+            }
+
+            PartialBotApiMethod<?> method;
+            try {
+                method = (PartialBotApiMethod<?>) objectMapper.readValue(message.getPayload(),
+                        Class.forName(message.getMethodClass()));
+            } catch (Exception e) {
+                markFailed(message, "не удалось прочитать запрос: " + e.getMessage(), false);
+                release(message);
+                continue;
+            }
+
+            inFlight.incrementAndGet();
+            sender.send(token, method).whenCompleteAsync((result, error) -> {
+                try {
+                    if (error == null) {
+                        message.setStatus(OutboxMessage.STATUS_SENT);
+                        message.setSentAt(new Date());
+                        message.setLastError(null);
+                    } else {
+                        Throwable cause = TelegramApiClient.unwrap(error);
+                        markFailed(message, cause.getMessage(), isRetriable(cause));
+                    }
+                    release(message);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }, resultExecutor);
+        }
+    }
+
+    /**
+     * Снимает аренду обработанной записи и сохраняет ее. Если сохранить не удалось,
+     * запись остается PENDING и после истечения аренды будет отправлена повторно.
+     */
+    private void release(OutboxMessage message) {
+        message.setLeaseOwner(null);
+        message.setLeaseUntil(null);
+        try {
+            outboxRepository.save(message);
+        } catch (Exception e) {
+            System.err.println("Не удалось сохранить результат запроса outbox " + message.getIdempotencyKey() + ": " +
+                    e.getMessage());
+        }
+    }
+
+    private void markFailed(OutboxMessage message, String error, boolean retriable) {
+        int attempts = message.getAttempts() + 1;
+        message.setAttempts(attempts);
+        message.setLastError(error != null && error.length() > 1000 ? error.substring(0, 1000) : error);
+
+        if (!retriable || attempts >= maxAttempts) {
+            message.setStatus(OutboxMessage.STATUS_FAILED);
+            System.err.println("Запрос outbox " + message.getIdempotencyKey() + " не доставлен: " + error);
+            return;
+        }
+
+        // Экспоненциальная задержка повтора: 2, 4, 8 ... секунд, но не больше 10 минут
+        long delaySeconds = Math.min(600, 1L << Math.min(attempts, 10));
+        message.setNextAttemptAt(new Date(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(delaySeconds)));
+    }
+
+    /**
+     * Ошибки 400 и 403 (неверный запрос, бот заблокирован) повторять бессмысленно
+     */
+    private static boolean isRetriable(Throwable error) {
+        if (error instanceof TelegramApiRequestException requestException
+                && requestException.getErrorCode() != null) {
+            int code = requestException.getErrorCode();
+            return code != 400 && code != 403;
+        }
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        relayExecutor.shutdown();
+        resultExecutor.shutdown();
+    }
+}
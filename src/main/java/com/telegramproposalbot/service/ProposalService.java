@@ -0,0 +1,339 @@
+package com.telegramproposalbot.service;
+
+import com.telegramproposalbot.cache.ExpiringLruCache;
+import com.telegramproposalbot.cache.TransactionHooks;
+import com.telegramproposalbot.entity.Proposal;
+import com.telegramproposalbot.entity.ProposalMedia;
+import com.telegramproposalbot.repository.ProposalMediaRepository;
+import com.telegramproposalbot.repository.ProposalPublicationRepository;
+import com.telegramproposalbot.repository.ProposalRepository;
+import com.telegramproposalbot.telegram.runtime.ProposalStatusChangedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.telegram.telegrambots.meta.api.methods.PartialBotApiMethod;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.PhotoSize;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сервис для хранения предложенных пользователями сообщений.
+ * Предложения сохраняются в БД, недавние держатся в ограниченном LRU-кэше.
+ * Статус меняется только по допустимым переходам и с проверкой версии, поэтому
+ * одновременные решения нескольких администраторов не применяются дважды.
+ */
+@Service
+public class ProposalService {
+
+    private final ProposalRepository proposalRepository;
+    private final ProposalMediaRepository proposalMediaRepository;
+    private final ProposalPublicationRepository proposalPublicationRepository;
+    private final OutboxService outboxService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ExpiringLruCache<ProposalKey, Proposal> cache;
+
+    @Autowired
+    public ProposalService(ProposalRepository proposalRepository,
+                           ProposalMediaRepository proposalMediaRepository,
+                           ProposalPublicationRepository proposalPublicationRepository,
+                           OutboxService outboxService,
+                           ApplicationEventPublisher eventPublisher,
+                           @Value("${telegram.proposals.cache.max-size:10000}") int cacheMaxSize,
+                           @Value("${telegram.proposals.cache.ttl-minutes:60}") long cacheTtlMinutes) {
+        this.proposalRepository = proposalRepository;
+        this.proposalMediaRepository = proposalMediaRepository;
+        this.proposalPublicationRepository = proposalPublicationRepository;
+        this.outboxService = outboxService;
+        this.eventPublisher = eventPublisher;
+        this.cache = new ExpiringLruCache<>(cacheMaxSize, TimeUnit.MINUTES.toNanos(cacheTtlMinutes));
+    }
+
+    /**
+     * Сохраняет сообщение пользователя как новое предложение
+     */
+    @Transactional
+    public Proposal createProposal(Long botId, Message message) {
+        return createProposal(fromMessage(botId, message));
+    }
+
+    /**
+     * Сохраняет подготовленное предложение
+     */
+    @Transactional
+    public Proposal createProposal(Proposal proposal) {
+        Proposal saved = proposalRepository.save(proposal);
+        cache.put(ProposalKey.of(saved), saved);
+        return saved;
+    }
+
+    /**
+     * Создает предложение из сообщения пользователя, не сохраняя его
+     */
+    public Proposal fromMessage(Long botId, Message message) {
+        Proposal proposal = new Proposal(botId, message.getFrom().getId(), message.getChatId(),
+                message.getMessageId(), typeOf(message));
+        proposal.setText(message.hasText() ? message.getText() : message.getCaption());
+
+        if (message.hasPhoto()) {
+            // Telegram присылает размеры по возрастанию, берем самый большой
+            PhotoSize photo = message.getPhoto().get(message.getPhoto().size() - 1);
+            proposal.setFileId(photo.getFileId());
+            proposal.setFileUniqueId(photo.getFileUniqueId());
+        } else if (message.hasVideo()) {
+            proposal.setFileId(message.getVideo().getFileId());
+            proposal.setFileUniqueId(message.getVideo().getFileUniqueId());
+        } else if (message.hasDocument()) {
+            proposal.setFileId(message.getDocument().getFileId());
+            proposal.setFileUniqueId(message.getDocument().getFileUniqueId());
+            proposal.setFileName(message.getDocument().getFileName());
+        } else if (message.hasSticker()) {
+            proposal.setFileId(message.getSticker().getFileId());
+            proposal.setFileUniqueId(message.getSticker().getFileUniqueId());
+        } else if (message.hasVoice()) {
+            proposal.setFileId(message.getVoice().getFileId());
+            proposal.setFileUniqueId(message.getVoice().getFileUniqueId());
+        } else if (message.hasVideoNote()) {
+            proposal.setFileId(message.getVideoNote().getFileId());
+            proposal.setFileUniqueId(message.getVideoNote().getFileUniqueId());
+        }
+        return proposal;
+    }
+
+    /**
+     * Создает одно предложение из альбома, не сохраняя его.
+     * Предложение привязано к первому сообщению альбома, подпись берется из первого элемента с подписью.
+     */
+    public Proposal fromAlbum(Long botId, List<Message> album) {
+        Proposal proposal = fromMessage(botId, album.get(0));
+        proposal.setType(Proposal.TYPE_ALBUM);
+        proposal.setText(null);
+        for (Message message : album) {
+            if (message.getCaption() != null && !message.getCaption().isEmpty()) {
+                proposal.setText(message.getCaption());
+                break;
+            }
+        }
+        return proposal;
+    }
+
+    /**
+     * Собирает элементы альбома по порядку. Сообщения, которые не могут входить в альбом, пропускаются.
+     */
+    public List<ProposalMedia> toAlbumMedia(List<Message> album) {
+        List<ProposalMedia> media = new ArrayList<>(album.size());
+        for (Message message : album) {
+            int position = media.size();
+            if (message.hasPhoto()) {
+                PhotoSize photo = message.getPhoto().get(message.getPhoto().size() - 1);
+                media.add(new ProposalMedia(position, ProposalMedia.TYPE_PHOTO,
+                        photo.getFileId(), photo.getFileUniqueId()));
+            } else if (message.hasVideo()) {
+                media.add(new ProposalMedia(position, ProposalMedia.TYPE_VIDEO,
+                        message.getVideo().getFileId(), message.getVideo().getFileUniqueId()));
+            } else if (message.hasDocument()) {
+                media.add(new ProposalMedia(position, ProposalMedia.TYPE_DOCUMENT,
+                        message.getDocument().getFileId(), message.getDocument().getFileUniqueId()));
+            } else if (message.hasAudio()) {
+                media.add(new ProposalMedia(position, ProposalMedia.TYPE_AUDIO,
+                        message.getAudio().getFileId(), message.getAudio().getFileUniqueId()));
+            }
+        }
+        return media;
+    }
+
+    /**
+     * Сохраняет альбом как одно предложение вместе с его элементами
+     */
+    @Transactional
+    public Proposal createAlbum(Proposal proposal, List<ProposalMedia> media) {
+        Proposal saved = createProposal(proposal);
+        for (ProposalMedia item : media) {
+            item.setProposalId(saved.getId());
+        }
+        proposalMediaRepository.saveAll(media);
+        return saved;
+    }
+
+    /**
+     * Возвращает элементы альбома в исходном порядке
+     */
+    public List<ProposalMedia> getAlbumMedia(Proposal proposal) {
+        return proposalMediaRepository.findByProposalIdOrderByPosition(proposal.getId());
+    }
+
+    /**
+     * Учитывает повторную отправку содержимого предложения вместо создания нового
+     */
+    public void registerDuplicate(Proposal original) {
+        Date now = new Date();
+        proposalRepository.incrementDuplicateCount(original.getId(), now);
+        // Закэшированный экземпляр обновляем приблизительно, точное значение в БД
+        original.setDuplicateCount(original.getDuplicateCount() + 1);
+        original.setLastDuplicateAt(now);
+    }
+
+    /**
+     * Находит предложение по сообщению пользователя
+     */
+    public Proposal getProposal(Long botId, Long chatId, Integer messageId) {
+        ProposalKey key = new ProposalKey(botId, chatId, messageId);
+        Proposal proposal = cache.get(key);
+        if (proposal == null) {
+            proposal = proposalRepository.findByBotIdAndChatIdAndMessageId(botId, chatId, messageId).orElse(null);
+            if (proposal != null) {
+                cache.put(key, proposal);
+            }
+        }
+        return proposal;
+    }
+
+    /**
+     * Находит предложение, ожидающее решения администратора
+     */
+    public Proposal getPendingProposal(Long botId, Long chatId, Integer messageId) {
+        Proposal proposal = getProposal(botId, chatId, messageId);
+        return proposal != null && proposal.isPending() ? proposal : null;
+    }
+
+    /**
+     * Изменяет статус предложения, если переход допустим и предложение не изменили параллельно
+     *
+     * @return обновленное предложение или null, если его нет или статус уже изменил кто-то другой
+     */
+    @Transactional
+    public Proposal updateStatus(Long botId, Long chatId, Integer messageId, String status) {
+        ProposalKey key = new ProposalKey(botId, chatId, messageId);
+        Proposal proposal = getProposal(botId, chatId, messageId);
+        if (proposal != null && !proposal.canTransitionTo(status)) {
+            // Отказ по закэшированному статусу сверяем с БД: предложение могли вернуть на рассмотрение
+            // на другом экземпляре
+            cache.remove(key);
+            proposal = getProposal(botId, chatId, messageId);
+        }
+        if (proposal == null || !proposal.canTransitionTo(status)) {
+            return null;
+        }
+        String expectedStatus = proposal.getStatus();
+
+        // Закэшированная версия могла устареть, если предложение меняли на другом экземпляре:
+        // при несовпадении перечитываем строку. Повторяем, только если статус остался прежним,
+        // иначе решение уже принял кто-то другой
+        for (int attempt = 0; attempt < 2; attempt++) {
+            if (proposalRepository.updateStatus(proposal.getId(), proposal.getVersion(), status, new Date()) == 1) {
+                Proposal updated = proposalRepository.findById(proposal.getId()).orElseThrow();
+                // В кэш попадает только зафиксированное состояние: при откате транзакции
+                // предложение перечитается из БД
+                cache.remove(key);
+                TransactionHooks.afterCommit(() -> {
+                    cache.put(key, updated);
+                    eventPublisher.publishEvent(new ProposalStatusChangedEvent(updated));
+                });
+                return updated;
+            }
+            cache.remove(key);
+            proposal = proposalRepository.findById(proposal.getId()).orElse(null);
+            if (proposal == null || !expectedStatus.equals(proposal.getStatus())) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Изменяет статус предложения и в той же транзакции ставит в outbox связанные запросы
+     * (публикацию в канал, уведомление автора). Запросы отправляются по порядку
+     * и не ставятся, если статус изменить не удалось.
+     */
+    @Transactional
+    public Proposal updateStatus(Long botId, Long chatId, Integer messageId, String status,
+                                 List<? extends PartialBotApiMethod<?>> outgoing) {
+        Proposal proposal = updateStatus(botId, chatId, messageId, status);
+        if (proposal == null) {
+            return null;
+        }
+
+        for (int i = 0; i < outgoing.size(); i++) {
+            outboxService.enqueue(botId, "proposal:" + proposal.getId() + ":" + status + ":" + i, outgoing.get(i));
+        }
+        return proposal;
+    }
+
+    /**
+     * Находит предложения указанных ботов, которые находятся в статусе дольше указанного времени
+     */
+    public List<Proposal> findStuck(Collection<Long> botIds, String status, long olderThanMillis) {
+        if (botIds.isEmpty()) {
+            return List.of();
+        }
+        return proposalRepository.findTop100ByBotIdInAndStatusAndUpdatedAtBeforeOrderByUpdatedAt(botIds, status,
+                new Date(System.currentTimeMillis() - olderThanMillis));
+    }
+
+    /**
+     * Обновляет сообщения с кнопками у всех администраторов для последних предложений автора,
+     * ожидающих решения, например после его блокировки или разблокировки
+     */
+    public void refreshControlMessages(Long botId, Long chatId) {
+        List<Proposal> pending = proposalRepository.findTop20ByBotIdAndChatIdAndStatusOrderByIdDesc(botId, chatId,
+                Proposal.STATUS_PENDING);
+        TransactionHooks.afterCommit(() -> pending.forEach(proposal ->
+                eventPublisher.publishEvent(new ProposalStatusChangedEvent(proposal))));
+    }
+
+    /**
+     * Проверяет, присылал ли пользователь сообщения боту
+     */
+    public boolean hasProposals(Long botId, Long userId) {
+        return proposalRepository.existsByBotIdAndUserId(botId, userId);
+    }
+
+    /**
+     * Удаляет все предложения бота вместе с альбомами и результатами публикации
+     */
+    @Transactional
+    public void deleteProposalsByBotId(Long botId) {
+        proposalMediaRepository.deleteByBotId(botId);
+        proposalPublicationRepository.deleteByBotId(botId);
+        proposalRepository.deleteByBotId(botId);
+        evictBot(botId);
+    }
+
+    /**
+     * Удаляет предложения бота из кэша
+     */
+    public void evictBot(Long botId) {
+        cache.removeIf((key, proposal) -> key.botId().equals(botId));
+    }
+
+    private static String typeOf(Message message) {
+        if (message.hasText()) {
+            return Proposal.TYPE_TEXT;
+        } else if (message.hasPhoto()) {
+            return Proposal.TYPE_PHOTO;
+        } else if (message.hasVideo()) {
+            return Proposal.TYPE_VIDEO;
+        } else if (message.hasDocument()) {
+            return Proposal.TYPE_DOCUMENT;
+        } else if (message.hasSticker()) {
+            return Proposal.TYPE_STICKER;
+        } else if (message.hasVoice()) {
+            return Proposal.TYPE_VOICE;
+        } else if (message.hasVideoNote()) {
+            return Proposal.TYPE_VIDEO_NOTE;
+        }
+        return Proposal.TYPE_OTHER;
+    }
+
+    private record ProposalKey(Long botId, Long chatId, Integer messageId) {
+        static ProposalKey of(Proposal proposal) {
+            return new ProposalKey(proposal.getBotId(), proposal.getChatId(), proposal.getMessageId());
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.telegramproposalbot.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.telegramproposalbot.cache.ChannelInfo;
+import com.telegramproposalbot.cache.TransactionHooks;
+import com.telegramproposalbot.cluster.NodeIdentity;
+import com.telegramproposalbot.entity.Proposal;
+import com.telegramproposalbot.entity.ScheduledPost;
+import com.telegramproposalbot.repository.ScheduledPostRepository;
+import com.telegramproposalbot.telegram.engine.NamedThreadFactory;
+import com.telegramproposalbot.telegram.engine.TimingWheel;
+import com.telegramproposalbot.telegram.runtime.BotRuntimeRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.telegram.telegrambots.meta.api.methods.PartialBotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отложенные публикации предложений.
+ * Публикации хранятся в БД, а в памяти, в колесе таймеров, держатся только те,
+ * срок которых наступит в ближайшее окно. Окно периодически догружается из БД.
+ * Наступившая публикация записывается в outbox вместе со сменой статусов. Запрос публикации
+ * собирается при планировании и хранится сериализованным, как в outbox, поэтому отложенно
+ * публикуются и медиа, и альбомы с подписью публикации.
+ * <p>
+ * При нескольких экземплярах приложения каждый берет в аренду пачками условным UPDATE
+ * публикации окна только тех ботов, которые запущены на нем, и продлевает ее, пока бот работает здесь.
+ * Тогда смену статуса увидит ControlMessageUpdater на том же экземпляре и обновит кнопки
+ * администраторов. Аренды упавшего экземпляра и переехавших ботов истекают и достаются
+ * новому владельцу бота. Перевод в PUBLISHED выполняется условным UPDATE только владельцем
+ * аренды, поэтому каждая публикация попадает в outbox ровно один раз.
+ */
+@Service
+public class ScheduledPostService {
+
+    private static final long RETRY_DELAY_MILLIS = 5000;
+
+    private final ScheduledPostRepository scheduledPostRepository;
+    private final ProposalService proposalService;
+    private final ChannelService channelService;
+    private final TransactionTemplate transactionTemplate;
+    private final NodeIdentity nodeIdentity;
+    private final BotRuntimeRegistry runtimeRegistry;
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final long windowMillis;
+    private final long leaseMillis;
+    private final int claimBatchSize;
+    private final int maxLoaded;
+
+    private final TimingWheel<Long> wheel;
+    private volatile boolean leasesReleased;
+    private final ScheduledExecutorService ticker =
+            Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("post-scheduler-"));
+
+    @Autowired
+    public ScheduledPostService(ScheduledPostRepository scheduledPostRepository,
+                                ProposalService proposalService,
+                                ChannelService channelService,
+                                PlatformTransactionManager transactionManager,
+                                NodeIdentity nodeIdentity,
+                                BotRuntimeRegistry runtimeRegistry,
+                                @Value("${telegram.scheduler.tick-ms:100}") long tickMillis,
+                                @Value("${telegram.scheduler.window-minutes:10}") long windowMinutes,
+                                @Value("${telegram.scheduler.lease-seconds:30}") long leaseSeconds,
+                                @Value("${telegram.scheduler.claim-batch-size:500}") int claimBatchSize,
+                                @Value("${telegram.scheduler.max-loaded:10000}") int maxLoaded) {
+        this.scheduledPostRepository = scheduledPostRepository;
+        this.proposalService = proposalService;
+        this.channelService = channelService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.nodeIdentity = nodeIdentity;
+        this.runtimeRegistry = runtimeRegistry;
+        this.windowMillis = TimeUnit.MINUTES.toMillis(windowMinutes);
+        this.leaseMillis = TimeUnit.SECONDS.toMillis(leaseSeconds);
+        this.claimBatchSize = claimBatchSize;
+        this.maxLoaded = maxLoaded;
+
+        // 512 ячеек по 100 мс на нижнем уровне, верхние уровни создаются по мере надобности
+        this.wheel = new TimingWheel<>(tickMillis, 512, System.currentTimeMillis());
+        ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Планирует публикацию предложения. Если публикация уже запланирована, переносит ее.
+     *
+     * @throws IllegalStateException если предложение уже опубликовано или отклонено
+     */
+    @Transactional
+    public ScheduledPost schedule(Long botId, Long userId, Integer messageId, Long channelId,
+                                  PartialBotApiMethod<?> publication, Date scheduledAt) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(publication);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Не удалось сериализовать запрос " + publication.getMethod(), e);
+        }
+
+        ScheduledPost post = scheduledPostRepository
+                .findFirstByBotIdAndUserIdAndUserMessageIdAndStatus(botId, userId, messageId,
+                        ScheduledPost.STATUS_SCHEDULED)
+                .orElseGet(() -> new ScheduledPost(botId, channelId, userId, messageId, null, scheduledAt));
+        post.setChannelId(channelId);
+        post.setText(null);
+        post.setMethodClass(publication.getClass().getName());
+        post.setPayload(payload);
+        post.setScheduledAt(scheduledAt);
+
+        // Публикацию ближайшего окна сразу берем в аренду, дальние достанутся тому, кто загрузит окно
+        if (scheduledAt.getTime() < System.currentTimeMillis() + windowMillis) {
+            post.setLeaseOwner(nodeIdentity.getNodeId());
+            post.setLeaseUntil(new Date(System.currentTimeMillis() + leaseMillis));
+        } else {
+            post.setLeaseOwner(null);
+            post.setLeaseUntil(null);
+        }
+
+        ScheduledPost saved = scheduledPostRepository.save(post);
+        if (proposalService.updateStatus(botId, userId, messageId, Proposal.STATUS_SCHEDULED) == null) {
+            // Предложение уже опубликовал или отклонил другой администратор: запись откатывается
+            throw new IllegalStateException("Предложение " + messageId + " уже обработано");
+        }
+
+        TransactionHooks.afterCommit(() -> track(saved));
+        return saved;
+    }
+
+    /**
+     * Отменяет запланированную публикацию и возвращает предложение на рассмотрение
+     *
+     * @return false, если запланированной публикации нет
+     */
+    @Transactional
+    public boolean cancel(Long botId, Long userId, Integer messageId) {
+        ScheduledPost post = scheduledPostRepository
+                .findFirstByBotIdAndUserIdAndUserMessageIdAndStatus(botId, userId, messageId,
+                        ScheduledPost.STATUS_SCHEDULED)
+                .orElse(null);
+        if (post == null) {
+            return false;
+        }
+
+        post.setStatus(ScheduledPost.STATUS_CANCELLED);
+        scheduledPostRepository.save(post);
+        proposalService.updateStatus(botId, userId, messageId, Proposal.STATUS_PENDING);
+
+        Long postId = post.getId();
+        TransactionHooks.afterCommit(() -> wheel.cancel(postId));
+        return true;
+    }
+
+    /**
+     * Удаляет все отложенные публикации бота. Загруженные в колесо таймеров
+     * будут пропущены при срабатывании, так как записи уже нет.
+     */
+    @Transactional
+    public void deleteScheduledPostsByBotId(Long botId) {
+        scheduledPostRepository.deleteByBotId(botId);
+    }
+
+    /**
+     * Находит запланированную публикацию предложения
+     */
+    public ScheduledPost getScheduledPost(Long botId, Long userId, Integer messageId) {
+        return scheduledPostRepository
+                .findFirstByBotIdAndUserIdAndUserMessageIdAndStatus(botId, userId, messageId,
+                        ScheduledPost.STATUS_SCHEDULED)
+                .orElse(null);
+    }
+
+    /**
+     * Продлевает аренды и берет в аренду свободные публикации ближайшего окна, включая
+     * публикации с истекшей арендой, для ботов, запущенных на этом экземпляре.
+     * Интервал должен быть заметно меньше срока аренды.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${telegram.scheduler.reload-interval-ms:10000}")
+    public void loadWindow() {
+        String nodeId = nodeIdentity.getNodeId();
+        if (!leasesReleased) {
+            // При постоянном node-id после перезапуска освобождаем аренды, которых нет в памяти
+            scheduledPostRepository.releaseLeases(nodeId);
+            leasesReleased = true;
+        }
+        Set<Long> botIds = Set.copyOf(runtimeRegistry.getBotIds());
+        if (botIds.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        scheduledPostRepository.renewLeases(nodeId, botIds, new Date(now + leaseMillis));
+
+        Date before = new Date(now + windowMillis);
+        List<Long> claimable;
+        do {
+            int limit = Math.min(claimBatchSize, maxLoaded - wheel.size());
+            if (limit <= 0) {
+                break;
+            }
+            claimable = scheduledPostRepository.findClaimableIds(botIds, before, new Date(now),
+                    PageRequest.of(0, limit));
+            if (claimable.isEmpty()) {
+                break;
+            }
+
+            scheduledPostRepository.claim(claimable, nodeId, new Date(now + leaseMillis), new Date(now));
+            for (ScheduledPost post : scheduledPostRepository.findLeased(claimable, nodeId)) {
+                wheel.schedule(post.getId(), post.getScheduledAt().getTime(), post.getId());
+            }
+        } while (claimable.size() == claimBatchSize);
+    }
+
+    /**
+     * Количество публикаций, загруженных в память
+     */
+    public int getLoadedCount() {
+        return wheel.size();
+    }
+
+    private void track(ScheduledPost post) {
+        // Публикации за пределами окна будут загружены позже
+        if (post.getScheduledAt().getTime() < System.currentTimeMillis() + windowMillis) {
+            wheel.schedule(post.getId(), post.getScheduledAt().getTime(), post.getId());
+        } else {
+            wheel.cancel(post.getId());
+        }
+    }
+
+    private void tick() {
+        for (Long postId : wheel.advance(System.currentTimeMillis())) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> publish(postId));
+            } catch (Exception e) {
+                System.err.println("Ошибка отложенной публикации " + postId + ": " + e.getMessage());
+                // Аренда продлевается, пока экземпляр работает, поэтому повторяем сами
+                wheel.schedule(postId, System.currentTimeMillis() + RETRY_DELAY_MILLIS, postId);
+            }
+        }
+    }
+
+    /**
+     * Публикует наступившую запись: меняет статусы и ставит сообщения в outbox в одной транзакции
+     */
+    private void publish(Long postId) {
+        ScheduledPost post = scheduledPostRepository.findById(postId).orElse(null);
+        // Публикацию могли отменить, перенести или забрать на другом экземпляре
+        if (post == null || !post.isScheduled() || !nodeIdentity.getNodeId().equals(post.getLeaseOwner())) {
+            return;
+        }
+        if (!runtimeRegistry.contains(post.getBotId())) {
+            // Бот переехал на другой экземпляр: отдаем публикацию его новому владельцу
+            scheduledPostRepository.releaseLease(postId, nodeIdentity.getNodeId());
+            return;
+        }
+
+        ChannelInfo channel = channelService.getChannel(post.getBotId(), post.getChannelId());
+        if (channel == null) {
+            System.err.println("Канал " + post.getChannelId() + " для отложенной публикации " + postId + " не найден");
+        }
+        PartialBotApiMethod<?> publication = channel != null ? publicationOf(post, channel) : null;
+        String status = publication != null ? ScheduledPost.STATUS_PUBLISHED : ScheduledPost.STATUS_FAILED;
+
+        // Условный UPDATE блокирует строку до конца транзакции: второй экземпляр получит 0
+        if (scheduledPostRepository.complete(postId, nodeIdentity.getNodeId(), status, new Date()) == 0) {
+            return;
+        }
+
+        if (publication == null) {
+            proposalService.updateStatus(post.getBotId(), post.getUserId(), post.getUserMessageId(),
+                    Proposal.STATUS_PENDING);
+            return;
+        }
+
+        SendMessage notifyUser = new SendMessage();
+        notifyUser.setChatId(post.getUserId().toString());
+        notifyUser.setText("🎉 Ваше сообщение было одобрено и опубликовано в канале!");
+
+        List<PartialBotApiMethod<?>> outgoing = List.of(publication, notifyUser);
+        if (proposalService.updateStatus(post.getBotId(), post.getUserId(), post.getUserMessageId(),
+                Proposal.STATUS_PUBLISHED, outgoing) == null) {
+            System.err.println("Предложение отложенной публикации " + postId + " уже обработано, публикация пропущена");
+        }
+    }
+
+    /**
+     * Восстанавливает запрос публикации. Записи без payload публикуются текстом, как раньше.
+     *
+     * @return null, если запрос не удалось прочитать
+     */
+    private PartialBotApiMethod<?> publicationOf(ScheduledPost post, ChannelInfo channel) {
+        if (post.getPayload() == null) {
+            SendMessage publishMessage = new SendMessage();
+            publishMessage.setChatId(channel.getTargetChatId());
+            publishMessage.setText(post.getText());
+            publishMessage.setDisableNotification(post.isDisableNotification());
+            return publishMessage;
+        }
+
+        try {
+            return (PartialBotApiMethod<?>) objectMapper.readValue(post.getPayload(),
+                    Class.forName(post.getMethodClass()));
+        } catch (Exception e) {
+            System.err.println("Не удалось прочитать запрос отложенной публикации " + post.getId() + ": " +
+                    e.getMessage());
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+        // Отдаем публикации остальным экземплярам, не дожидаясь истечения аренды
+        try {
+            scheduledPostRepository.releaseLeases(nodeIdentity.getNodeId());
+        } catch (Exception e) {
+            System.err.println("Не удалось освободить аренды отложенных публикаций: " + e.getMessage());
+        }
+    }
+}
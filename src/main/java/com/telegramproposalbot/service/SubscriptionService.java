@@ -1,6 +1,8 @@
 package com.telegramproposalbot.service;
 
 import com.telegramproposalbot.entity.User;
+import com.telegramproposalbot.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -43,16 +45,26 @@ public class SubscriptionService {
         freeLimits.put("max_bots", 1);
         freeLimits.put("max_admins_per_bot", 3);
         freeLimits.put("max_channels_per_bot", 1);
+        // Доля потоков обработки обновлений при конкуренции ботов
+        freeLimits.put("dispatch_weight", 1);
 
         Map<String, Integer> premiumLimits = new HashMap<>();
         premiumLimits.put("max_bots", 10);
         premiumLimits.put("max_admins_per_bot", 10);
         premiumLimits.put("max_channels_per_bot", 5);
+        premiumLimits.put("dispatch_weight", 4);
 
         SUBSCRIPTION_LIMITS.put("FREE", freeLimits);
         SUBSCRIPTION_LIMITS.put("PREMIUM", premiumLimits);
     }
 
+    private final UserRepository userRepository;
+
+    @Autowired
+    public SubscriptionService(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
     /**
      * Проверяет, имеет ли пользователь доступ к определенной функции
      */
@@ -92,6 +104,20 @@ public class SubscriptionService {
         return limits.getOrDefault(limitName, 0);
     }
 
+    /**
+     * Получает веса ботов в диспетчере обновлений по ID их владельцев.
+     * Владельцы, которых нет в БД, получают вес бесплатной подписки.
+     */
+    public Map<Long, Integer> getDispatchWeights(Collection<Long> ownerIds) {
+        Map<Long, Integer> weights = new HashMap<>();
+        for (User owner : userRepository.findAllById(ownerIds)) {
+            weights.put(owner.getId(), getLimit(owner, "dispatch_weight"));
+        }
+        int defaultWeight = SUBSCRIPTION_LIMITS.get("FREE").get("dispatch_weight");
+        ownerIds.forEach(ownerId -> weights.putIfAbsent(ownerId, defaultWeight));
+        return weights;
+    }
+
     /**
      * Проверяет, может ли пользователь создать еще одного бота
      */
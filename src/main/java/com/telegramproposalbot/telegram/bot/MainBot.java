@@ -4,34 +4,40 @@ import com.telegramproposalbot.entity.User;
 import com.telegramproposalbot.service.BotService;
 import com.telegramproposalbot.service.LocalizationService;
 import com.telegramproposalbot.service.UserService;
+import com.telegramproposalbot.telegram.engine.OutboundSender;
+import com.telegramproposalbot.telegram.engine.TelegramApiClient;
 import com.telegramproposalbot.telegram.handler.CallbackQueryHandler;
 import com.telegramproposalbot.telegram.handler.CommandHandler;
 import com.telegramproposalbot.telegram.miniapp.MiniAppHandler;
-import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.telegram.telegrambots.bots.DefaultAbsSender;
 import org.telegram.telegrambots.bots.DefaultBotOptions;
-import org.telegram.telegrambots.bots.TelegramLongPollingBot;
 import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.PartialBotApiMethod;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
-import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.methods.updates.DeleteWebhook;
 import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
 import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+import org.telegram.telegrambots.meta.generics.BotOptions;
+import org.telegram.telegrambots.meta.generics.LongPollingBot;
 
-import java.lang.reflect.Field;
+import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
-public class MainBot extends TelegramLongPollingBot {
+public class MainBot implements LongPollingBot {
 
+    private final BotOptions options = new DefaultBotOptions();
+    private final OutboundSender sender;
     private final UserService userService;
     private final BotService botService;
     private final CommandHandler commandHandler;
@@ -40,7 +46,7 @@ public class MainBot extends TelegramLongPollingBot {
     private final LocalizationService localizationService;
 
     // Хранение состояний бесед с пользователями
-    private final Map<Long, UserState> userStates = new HashMap<>();
+    private final Map<Long, UserState> userStates = new ConcurrentHashMap<>();
 
     @Value("${telegram.bot.main.username}")
     private String botUsername;
@@ -50,8 +56,9 @@ public class MainBot extends TelegramLongPollingBot {
 
     public MainBot(UserService userService, BotService botService,
                    CommandHandler commandHandler, CallbackQueryHandler callbackQueryHandler,
-                   MiniAppHandler miniAppHandler, LocalizationService localizationService) {
-        super(new DefaultBotOptions(), "placeholder-token"); // Будет обновлен после инициализации
+                   MiniAppHandler miniAppHandler, LocalizationService localizationService,
+                   OutboundSender sender) {
+        this.sender = sender;
         this.userService = userService;
         this.botService = botService;
         this.commandHandler = commandHandler;
@@ -60,30 +67,30 @@ public class MainBot extends TelegramLongPollingBot {
         this.localizationService = localizationService;
     }
 
-    @PostConstruct
-    public void init() {
-        // Обновляем токен после инициализации бина
-        try {
-            Field tokenField = DefaultAbsSender.class.getDeclaredField("botToken");
-            tokenField.setAccessible(true);
-            tokenField.set(this, botToken);
-        } catch (Exception e) {
-            throw new RuntimeException("Не удалось установить токен бота", e);
-        }
-    }
-
     @Override
     public String getBotUsername() {
         return botUsername;
     }
 
-    // Метод getBotToken() устарел, но нам все еще нужно его переопределить
-    @Deprecated
     @Override
     public String getBotToken() {
         return botToken;
     }
 
+    @Override
+    public BotOptions getOptions() {
+        return options;
+    }
+
+    @Override
+    public void clearWebhook() throws TelegramApiRequestException {
+        try {
+            OutboundSender.await(sender.send(botToken, new DeleteWebhook()));
+        } catch (TelegramApiException e) {
+            throw new TelegramApiRequestException("Error removing old webhook", e);
+        }
+    }
+
     @Override
     public void onUpdateReceived(Update update) {
         try {
@@ -156,7 +163,7 @@ public class MainBot extends TelegramLongPollingBot {
         markup.setKeyboard(keyboard);
         message.setReplyMarkup(markup);
 
-        execute(message);
+        send(message);
     }
 
     /**
@@ -176,7 +183,7 @@ public class MainBot extends TelegramLongPollingBot {
             message.setText("✅ Language has been changed to English");
         }
 
-        execute(message);
+        send(message);
 
         // Отправляем главное меню на выбранном языке
         sendMainMenu(chatId);
@@ -194,7 +201,7 @@ public class MainBot extends TelegramLongPollingBot {
         // Обработка команд - имеет приоритет над состояниями
         if (message.hasText() && message.getText().startsWith("/")) {
             BotApiMethod<?> responseMethod = commandHandler.handleCommand(message);
-            execute(responseMethod);
+            send(responseMethod);
             return;
         }
 
@@ -232,7 +239,7 @@ public class MainBot extends TelegramLongPollingBot {
         // Передаем обработку основному обработчику
         BotApiMethod<?> responseMethod = callbackQueryHandler.handleCallbackQuery(callbackQuery);
         if (responseMethod != null) {
-            execute(responseMethod);
+            send(responseMethod);
         }
     }
 
@@ -254,7 +261,7 @@ public class MainBot extends TelegramLongPollingBot {
             markup.setKeyboard(keyboard);
             errorMessage.setReplyMarkup(markup);
 
-            execute(errorMessage);
+            send(errorMessage);
             return;
         }
 
@@ -278,7 +285,7 @@ public class MainBot extends TelegramLongPollingBot {
         markup.setKeyboard(keyboard);
         nameRequest.setReplyMarkup(markup);
 
-        execute(nameRequest);
+        send(nameRequest);
     }
 
     private void handleBotNameInput(Long chatId, String botName) throws TelegramApiException {
@@ -299,7 +306,7 @@ public class MainBot extends TelegramLongPollingBot {
             markup.setKeyboard(keyboard);
             errorMessage.setReplyMarkup(markup);
 
-            execute(errorMessage);
+            send(errorMessage);
             return;
         }
 
@@ -323,7 +330,7 @@ public class MainBot extends TelegramLongPollingBot {
         markup.setKeyboard(keyboard);
         welcomeRequest.setReplyMarkup(markup);
 
-        execute(welcomeRequest);
+        send(welcomeRequest);
     }
 
     private void handleWelcomeMessageInput(Long chatId, String welcomeMessage) throws TelegramApiException {
@@ -344,7 +351,7 @@ public class MainBot extends TelegramLongPollingBot {
             markup.setKeyboard(keyboard);
             errorMessage.setReplyMarkup(markup);
 
-            execute(errorMessage);
+            send(errorMessage);
             return;
         }
 
@@ -376,7 +383,7 @@ public class MainBot extends TelegramLongPollingBot {
                 markup.setKeyboard(keyboard);
                 errorMessage.setReplyMarkup(markup);
 
-                execute(errorMessage);
+                send(errorMessage);
                 userStates.put(chatId, UserState.NONE);
                 return;
             }
@@ -423,7 +430,7 @@ public class MainBot extends TelegramLongPollingBot {
             markup.setKeyboard(keyboard);
             successMessage.setReplyMarkup(markup);
 
-            execute(successMessage);
+            send(successMessage);
         } catch (Exception e) {
             e.printStackTrace();
             SendMessage errorMessage = new SendMessage();
@@ -442,7 +449,7 @@ public class MainBot extends TelegramLongPollingBot {
             markup.setKeyboard(keyboard);
             errorMessage.setReplyMarkup(markup);
 
-            execute(errorMessage);
+            send(errorMessage);
             userStates.put(chatId, UserState.NONE);
         }
     }
@@ -503,7 +510,21 @@ public class MainBot extends TelegramLongPollingBot {
         markup.setKeyboard(keyboard);
         message.setReplyMarkup(markup);
 
-        execute(message);
+        send(message);
+    }
+
+    /**
+     * Отправляет запрос через общий отправитель без ожидания ответа, ошибки только логируются
+     */
+    private <T extends Serializable> CompletableFuture<T> send(PartialBotApiMethod<T> method) {
+        CompletableFuture<T> result = sender.send(botToken, method);
+        result.whenComplete((value, error) -> {
+            if (error != null) {
+                System.err.println("Ошибка при выполнении " + method.getMethod() + " основным ботом: " +
+                        TelegramApiClient.unwrap(error).getMessage());
+            }
+        });
+        return result;
     }
 
     // Состояния для FSM (Finite State Machine)
@@ -1,94 +1,141 @@
 package com.telegramproposalbot.telegram.bot;
 
+import com.telegramproposalbot.cache.ChannelInfo;
+import com.telegramproposalbot.cache.ContentFingerprint;
 import com.telegramproposalbot.entity.Bot;
 import com.telegramproposalbot.entity.BlockedUser;
+import com.telegramproposalbot.entity.MessageLink;
+import com.telegramproposalbot.entity.Proposal;
+import com.telegramproposalbot.entity.ProposalMedia;
+import com.telegramproposalbot.entity.ProposalPublication;
+import com.telegramproposalbot.entity.ScheduledPost;
 import com.telegramproposalbot.service.BlockedUserService;
 import com.telegramproposalbot.service.BotService;
+import com.telegramproposalbot.service.ChannelPublicationService;
+import com.telegramproposalbot.service.ChannelPublicationService.ChannelPost;
 import com.telegramproposalbot.service.ChannelService;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.stereotype.Component;
+import com.telegramproposalbot.service.DuplicateDetectionService;
+import com.telegramproposalbot.service.FloodControlService;
+import com.telegramproposalbot.service.MessageLinkService;
+import com.telegramproposalbot.service.ProposalService;
+import com.telegramproposalbot.telegram.engine.MediaGroupCollector;
+import com.telegramproposalbot.telegram.engine.OutboundSender;
+import com.telegramproposalbot.telegram.engine.TelegramApiClient;
+import com.telegramproposalbot.telegram.engine.TenantBot;
+import com.telegramproposalbot.telegram.runtime.BotConfig;
+import com.telegramproposalbot.telegram.runtime.BotContext;
 import org.telegram.telegrambots.bots.DefaultBotOptions;
-import org.telegram.telegrambots.bots.TelegramLongPollingBot;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
 import org.telegram.telegrambots.meta.api.methods.ForwardMessage;
+import org.telegram.telegrambots.meta.api.methods.PartialBotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.updates.DeleteWebhook;
+import org.telegram.telegrambots.meta.api.methods.send.SendMediaGroup;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
 import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
 import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.media.InputMedia;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+import org.telegram.telegrambots.meta.generics.BotOptions;
+import org.telegram.telegrambots.meta.generics.LongPollingBot;
 
-import java.lang.reflect.Field;
+import java.io.Serializable;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
-@Component
-public class ProposalBot extends TelegramLongPollingBot {
+public class ProposalBot implements LongPollingBot, TenantBot {
 
-    private Bot botConfig;
+    // Опции не используются общим движком опроса, но требуются интерфейсом LongPollingBot
+    private static final BotOptions OPTIONS = new DefaultBotOptions();
+
+    // Сколько ждать доставки сообщения одному администратору
+    private static final long ADMIN_DELIVERY_TIMEOUT_SECONDS = 60;
+
+    private final BotContext context;
+    private final OutboundSender sender;
     private final BotService botService;
     private final BlockedUserService blockedUserService;
     private final ChannelService channelService;
-
-    // Кэш сообщений пользователей
-    private final Map<Long, Map<Integer, Message>> userMessages = new ConcurrentHashMap<>();
-
-    // Кэш для связи сообщений между пользователями и админами
-    private final Map<Integer, MessageLink> messageLinks = new ConcurrentHashMap<>();
-
-    @Autowired
-    public ProposalBot(BotService botService,
+    private final ProposalService proposalService;
+    private final MessageLinkService messageLinkService;
+    private final FloodControlService floodControlService;
+    private final DuplicateDetectionService duplicateDetectionService;
+    private final MediaGroupCollector mediaGroupCollector;
+    private final ChannelPublicationService channelPublicationService;
+
+    public ProposalBot(BotContext context,
+                       OutboundSender sender,
+                       BotService botService,
                        BlockedUserService blockedUserService,
-                       ChannelService channelService) {
-        super(new DefaultBotOptions(), "placeholder-token"); // Будет заменен при инициализации
+                       ChannelService channelService,
+                       ProposalService proposalService,
+                       MessageLinkService messageLinkService,
+                       FloodControlService floodControlService,
+                       DuplicateDetectionService duplicateDetectionService,
+                       MediaGroupCollector mediaGroupCollector,
+                       ChannelPublicationService channelPublicationService) {
+        this.context = context;
+        this.sender = sender;
         this.botService = botService;
         this.blockedUserService = blockedUserService;
         this.channelService = channelService;
+        this.proposalService = proposalService;
+        this.messageLinkService = messageLinkService;
+        this.floodControlService = floodControlService;
+        this.duplicateDetectionService = duplicateDetectionService;
+        this.mediaGroupCollector = mediaGroupCollector;
+        this.channelPublicationService = channelPublicationService;
     }
 
     /**
-     * Инициализирует бота с токеном и конфигурацией
+     * Возвращает состояние этого экземпляра бота
      */
-    public void initialize(String token, Bot botConfig) {
-        this.botConfig = botConfig;
-
-        // Устанавливаем токен через рефлексию
-        try {
-            Field tokenField = this.getClass().getSuperclass().getDeclaredField("botToken");
-            tokenField.setAccessible(true);
-            tokenField.set(this, token);
-        } catch (Exception e) {
-            throw new RuntimeException("Не удалось установить токен бота", e);
-        }
+    public BotContext getContext() {
+        return context;
     }
 
     @Override
     public String getBotUsername() {
-        return botConfig != null ? botConfig.getName() : "uninitialized-bot";
+        return context.getConfig().getName();
     }
 
-    // Метод getBotToken() устарел, но нам все еще нужно его переопределить
-    @Deprecated
     @Override
     public String getBotToken() {
+        return context.getToken();
+    }
+
+    @Override
+    public BotOptions getOptions() {
+        return OPTIONS;
+    }
+
+    @Override
+    public String getTenantId() {
+        return context.getBotId().toString();
+    }
+
+    @Override
+    public int getTenantWeight() {
+        return context.getWeight();
+    }
+
+    @Override
+    public void clearWebhook() throws TelegramApiRequestException {
         try {
-            Field tokenField = this.getClass().getSuperclass().getDeclaredField("botToken");
-            tokenField.setAccessible(true);
-            return (String) tokenField.get(this);
-        } catch (Exception e) {
-            throw new RuntimeException("Не удалось получить токен бота", e);
+            sendAndWait(new DeleteWebhook());
+        } catch (TelegramApiException e) {
+            throw new TelegramApiRequestException("Error removing old webhook", e);
         }
     }
 
     @Override
     public void onUpdateReceived(Update update) {
-        // Проверяем, что бот инициализирован
-        if (botConfig == null) {
-            System.err.println("Бот не инициализирован!");
-            return;
-        }
-
         try {
             if (update.hasMessage()) {
                 handleMessage(update.getMessage());
@@ -104,7 +151,7 @@ public class ProposalBot extends TelegramLongPollingBot {
         Long chatId = message.getChatId();
 
         // Проверяем, является ли отправитель администратором
-        boolean isAdmin = botService.isAdmin(botConfig.getId(), message.getFrom().getId());
+        boolean isAdmin = botService.isAdmin(context.getBotId(), message.getFrom().getId());
 
         if (isAdmin) {
             // Если это ответ на пересланное сообщение от пользователя
@@ -119,12 +166,28 @@ public class ProposalBot extends TelegramLongPollingBot {
                 }
             }
         } else {
+            // Следующие элементы альбома уже прошли проверки вместе с первым
+            if (message.getMediaGroupId() != null && mediaGroupCollector.append(context.getBotId(), message)) {
+                return;
+            }
+
+            // Сообщения сверх лимита отбрасываем молча, до обращений к БД и API
+            if (!floodControlService.tryAcquire(context.getBotId(), message.getFrom().getId())) {
+                return;
+            }
+
             // Проверяем, не заблокирован ли пользователь
-            if (blockedUserService.isBlocked(botConfig.getId(), message.getFrom().getId())) {
+            if (blockedUserService.isBlocked(context.getBotId(), message.getFrom().getId())) {
                 SendMessage blockedMessage = new SendMessage();
                 blockedMessage.setChatId(chatId.toString());
                 blockedMessage.setText("⛔ Вы заблокированы администратором и не можете отправлять сообщения.");
-                execute(blockedMessage);
+                send(blockedMessage);
+                return;
+            }
+
+            // Альбом собирается целиком и обрабатывается как одно предложение
+            if (message.getMediaGroupId() != null) {
+                mediaGroupCollector.open(this, context.getBotId(), message, this::handleUserAlbum);
                 return;
             }
 
@@ -133,62 +196,143 @@ public class ProposalBot extends TelegramLongPollingBot {
         }
     }
 
-    private void handleUserMessage(Message message) throws TelegramApiException {
+    private void handleUserMessage(Message message) {
+        Proposal proposal = proposalService.fromMessage(context.getBotId(), message);
+        if (acceptProposal(message, proposal, List.of())) {
+            // Пересылаем сообщение всем администраторам
+            forwardMessageToAdmins(message);
+        }
+    }
+
+    /**
+     * Обрабатывает собранный альбом как одно предложение с одним подтверждением
+     */
+    private void handleUserAlbum(List<Message> album) {
+        List<ProposalMedia> media = proposalService.toAlbumMedia(album);
+        if (media.size() < 2) {
+            // Остальные элементы не дошли за время ожидания: в альбом из одного элемента собирать нечего
+            for (Message message : album) {
+                handleUserMessage(message);
+            }
+            return;
+        }
+
+        Message first = album.get(0);
+        Proposal proposal = proposalService.fromAlbum(context.getBotId(), album);
+        if (acceptProposal(first, proposal, media)) {
+            forwardAlbumToAdmins(first, proposal, media);
+        }
+    }
+
+    /**
+     * Приветствует нового автора, сохраняет предложение или учитывает его как повтор
+     * и подтверждает получение
+     *
+     * @return true, если предложение новое и его нужно переслать администраторам
+     */
+    private boolean acceptProposal(Message message, Proposal proposal, List<ProposalMedia> media) {
         Long userId = message.getFrom().getId();
         Long chatId = message.getChatId();
+        // Одна конфигурация на всю обработку, даже если ее заменят в это время
+        BotConfig config = context.getConfig();
 
         // Если это первое сообщение пользователя, отправляем приветствие
-        if (!userMessages.containsKey(userId)) {
-            userMessages.put(userId, new HashMap<>());
-
+        if (!proposalService.hasProposals(context.getBotId(), userId)) {
             SendMessage welcomeMessage = new SendMessage();
             welcomeMessage.setChatId(chatId.toString());
-            welcomeMessage.setText(botConfig.getWelcomeMessage());
-            execute(welcomeMessage);
+            welcomeMessage.setText(config.getWelcomeMessage());
+            send(welcomeMessage);
         }
 
-        // Сохраняем сообщение в кэше
-        userMessages.get(userId).put(message.getMessageId(), message);
+        ContentFingerprint fingerprint = ContentFingerprint.of(proposal.getFileUniqueId(), proposal.getText());
+
+        // Повтор ожидающего предложения не пересылаем, а учитываем в нем самом
+        Proposal original = duplicateDetectionService.findDuplicate(context.getBotId(), fingerprint);
+        if (original == null) {
+            if (media.isEmpty()) {
+                proposalService.createProposal(proposal);
+            } else {
+                proposalService.createAlbum(proposal, media);
+            }
+            duplicateDetectionService.remember(proposal, fingerprint);
+        } else {
+            duplicateDetectionService.collapse(original);
+        }
 
         // Отправляем подтверждение пользователю
         SendMessage confirmationMessage = new SendMessage();
         confirmationMessage.setChatId(chatId.toString());
-        confirmationMessage.setText(botConfig.getConfirmationMessage() != null
-                ? botConfig.getConfirmationMessage()
+        confirmationMessage.setText(config.getConfirmationMessage() != null
+                ? config.getConfirmationMessage()
                 : "✅ Ваше сообщение получено и будет рассмотрено администраторами.");
-        execute(confirmationMessage);
+        send(confirmationMessage);
 
-        // Пересылаем сообщение всем администраторам
-        forwardMessageToAdmins(message);
+        return original == null;
     }
 
-    private void forwardMessageToAdmins(Message message) throws TelegramApiException {
-        List<Long> adminIds = botService.getAdminIds(botConfig.getId());
-
-        for (Long adminId : adminIds) {
-            // Пересылаем оригинальное сообщение
+    /**
+     * Пересылает сообщение всем администраторам одновременно
+     */
+    private CompletableFuture<Void> forwardMessageToAdmins(Message message) {
+        return deliverToAdmins(message, adminId -> {
             ForwardMessage forwardMessage = new ForwardMessage();
             forwardMessage.setChatId(adminId.toString());
             forwardMessage.setFromChatId(message.getChatId().toString());
             forwardMessage.setMessageId(message.getMessageId());
-            Message forwardedMessage = execute(forwardMessage);
+            return sender.send(context.getToken(), forwardMessage).thenApply(Message::getMessageId);
+        });
+    }
+
+    /**
+     * Отправляет альбом каждому администратору одним sendMediaGroup по file_id, без загрузки файлов
+     */
+    private CompletableFuture<Void> forwardAlbumToAdmins(Message first, Proposal proposal, List<ProposalMedia> media) {
+        List<InputMedia> inputMedia = PublicationBuilder.toInputMedia(media, proposal.getText());
+        return deliverToAdmins(first, adminId -> {
+            SendMediaGroup mediaGroup = new SendMediaGroup(adminId.toString(), inputMedia);
+            // Ответ администратора на первый элемент альбома связывается с предложением
+            return sender.send(context.getToken(), mediaGroup).thenApply(sent -> sent.get(0).getMessageId());
+        });
+    }
+
+    /**
+     * Рассылает предложение всем администраторам одновременно и отправляет каждому кнопки управления.
+     * Связь сообщений сохраняется для каждого администратора, как только оба его сообщения доставлены.
+     *
+     * @param forward отправляет предложение администратору и возвращает ID первого отправленного сообщения
+     */
+    private CompletableFuture<Void> deliverToAdmins(Message message,
+                                                    Function<Long, CompletableFuture<Integer>> forward) {
+        List<Long> adminIds = botService.getAdminIds(context.getBotId());
+        InlineKeyboardMarkup markup = createAdminKeyboard(message.getFrom().getId(), message.getMessageId());
 
+        List<CompletableFuture<MessageLink>> deliveries = new ArrayList<>(adminIds.size());
+        for (Long adminId : adminIds) {
             // Отправляем админу кнопки управления
             SendMessage controlMessage = new SendMessage();
             controlMessage.setChatId(adminId.toString());
             controlMessage.setText("👆 Выберите действие для этого сообщения:");
-
-            // Создаем клавиатуру с кнопками
-            InlineKeyboardMarkup markup = createAdminKeyboard(message.getFrom().getId(), message.getMessageId());
             controlMessage.setReplyMarkup(markup);
 
-            Message controlMessageSent = execute(controlMessage);
-
-            // Сохраняем связь между сообщениями
-            messageLinks.put(controlMessageSent.getMessageId(),
-                    new MessageLink(message.getFrom().getId(), message.getMessageId(),
-                            forwardedMessage.getMessageId(), controlMessageSent.getMessageId()));
+            // Сообщения в один чат уходят по очереди, поэтому кнопки придут после пересланного сообщения
+            CompletableFuture<Integer> forwarded = forward.apply(adminId);
+            CompletableFuture<Message> control = sender.send(context.getToken(), controlMessage);
+
+            deliveries.add(forwarded.thenCombine(control, (forwardedMessageId, controlMessageSent) -> {
+                // Сохраняем связь между сообщениями одной записью
+                MessageLink link = new MessageLink(context.getBotId(), adminId, message.getFrom().getId(),
+                        message.getMessageId(), forwardedMessageId, controlMessageSent.getMessageId());
+                messageLinkService.addLink(link);
+                return link;
+            }).orTimeout(ADMIN_DELIVERY_TIMEOUT_SECONDS, TimeUnit.SECONDS).whenComplete((link, error) -> {
+                if (error != null) {
+                    System.err.println("Не удалось переслать сообщение администратору " + adminId + ": " +
+                            TelegramApiClient.unwrap(error).getMessage());
+                }
+            }));
         }
+
+        return CompletableFuture.allOf(deliveries.toArray(new CompletableFuture[0]));
     }
 
     private InlineKeyboardMarkup createAdminKeyboard(Long userId, Integer messageId) {
@@ -218,9 +362,15 @@ public class ProposalBot extends TelegramLongPollingBot {
         rejectButton.setCallbackData("reject:" + userId + ":" + messageId);
         row2.add(rejectButton);
 
+        // Заблокированного автора можно разблокировать из того же сообщения
         InlineKeyboardButton blockButton = new InlineKeyboardButton();
-        blockButton.setText("⛔ Заблокировать");
-        blockButton.setCallbackData("block:" + userId + ":" + messageId);
+        if (blockedUserService.isBlocked(context.getBotId(), userId)) {
+            blockButton.setText("🔓 Разблокировать");
+            blockButton.setCallbackData("unblock:" + userId + ":" + messageId);
+        } else {
+            blockButton.setText("⛔ Заблокировать");
+            blockButton.setCallbackData("block:" + userId + ":" + messageId);
+        }
         row2.add(blockButton);
 
         keyboard.add(row2);
@@ -244,11 +394,85 @@ public class ProposalBot extends TelegramLongPollingBot {
         return markup;
     }
 
+    /**
+     * Собирает текст и кнопки сообщения управления для текущего статуса предложения.
+     * Содержимое одинаково для всех администраторов, чат и сообщение заполняет вызывающий.
+     */
+    public EditMessageText renderControlMessage(Proposal proposal) {
+        Long userId = proposal.getUserId();
+        Integer messageId = proposal.getMessageId();
+        EditMessageText content = new EditMessageText();
+
+        switch (proposal.getStatus()) {
+            case Proposal.STATUS_PUBLISHING -> content.setText("⏳ Сообщение публикуется во все каналы...");
+            case Proposal.STATUS_PUBLISHED -> {
+                List<ProposalPublication> publications = channelPublicationService.getPublications(proposal);
+                content.setText(publications.stream().anyMatch(ProposalPublication::isMaybeSent)
+                        ? publicationSummary(publications)
+                        : "✅ Сообщение успешно опубликовано в канале!");
+            }
+            case Proposal.STATUS_REJECTED -> {
+                content.setText("❌ Сообщение отклонено");
+
+                // Кнопка для возможности вернуть сообщение
+                InlineKeyboardButton undoButton = new InlineKeyboardButton();
+                undoButton.setText("↩️ Вернуть");
+                undoButton.setCallbackData("undo_reject:" + userId + ":" + messageId);
+                content.setReplyMarkup(new InlineKeyboardMarkup(List.of(List.of(undoButton))));
+            }
+            case Proposal.STATUS_SCHEDULED -> {
+                ScheduledPost post = botService.getScheduledPublication(context.getBotId(), userId, messageId);
+                content.setText(post != null
+                        ? "🕒 Публикация запланирована на " +
+                        new java.text.SimpleDateFormat("dd.MM.yyyy HH:mm").format(post.getScheduledAt())
+                        : "🕒 Публикация запланирована");
+
+                // Кнопки отмены и переноса публикации
+                InlineKeyboardButton rescheduleButton = new InlineKeyboardButton();
+                rescheduleButton.setText("🕒 Перенести");
+                rescheduleButton.setCallbackData("schedule:" + userId + ":" + messageId);
+
+                InlineKeyboardButton cancelButton = new InlineKeyboardButton();
+                cancelButton.setText("❌ Отменить публикацию");
+                cancelButton.setCallbackData("schedule_drop:" + userId + ":" + messageId);
+
+                content.setReplyMarkup(new InlineKeyboardMarkup(List.of(List.of(rescheduleButton, cancelButton))));
+            }
+            default -> {
+                content.setText(blockedUserService.isBlocked(context.getBotId(), userId)
+                        ? "⛔ Автор заблокирован. Выберите действие для этого сообщения:"
+                        : "👆 Выберите действие для этого сообщения:");
+                content.setReplyMarkup(createAdminKeyboard(userId, messageId));
+            }
+        }
+        return content;
+    }
+
+    /**
+     * Показывает администратору короткое уведомление в ответ на нажатие кнопки
+     */
+    private void answerCallback(CallbackQuery callbackQuery, String text) {
+        AnswerCallbackQuery answer = new AnswerCallbackQuery(callbackQuery.getId());
+        answer.setText(text);
+        send(answer);
+    }
+
+    /**
+     * Сообщает администратору, что предложение уже обработал другой администратор
+     */
+    private void answerAlreadyProcessed(CallbackQuery callbackQuery) {
+        AnswerCallbackQuery answer = new AnswerCallbackQuery(callbackQuery.getId());
+        answer.setText("⚠️ Предложение уже обработано другим администратором");
+        answer.setShowAlert(true);
+        send(answer);
+    }
+
     private void handleCallbackQuery(CallbackQuery callbackQuery) throws TelegramApiException {
         String[] data = callbackQuery.getData().split(":");
         String action = data[0];
         Long userId = Long.parseLong(data[1]);
-        Integer messageId = Integer.parseInt(data[2]);
+        // У кнопок списка заблокированных нет сообщения
+        Integer messageId = data.length > 2 ? Integer.parseInt(data[2]) : null;
 
         switch (action) {
             case "approve":
@@ -272,18 +496,32 @@ public class ProposalBot extends TelegramLongPollingBot {
             case "publish":
                 // Для публикации в выбранный канал
                 Long channelId = Long.parseLong(data[3]);
-                publishToChannel(callbackQuery, userId, messageId, channelId, false, null);
+                publishToChannel(callbackQuery, userId, messageId, channelId, false);
                 break;
             case "publish_silent":
                 // Для публикации без звука в выбранный канал
                 Long silentChannelId = Long.parseLong(data[3]);
-                publishToChannel(callbackQuery, userId, messageId, silentChannelId, true, null);
+                publishToChannel(callbackQuery, userId, messageId, silentChannelId, true);
+                break;
+            case "publish_all":
+                publishToAllChannels(callbackQuery, userId, messageId, false);
+                break;
+            case "publish_all_silent":
+                publishToAllChannels(callbackQuery, userId, messageId, true);
                 break;
             case "schedule_time":
-                // Для отложенной публикации
-                Long scheduledChannelId = Long.parseLong(data[3]);
-                Date scheduledDate = new Date(Long.parseLong(data[4]));
-                publishToChannel(callbackQuery, userId, messageId, scheduledChannelId, false, scheduledDate);
+                // Для отложенной публикации: сначала выбирается время, затем канал
+                if (data.length == 4) {
+                    showScheduleChannels(callbackQuery, userId, messageId, Long.parseLong(data[3]));
+                } else {
+                    Long scheduledChannelId = Long.parseLong(data[3]);
+                    Date scheduledDate = new Date(Long.parseLong(data[4]));
+                    schedulePost(callbackQuery, userId, messageId, scheduledChannelId, scheduledDate);
+                }
+                break;
+            case "schedule_drop":
+                // Отмена отложенной публикации
+                handleScheduleCancel(callbackQuery, userId, messageId);
                 break;
             case "schedule_cancel":
             case "silent_cancel":
@@ -293,21 +531,18 @@ public class ProposalBot extends TelegramLongPollingBot {
                 resetMessage.setMessageId(callbackQuery.getMessage().getMessageId());
                 resetMessage.setText("👆 Выберите действие для этого сообщения:");
                 resetMessage.setReplyMarkup(createAdminKeyboard(userId, messageId));
-                execute(resetMessage);
+                send(resetMessage);
                 break;
             case "undo_reject":
-                // Восстановление отклоненного сообщения
-                // Просто обновляем UI, т.к. сообщение может быть удалено из кэша
-                EditMessageText undoMessage = new EditMessageText();
-                undoMessage.setChatId(callbackQuery.getMessage().getChatId().toString());
-                undoMessage.setMessageId(callbackQuery.getMessage().getMessageId());
-                undoMessage.setText("👆 Сообщение восстановлено. Выберите действие:");
-                undoMessage.setReplyMarkup(createAdminKeyboard(userId, messageId));
-                execute(undoMessage);
+                // Восстановление отклоненного сообщения, кнопки у всех администраторов обновит ControlMessageUpdater
+                if (proposalService.updateStatus(context.getBotId(), userId, messageId,
+                        Proposal.STATUS_PENDING) == null) {
+                    answerAlreadyProcessed(callbackQuery);
+                }
                 break;
             case "unblock":
                 // Разблокировка пользователя
-                handleUnblock(callbackQuery, userId);
+                handleUnblock(callbackQuery, userId, messageId);
                 break;
             default:
                 System.out.println("Unknown callback action: " + action);
@@ -316,7 +551,7 @@ public class ProposalBot extends TelegramLongPollingBot {
 
     private void handleApprove(CallbackQuery callbackQuery, Long userId, Integer messageId) throws TelegramApiException {
         // Получаем список каналов для публикации
-        List<Long> channelIds = channelService.getChannelIds(botConfig.getId());
+        List<Long> channelIds = channelService.getChannelIds(context.getBotId());
 
         if (channelIds.isEmpty()) {
             // Если каналы не настроены
@@ -325,20 +560,19 @@ public class ProposalBot extends TelegramLongPollingBot {
             editMessage.setMessageId(callbackQuery.getMessage().getMessageId());
             editMessage.setText("⚠️ Нет настроенных каналов для публикации. " +
                     "Пожалуйста, настройте каналы в настройках бота.");
-            execute(editMessage);
+            send(editMessage);
             return;
         }
 
-        // Проверяем, есть ли сообщение в кэше
-        Map<Integer, Message> userMsgs = userMessages.getOrDefault(userId, new HashMap<>());
-        Message originalMessage = userMsgs.get(messageId);
+        // Проверяем, ожидает ли сообщение решения
+        Proposal originalMessage = proposalService.getPendingProposal(context.getBotId(), userId, messageId);
 
         if (originalMessage == null) {
             EditMessageText errorMessage = new EditMessageText();
             errorMessage.setChatId(callbackQuery.getMessage().getChatId().toString());
             errorMessage.setMessageId(callbackQuery.getMessage().getMessageId());
             errorMessage.setText("❌ Сообщение не найдено. Возможно, оно было удалено или слишком старое.");
-            execute(errorMessage);
+            send(errorMessage);
             return;
         }
 
@@ -350,11 +584,11 @@ public class ProposalBot extends TelegramLongPollingBot {
 
         // Если канал один, публикуем сразу
         Long channelId = channelIds.get(0);
-        publishToChannel(callbackQuery, userId, messageId, channelId, false, null);
+        publishToChannel(callbackQuery, userId, messageId, channelId, false);
     }
 
     private void showChannelSelection(CallbackQuery callbackQuery, Long userId, Integer messageId) throws TelegramApiException {
-        List<Map<String, String>> channels = channelService.getChannelsInfo(botConfig.getId());
+        List<Map<String, String>> channels = channelService.getChannelsInfo(context.getBotId());
 
         EditMessageText selectionMessage = new EditMessageText();
         selectionMessage.setChatId(callbackQuery.getMessage().getChatId().toString());
@@ -373,87 +607,67 @@ public class ProposalBot extends TelegramLongPollingBot {
             keyboard.add(row);
         }
 
+        // Публикация сразу во все каналы
+        List<InlineKeyboardButton> allRow = new ArrayList<>();
+        InlineKeyboardButton allButton = new InlineKeyboardButton();
+        allButton.setText("📢 Во все каналы");
+        allButton.setCallbackData("publish_all:" + userId + ":" + messageId);
+        allRow.add(allButton);
+        keyboard.add(allRow);
+
         markup.setKeyboard(keyboard);
         selectionMessage.setReplyMarkup(markup);
 
-        execute(selectionMessage);
+        send(selectionMessage);
     }
 
     private void publishToChannel(CallbackQuery callbackQuery, Long userId, Integer messageId,
-                                  Long channelId, boolean silent, Date scheduledDate) throws TelegramApiException {
-        Map<Integer, Message> userMsgs = userMessages.getOrDefault(userId, new HashMap<>());
-        Message originalMessage = userMsgs.get(messageId);
+                                  Long channelId, boolean silent) throws TelegramApiException {
+        Proposal originalMessage = proposalService.getPendingProposal(context.getBotId(), userId, messageId);
 
         if (originalMessage == null) {
             EditMessageText errorMessage = new EditMessageText();
             errorMessage.setChatId(callbackQuery.getMessage().getChatId().toString());
             errorMessage.setMessageId(callbackQuery.getMessage().getMessageId());
             errorMessage.setText("❌ Сообщение не найдено. Возможно, оно было удалено или слишком старое.");
-            execute(errorMessage);
+            send(errorMessage);
             return;
         }
 
         try {
             // Публикация сообщения в канал
             // В зависимости от типа сообщения используем разные методы API
-            String channelUsername = channelService.getChannelUsername(botConfig.getId(), channelId);
+            ChannelInfo channel = channelService.getChannel(context.getBotId(), channelId);
+            if (channel == null) {
+                throw new TelegramApiException("канал не найден");
+            }
+            if (!channel.canPostMessages()) {
+                throw new TelegramApiException("у бота нет прав на публикацию в канале " + channel.getTitle());
+            }
 
             // Получаем форматирование публикации
-            String footer = botService.getBotSetting(botConfig.getId(), "publication_footer", "");
-
-            if (originalMessage.hasText()) {
-                SendMessage publishMessage = new SendMessage();
-                publishMessage.setChatId(channelUsername);
-
-                // Если есть подпись к публикации, добавляем её
-                String text = originalMessage.getText();
-                if (!footer.isEmpty()) {
-                    text += "\n\n" + footer;
-                }
-
-                publishMessage.setText(text);
-                publishMessage.setDisableNotification(silent);
-
-                if (scheduledDate != null) {
-                    // Для отложенной публикации используем другой метод API
-                    // В этом примере просто имитируем
-                    botService.schedulePublication(botConfig.getId(), channelId, text, scheduledDate);
-
-                    EditMessageText confirmMessage = new EditMessageText();
-                    confirmMessage.setChatId(callbackQuery.getMessage().getChatId().toString());
-                    confirmMessage.setMessageId(callbackQuery.getMessage().getMessageId());
-                    confirmMessage.setText("🕒 Публикация запланирована на " + scheduledDate);
-                    execute(confirmMessage);
-                    return;
-                }
-
-                execute(publishMessage);
-            } else if (originalMessage.hasPhoto()) {
-                // Здесь код для публикации фото
-                // ...
-            } else if (originalMessage.hasVideo()) {
-                // Здесь код для публикации видео
-                // ...
-            } else if (originalMessage.hasDocument()) {
-                // Здесь код для публикации документа
-                // ...
-            }
+            String footer = botService.getBotSetting(context.getBotId(), "publication_footer", "");
+            List<ProposalMedia> album = Proposal.TYPE_ALBUM.equals(originalMessage.getType())
+                    ? proposalService.getAlbumMedia(originalMessage)
+                    : List.of();
 
-            // Уведомляем админа об успехе
-            EditMessageText confirmMessage = new EditMessageText();
-            confirmMessage.setChatId(callbackQuery.getMessage().getChatId().toString());
-            confirmMessage.setMessageId(callbackQuery.getMessage().getMessageId());
-            confirmMessage.setText("✅ Сообщение успешно опубликовано в канале!");
-            execute(confirmMessage);
+            // Публикация и уведомление автора записываются в outbox вместе со сменой статуса.
+            // Медиа отправляются по file_id, без скачивания и повторной загрузки файлов
+            List<PartialBotApiMethod<?>> outgoing = new ArrayList<>();
+            outgoing.add(PublicationBuilder.build(originalMessage, album, channel.getTargetChatId(), footer, silent));
 
             // Уведомляем отправителя об одобрении
             SendMessage notifyUser = new SendMessage();
             notifyUser.setChatId(userId.toString());
             notifyUser.setText("🎉 Ваше сообщение было одобрено и опубликовано в канале!");
-            execute(notifyUser);
+            outgoing.add(notifyUser);
 
-            // Удаляем сообщение из кэша
-            userMsgs.remove(messageId);
+            // Отмечаем предложение опубликованным. Если другой администратор успел раньше,
+            // публикация не ставится в outbox. Кнопки у всех администраторов обновит ControlMessageUpdater
+            if (proposalService.updateStatus(context.getBotId(), userId, messageId, Proposal.STATUS_PUBLISHED,
+                    outgoing) == null) {
+                answerAlreadyProcessed(callbackQuery);
+            }
         } catch (Exception e) {
             e.printStackTrace();
 
@@ -461,25 +675,105 @@ public class ProposalBot extends TelegramLongPollingBot {
             errorMessage.setChatId(callbackQuery.getMessage().getChatId().toString());
             errorMessage.setMessageId(callbackQuery.getMessage().getMessageId());
             errorMessage.setText("❌ Ошибка при публикации: " + e.getMessage());
-            execute(errorMessage);
+            send(errorMessage);
         }
     }
 
+    /**
+     * Публикует предложение во все каналы бота одновременно.
+     * Сообщения с кнопками у всех администраторов обновляются по смене статуса предложения:
+     * на время публикации и когда известны результаты по всем каналам.
+     */
+    private void publishToAllChannels(CallbackQuery callbackQuery, Long userId, Integer messageId,
+                                      boolean silent) throws TelegramApiException {
+        String adminChatId = callbackQuery.getMessage().getChatId().toString();
+        Integer controlMessageId = callbackQuery.getMessage().getMessageId();
+        Proposal originalMessage = proposalService.getPendingProposal(context.getBotId(), userId, messageId);
+
+        if (originalMessage == null) {
+            EditMessageText errorMessage = new EditMessageText();
+            errorMessage.setChatId(adminChatId);
+            errorMessage.setMessageId(controlMessageId);
+            errorMessage.setText("❌ Сообщение не найдено. Возможно, оно было удалено или слишком старое.");
+            send(errorMessage);
+            return;
+        }
+
+        String footer = botService.getBotSetting(context.getBotId(), "publication_footer", "");
+        List<ProposalMedia> album = Proposal.TYPE_ALBUM.equals(originalMessage.getType())
+                ? proposalService.getAlbumMedia(originalMessage)
+                : List.of();
+
+        List<ChannelPost> posts = new ArrayList<>();
+        for (ChannelInfo channel : channelService.getRegisteredChannels(context.getBotId())) {
+            if (channel.canPostMessages()) {
+                posts.add(ChannelPost.of(channel,
+                        PublicationBuilder.build(originalMessage, album, channel.getTargetChatId(), footer, silent)));
+            } else {
+                posts.add(ChannelPost.unavailable(channel, "у бота нет прав на публикацию"));
+            }
+        }
+
+        // Автора уведомляем, если удалась хотя бы одна публикация
+        SendMessage notifyUser = new SendMessage();
+        notifyUser.setChatId(userId.toString());
+        notifyUser.setText("🎉 Ваше сообщение было одобрено и опубликовано в канале!");
+
+        CompletableFuture<List<ProposalPublication>> publishing = channelPublicationService.publish(
+                context.getToken(), originalMessage, posts, List.of(notifyUser));
+        if (publishing == null) {
+            answerAlreadyProcessed(callbackQuery);
+            return;
+        }
+
+        publishing.whenComplete((publications, error) -> {
+            // Предложение возвращается на рассмотрение, и кнопки у всех администраторов восстанавливаются,
+            // поэтому причину неудачи сообщаем отдельным сообщением тому, кто публиковал
+            String failure = null;
+            if (error != null) {
+                failure = "❌ Ошибка при публикации: " + TelegramApiClient.unwrap(error).getMessage();
+            } else if (publications.stream().noneMatch(ProposalPublication::isMaybeSent)) {
+                failure = publicationSummary(publications);
+            }
+            if (failure != null) {
+                send(new SendMessage(adminChatId, failure));
+            }
+        });
+    }
+
+    private String publicationSummary(List<ProposalPublication> publications) {
+        long sent = publications.stream().filter(ProposalPublication::isSent).count();
+        boolean unknown = publications.stream().anyMatch(ProposalPublication::isUnknown);
+        StringBuilder summary = new StringBuilder(sent > 0
+                ? "✅ Опубликовано в " + sent + " из " + publications.size() + " каналов:"
+                : unknown
+                ? "⚠️ Telegram не подтвердил публикацию, проверьте каналы:"
+                : "❌ Не удалось опубликовать ни в один канал:");
+        for (ProposalPublication publication : publications) {
+            ChannelInfo channel = channelService.getChannel(context.getBotId(), publication.getChannelId());
+            summary.append('\n').append(publication.isSent() ? "✅ " : publication.isUnknown() ? "⚠️ " : "❌ ")
+                    .append(channel != null ? channel.getTitle() : publication.getChannelId().toString());
+            if (!publication.isSent()) {
+                summary.append(": ").append(publication.getError());
+            }
+        }
+        return summary.toString();
+    }
+
     private void handleEdit(CallbackQuery callbackQuery, Long userId, Integer messageId) throws TelegramApiException {
-        Map<Integer, Message> userMsgs = userMessages.getOrDefault(userId, new HashMap<>());
-        Message originalMessage = userMsgs.get(messageId);
+        Proposal originalMessage = proposalService.getPendingProposal(context.getBotId(), userId, messageId);
 
         if (originalMessage == null) {
             EditMessageText errorMessage = new EditMessageText();
             errorMessage.setChatId(callbackQuery.getMessage().getChatId().toString());
             errorMessage.setMessageId(callbackQuery.getMessage().getMessageId());
             errorMessage.setText("❌ Сообщение не найдено. Возможно, оно было удалено или слишком старое.");
-            execute(errorMessage);
+            send(errorMessage);
             return;
         }
 
         // Переводим админа в режим редактирования
-        botService.setAdminState(botConfig.getId(), callbackQuery.getFrom().getId(),
+        botService.setAdminState(context.getBotId(), callbackQuery.getFrom().getId(),
                 "EDITING:" + userId + ":" + messageId);
 
         EditMessageText promptMessage = new EditMessageText();
@@ -487,85 +781,41 @@ public class ProposalBot extends TelegramLongPollingBot {
         promptMessage.setMessageId(callbackQuery.getMessage().getMessageId());
         promptMessage.setText("✏️ Пожалуйста, отправьте новый текст для редактирования сообщения.\n\n" +
                 "Оригинальное сообщение:\n" + getMessageContent(originalMessage));
-        execute(promptMessage);
+        send(promptMessage);
     }
 
     private void handleReject(CallbackQuery callbackQuery, Long userId, Integer messageId) throws TelegramApiException {
-        Map<Integer, Message> userMsgs = userMessages.getOrDefault(userId, new HashMap<>());
-
-        // Уведомляем админа
-        EditMessageText confirmMessage = new EditMessageText();
-        confirmMessage.setChatId(callbackQuery.getMessage().getChatId().toString());
-        confirmMessage.setMessageId(callbackQuery.getMessage().getMessageId());
-        confirmMessage.setText("❌ Сообщение отклонено");
-
-        // Добавляем кнопку для возможности вернуть сообщение
-        InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
-        List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
-        List<InlineKeyboardButton> row = new ArrayList<>();
-
-        InlineKeyboardButton undoButton = new InlineKeyboardButton();
-        undoButton.setText("↩️ Вернуть");
-        undoButton.setCallbackData("undo_reject:" + userId + ":" + messageId);
-        row.add(undoButton);
-
-        keyboard.add(row);
-        markup.setKeyboard(keyboard);
-        confirmMessage.setReplyMarkup(markup);
-
-        execute(confirmMessage);
-
-        // Уведомляем пользователя
+        // Отмечаем предложение отклоненным и уведомляем пользователя через outbox.
+        // Кнопки у всех администраторов обновит ControlMessageUpdater
         SendMessage notifyUser = new SendMessage();
         notifyUser.setChatId(userId.toString());
         notifyUser.setText("❌ К сожалению, ваше сообщение было отклонено администраторами.");
-        execute(notifyUser);
-
-        // Удаляем сообщение из кэша
-        userMsgs.remove(messageId);
+        if (proposalService.updateStatus(context.getBotId(), userId, messageId, Proposal.STATUS_REJECTED,
+                List.of(notifyUser)) == null) {
+            answerAlreadyProcessed(callbackQuery);
+        }
     }
 
     private void handleBlock(CallbackQuery callbackQuery, Long userId, Integer messageId) throws TelegramApiException {
-        // Блокируем пользователя
-        blockedUserService.blockUser(botConfig.getId(), userId);
-
-        // Уведомляем админа
-        EditMessageText confirmMessage = new EditMessageText();
-        confirmMessage.setChatId(callbackQuery.getMessage().getChatId().toString());
-        confirmMessage.setMessageId(callbackQuery.getMessage().getMessageId());
-        confirmMessage.setText("⛔ Пользователь заблокирован и больше не сможет отправлять сообщения.");
-
-        // Добавляем кнопку для разблокировки
-        InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
-        List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
-        List<InlineKeyboardButton> row = new ArrayList<>();
-
-        InlineKeyboardButton unblockButton = new InlineKeyboardButton();
-        unblockButton.setText("🔓 Разблокировать");
-        unblockButton.setCallbackData("unblock:" + userId);
-        row.add(unblockButton);
-
-        keyboard.add(row);
-        markup.setKeyboard(keyboard);
-        confirmMessage.setReplyMarkup(markup);
-
-        execute(confirmMessage);
-
-        // Уведомляем пользователя
+        // Блокируем пользователя, уведомление записывается в outbox в той же транзакции
         SendMessage notifyUser = new SendMessage();
         notifyUser.setChatId(userId.toString());
         notifyUser.setText("⛔ Вы были заблокированы администратором и больше не сможете отправлять сообщения.");
-        execute(notifyUser);
+        blockedUserService.blockUser(context.getBotId(), userId, notifyUser);
+
+        // Кнопки предложений автора у всех администраторов обновит ControlMessageUpdater
+        proposalService.refreshControlMessages(context.getBotId(), userId);
+        answerCallback(callbackQuery, "⛔ Пользователь заблокирован и больше не сможет отправлять сообщения.");
     }
 
     private void handleSchedule(CallbackQuery callbackQuery, Long userId, Integer messageId) throws TelegramApiException {
         // Проверяем подписку пользователя - доступно только для Premium
-        if (!botService.hasPremiumFeature(botConfig, "scheduled_posts")) {
+        if (!botService.hasPremiumFeature(context.getConfig().getOwnerId(), "scheduled_posts")) {
             EditMessageText errorMessage = new EditMessageText();
             errorMessage.setChatId(callbackQuery.getMessage().getChatId().toString());
             errorMessage.setMessageId(callbackQuery.getMessage().getMessageId());
             errorMessage.setText("⭐ Отложенная публикация доступна только в Premium подписке");
-            execute(errorMessage);
+            send(errorMessage);
             return;
         }
 
@@ -616,12 +866,104 @@ public class ProposalBot extends TelegramLongPollingBot {
         markup.setKeyboard(keyboard);
         calendarMessage.setReplyMarkup(markup);
 
-        execute(calendarMessage);
+        send(calendarMessage);
+    }
+
+    private void showScheduleChannels(CallbackQuery callbackQuery, Long userId, Integer messageId,
+                                      long scheduledTime) throws TelegramApiException {
+        List<Map<String, String>> channels = channelService.getChannelsInfo(context.getBotId());
+
+        // Если канал один, выбирать нечего
+        if (channels.size() == 1) {
+            schedulePost(callbackQuery, userId, messageId, Long.parseLong(channels.get(0).get("id")),
+                    new Date(scheduledTime));
+            return;
+        }
+
+        EditMessageText selectionMessage = new EditMessageText();
+        selectionMessage.setChatId(callbackQuery.getMessage().getChatId().toString());
+        selectionMessage.setMessageId(callbackQuery.getMessage().getMessageId());
+        selectionMessage.setText("🕒 Выберите канал для отложенной публикации:");
+
+        InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
+        List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
+
+        for (Map<String, String> channel : channels) {
+            List<InlineKeyboardButton> row = new ArrayList<>();
+            InlineKeyboardButton channelButton = new InlineKeyboardButton();
+            channelButton.setText(channel.get("title"));
+            channelButton.setCallbackData("schedule_time:" + userId + ":" + messageId + ":" +
+                    channel.get("id") + ":" + scheduledTime);
+            row.add(channelButton);
+            keyboard.add(row);
+        }
+
+        // Добавляем кнопку отмены
+        List<InlineKeyboardButton> backRow = new ArrayList<>();
+        InlineKeyboardButton backButton = new InlineKeyboardButton();
+        backButton.setText("🔙 Назад");
+        backButton.setCallbackData("schedule_cancel:" + userId + ":" + messageId);
+        backRow.add(backButton);
+        keyboard.add(backRow);
+
+        markup.setKeyboard(keyboard);
+        selectionMessage.setReplyMarkup(markup);
+
+        send(selectionMessage);
+    }
+
+    private void schedulePost(CallbackQuery callbackQuery, Long userId, Integer messageId,
+                              Long channelId, Date scheduledDate) throws TelegramApiException {
+        Proposal proposal = proposalService.getProposal(context.getBotId(), userId, messageId);
+
+        EditMessageText resultMessage = new EditMessageText();
+        resultMessage.setChatId(callbackQuery.getMessage().getChatId().toString());
+        resultMessage.setMessageId(callbackQuery.getMessage().getMessageId());
+
+        // Запланированную публикацию можно перенести, поэтому подходит и SCHEDULED
+        if (proposal == null || !(proposal.isPending() || proposal.isScheduled())) {
+            resultMessage.setText("❌ Сообщение не найдено. Возможно, оно было удалено или слишком старое.");
+            send(resultMessage);
+            return;
+        }
+        ChannelInfo channel = channelService.getChannel(context.getBotId(), channelId);
+        if (channel == null) {
+            resultMessage.setText("❌ Канал не найден.");
+            send(resultMessage);
+            return;
+        }
+
+        // Публикация собирается так же, как при немедленной публикации: медиа, альбомы и подпись в пределах лимитов
+        String footer = botService.getBotSetting(context.getBotId(), "publication_footer", "");
+        List<ProposalMedia> album = Proposal.TYPE_ALBUM.equals(proposal.getType())
+                ? proposalService.getAlbumMedia(proposal)
+                : List.of();
+        PartialBotApiMethod<?> publication =
+                PublicationBuilder.build(proposal, album, channel.getTargetChatId(), footer, false);
+
+        // Кнопки с временем публикации у всех администраторов обновит ControlMessageUpdater
+        try {
+            botService.schedulePublication(context.getBotId(), userId, messageId, channelId, publication,
+                    scheduledDate);
+        } catch (IllegalStateException e) {
+            answerAlreadyProcessed(callbackQuery);
+        }
+    }
+
+    private void handleScheduleCancel(CallbackQuery callbackQuery, Long userId, Integer messageId) throws TelegramApiException {
+        // Кнопки у всех администраторов после отмены обновит ControlMessageUpdater
+        if (!botService.cancelScheduledPublication(context.getBotId(), userId, messageId)) {
+            EditMessageText resultMessage = new EditMessageText();
+            resultMessage.setChatId(callbackQuery.getMessage().getChatId().toString());
+            resultMessage.setMessageId(callbackQuery.getMessage().getMessageId());
+            resultMessage.setText("❌ Публикация уже состоялась или была отменена.");
+            send(resultMessage);
+        }
     }
 
     private void handleSilent(CallbackQuery callbackQuery, Long userId, Integer messageId) throws TelegramApiException {
         // Показываем список каналов для публикации без звука
-        List<Map<String, String>> channels = channelService.getChannelsInfo(botConfig.getId());
+        List<Map<String, String>> channels = channelService.getChannelsInfo(context.getBotId());
 
         EditMessageText selectionMessage = new EditMessageText();
         selectionMessage.setChatId(callbackQuery.getMessage().getChatId().toString());
@@ -641,6 +983,15 @@ public class ProposalBot extends TelegramLongPollingBot {
             keyboard.add(row);
         }
 
+        if (channels.size() > 1) {
+            List<InlineKeyboardButton> allRow = new ArrayList<>();
+            InlineKeyboardButton allButton = new InlineKeyboardButton();
+            allButton.setText("📢 Во все каналы");
+            allButton.setCallbackData("publish_all_silent:" + userId + ":" + messageId);
+            allRow.add(allButton);
+            keyboard.add(allRow);
+        }
+
         // Добавляем кнопку отмены
         List<InlineKeyboardButton> backRow = new ArrayList<>();
         InlineKeyboardButton backButton = new InlineKeyboardButton();
@@ -652,25 +1003,29 @@ public class ProposalBot extends TelegramLongPollingBot {
         markup.setKeyboard(keyboard);
         selectionMessage.setReplyMarkup(markup);
 
-        execute(selectionMessage);
+        send(selectionMessage);
     }
 
-    private void handleUnblock(CallbackQuery callbackQuery, Long userId) throws TelegramApiException {
-        // Разблокируем пользователя
-        blockedUserService.unblockUser(botConfig.getId(), userId);
+    private void handleUnblock(CallbackQuery callbackQuery, Long userId, Integer messageId) throws TelegramApiException {
+        // Разблокируем пользователя, уведомление записывается в outbox в той же транзакции
+        SendMessage notifyUser = new SendMessage();
+        notifyUser.setChatId(userId.toString());
+        notifyUser.setText("✅ Вы были разблокированы администратором и снова можете отправлять сообщения.");
+        blockedUserService.unblockUser(context.getBotId(), userId, notifyUser);
+
+        // Кнопки предложений автора у всех администраторов обновит ControlMessageUpdater
+        proposalService.refreshControlMessages(context.getBotId(), userId);
+        if (messageId != null) {
+            answerCallback(callbackQuery, "✅ Пользователь разблокирован и снова может отправлять сообщения.");
+            return;
+        }
 
-        // Уведомляем админа
+        // Разблокировка из списка заблокированных: обновляем сам список
         EditMessageText confirmMessage = new EditMessageText();
         confirmMessage.setChatId(callbackQuery.getMessage().getChatId().toString());
         confirmMessage.setMessageId(callbackQuery.getMessage().getMessageId());
         confirmMessage.setText("✅ Пользователь разблокирован и снова может отправлять сообщения.");
-        execute(confirmMessage);
-
-        // Уведомляем пользователя
-        SendMessage notifyUser = new SendMessage();
-        notifyUser.setChatId(userId.toString());
-        notifyUser.setText("✅ Вы были разблокированы администратором и снова можете отправлять сообщения.");
-        execute(notifyUser);
+        send(confirmMessage);
     }
 
     private void handleAdminCommand(Message message) throws TelegramApiException {
@@ -695,7 +1050,7 @@ public class ProposalBot extends TelegramLongPollingBot {
             SendMessage unknownCommand = new SendMessage();
             unknownCommand.setChatId(chatId.toString());
             unknownCommand.setText("❓ Неизвестная команда. Отправьте /help для просмотра доступных команд.");
-            execute(unknownCommand);
+            send(unknownCommand);
         }
     }
 
@@ -712,12 +1067,12 @@ public class ProposalBot extends TelegramLongPollingBot {
                 "/blocklist - список заблокированных пользователей\n\n" +
                 "Для публикации, редактирования или удаления сообщений используйте кнопки под пересланными сообщениями.");
         helpMessage.enableMarkdown(true);
-        execute(helpMessage);
+        send(helpMessage);
     }
 
     private void sendBotStats(Long chatId) throws TelegramApiException {
         // Получаем статистику из сервиса
-        Map<String, Integer> stats = botService.getBotStats(botConfig.getId());
+        Map<String, Integer> stats = botService.getBotStats(context.getBotId());
 
         SendMessage statsMessage = new SendMessage();
         statsMessage.setChatId(chatId.toString());
@@ -726,21 +1081,22 @@ public class ProposalBot extends TelegramLongPollingBot {
                 "📢 Сообщений опубликовано: " + stats.getOrDefault("messages_published", 0) + "\n" +
                 "❌ Сообщений отклонено: " + stats.getOrDefault("messages_rejected", 0) + "\n" +
                 "⛔ Заблокировано пользователей: " + stats.getOrDefault("users_blocked", 0) + "\n" +
-                "📆 Бот создан: " + botConfig.getCreatedAt().toString());
+                "📆 Бот создан: " + context.getConfig().getCreatedAt().toString());
         statsMessage.enableMarkdown(true);
-        execute(statsMessage);
+        send(statsMessage);
     }
 
     private void sendBotSettings(Long chatId) throws TelegramApiException {
         // Получаем настройки бота
-        Map<String, String> settings = botService.getBotSettingsMap(botConfig.getId());
-        boolean isPremium = botService.hasPremiumSubscription(botConfig.getOwnerId());
+        Map<String, String> settings = botService.getBotSettingsMap(context.getBotId());
+        BotConfig config = context.getConfig();
+        boolean isPremium = botService.hasPremiumSubscription(config.getOwnerId());
 
         StringBuilder settingsText = new StringBuilder();
         settingsText.append("⚙️ *Настройки бота*\n\n");
-        settingsText.append("🤖 Имя бота: ").append(botConfig.getName()).append("\n");
-        settingsText.append("💬 Приветственное сообщение: ").append(botConfig.getWelcomeMessage()).append("\n");
-        settingsText.append("✅ Сообщение о получении: ").append(botConfig.getConfirmationMessage()).append("\n");
+        settingsText.append("🤖 Имя бота: ").append(config.getName()).append("\n");
+        settingsText.append("💬 Приветственное сообщение: ").append(config.getWelcomeMessage()).append("\n");
+        settingsText.append("✅ Сообщение о получении: ").append(config.getConfirmationMessage()).append("\n");
 
         // Добавляем информацию о Premium функциях
         settingsText.append("\n💎 *Premium функции*\n");
@@ -791,7 +1147,7 @@ public class ProposalBot extends TelegramLongPollingBot {
         markup.setKeyboard(keyboard);
         settingsMessage.setReplyMarkup(markup);
 
-        execute(settingsMessage);
+        send(settingsMessage);
     }
 
     private void handleAddChannel(Long chatId, String command) throws TelegramApiException {
@@ -800,7 +1156,7 @@ public class ProposalBot extends TelegramLongPollingBot {
             SendMessage errorMessage = new SendMessage();
             errorMessage.setChatId(chatId.toString());
             errorMessage.setText("❌ Пожалуйста, укажите username канала: /channel_add @username");
-            execute(errorMessage);
+            send(errorMessage);
             return;
         }
 
@@ -811,7 +1167,7 @@ public class ProposalBot extends TelegramLongPollingBot {
         }
 
         try {
-            boolean added = channelService.addChannel(botConfig.getId(), channelUsername);
+            boolean added = channelService.addChannel(context.getBotId(), channelUsername);
 
             SendMessage resultMessage = new SendMessage();
             resultMessage.setChatId(chatId.toString());
@@ -825,13 +1181,13 @@ public class ProposalBot extends TelegramLongPollingBot {
                         "или указано неверное имя пользователя.");
             }
 
-            execute(resultMessage);
+            send(resultMessage);
         } catch (Exception e) {
             e.printStackTrace();
             SendMessage errorMessage = new SendMessage();
             errorMessage.setChatId(chatId.toString());
             errorMessage.setText("❌ Ошибка при добавлении канала: " + e.getMessage());
-            execute(errorMessage);
+            send(errorMessage);
         }
     }
 
@@ -841,7 +1197,7 @@ public class ProposalBot extends TelegramLongPollingBot {
             SendMessage errorMessage = new SendMessage();
             errorMessage.setChatId(chatId.toString());
             errorMessage.setText("❌ Пожалуйста, укажите username канала: /channel_remove @username");
-            execute(errorMessage);
+            send(errorMessage);
             return;
         }
 
@@ -852,7 +1208,7 @@ public class ProposalBot extends TelegramLongPollingBot {
         }
 
         try {
-            boolean removed = channelService.removeChannel(botConfig.getId(), channelUsername);
+            boolean removed = channelService.removeChannel(context.getBotId(), channelUsername);
 
             SendMessage resultMessage = new SendMessage();
             resultMessage.setChatId(chatId.toString());
@@ -864,18 +1220,18 @@ public class ProposalBot extends TelegramLongPollingBot {
                         "или указано неверное имя пользователя.");
             }
 
-            execute(resultMessage);
+            send(resultMessage);
         } catch (Exception e) {
             e.printStackTrace();
             SendMessage errorMessage = new SendMessage();
             errorMessage.setChatId(chatId.toString());
             errorMessage.setText("❌ Ошибка при удалении канала: " + e.getMessage());
-            execute(errorMessage);
+            send(errorMessage);
         }
     }
 
     private void sendChannelsList(Long chatId) throws TelegramApiException {
-        List<Map<String, String>> channels = channelService.getChannelsInfo(botConfig.getId());
+        List<Map<String, String>> channels = channelService.getChannelsInfo(context.getBotId());
 
         if (channels.isEmpty()) {
             SendMessage noChannelsMessage = new SendMessage();
@@ -883,7 +1239,7 @@ public class ProposalBot extends TelegramLongPollingBot {
             noChannelsMessage.setText("❌ У бота нет добавленных каналов.\n\n" +
                     "Используйте команду /channel_add @username чтобы добавить канал.\n" +
                     "Не забудьте добавить бота администратором канала!");
-            execute(noChannelsMessage);
+            send(noChannelsMessage);
             return;
         }
 
@@ -903,17 +1259,17 @@ public class ProposalBot extends TelegramLongPollingBot {
         channelsMessage.setChatId(chatId.toString());
         channelsMessage.setText(channelsText.toString());
         channelsMessage.enableMarkdown(true);
-        execute(channelsMessage);
+        send(channelsMessage);
     }
 
     private void sendBlockedUsersList(Long chatId) throws TelegramApiException {
-        List<BlockedUser> blockedUsers = blockedUserService.getBlockedUsers(botConfig.getId());
+        List<BlockedUser> blockedUsers = blockedUserService.getBlockedUsers(context.getBotId());
 
         if (blockedUsers.isEmpty()) {
             SendMessage noBlockedMessage = new SendMessage();
             noBlockedMessage.setChatId(chatId.toString());
             noBlockedMessage.setText("✅ Список заблокированных пользователей пуст.");
-            execute(noBlockedMessage);
+            send(noBlockedMessage);
             return;
         }
 
@@ -953,27 +1309,26 @@ public class ProposalBot extends TelegramLongPollingBot {
             blockedMessage.setReplyMarkup(markup);
         }
 
-        execute(blockedMessage);
+        send(blockedMessage);
     }
 
     private void handleAdminReply(Message message) throws TelegramApiException {
         // Получаем ID сообщения, на которое отвечает админ
         Integer repliedToMessageId = message.getReplyToMessage().getMessageId();
 
-        // Ищем связь в messageLinks
-        MessageLink link = null;
-        for (MessageLink ml : messageLinks.values()) {
-            if (ml.getAdminForwardedMessageId().equals(repliedToMessageId)) {
-                link = ml;
-                break;
-            }
+        // Ищем связь по пересланному сообщению, затем по сообщению с кнопками
+        MessageLink link = messageLinkService.findByForwardedMessage(context.getBotId(), message.getChatId(),
+                repliedToMessageId);
+        if (link == null) {
+            link = messageLinkService.findByControlMessage(context.getBotId(), message.getChatId(),
+                    repliedToMessageId);
         }
 
         if (link == null) {
             SendMessage errorMessage = new SendMessage();
             errorMessage.setChatId(message.getChatId().toString());
             errorMessage.setText("❌ Не удалось найти информацию о сообщении пользователя.");
-            execute(errorMessage);
+            send(errorMessage);
             return;
         }
 
@@ -984,72 +1339,65 @@ public class ProposalBot extends TelegramLongPollingBot {
         replyToUser.enableMarkdown(true);
 
         try {
-            execute(replyToUser);
+            sendAndWait(replyToUser);
 
             // Уведомляем админа, что ответ отправлен
             SendMessage confirmationToAdmin = new SendMessage();
             confirmationToAdmin.setChatId(message.getChatId().toString());
             confirmationToAdmin.setText("✅ Ваш ответ отправлен пользователю.");
-            execute(confirmationToAdmin);
+            send(confirmationToAdmin);
         } catch (Exception e) {
             e.printStackTrace();
             SendMessage errorMessage = new SendMessage();
             errorMessage.setChatId(message.getChatId().toString());
             errorMessage.setText("❌ Ошибка при отправке ответа пользователю: " + e.getMessage());
-            execute(errorMessage);
+            send(errorMessage);
         }
     }
 
-    // Вспомогательные методы
-    private String getMessageContent(Message message) {
-        if (message.hasText()) {
-            return message.getText();
-        } else if (message.hasPhoto()) {
-            return "[Фотография]" + (message.getCaption() != null ? ": " + message.getCaption() : "");
-        } else if (message.hasVideo()) {
-            return "[Видео]" + (message.getCaption() != null ? ": " + message.getCaption() : "");
-        } else if (message.hasDocument()) {
-            return "[Документ: " + message.getDocument().getFileName() + "]" +
-                    (message.getCaption() != null ? ": " + message.getCaption() : "");
-        } else if (message.hasSticker()) {
-            return "[Стикер]";
-        } else if (message.hasVoice()) {
-            return "[Голосовое сообщение]";
-        } else if (message.hasVideoNote()) {
-            return "[Видеосообщение]";
-        }
-        return "[Неизвестный тип сообщения]";
+    /**
+     * Отправляет запрос без ожидания ответа, ошибки только логируются
+     */
+    private <T extends Serializable> CompletableFuture<T> send(PartialBotApiMethod<T> method) {
+        CompletableFuture<T> result = sender.send(context.getToken(), method);
+        result.whenComplete((value, error) -> {
+            if (error != null) {
+                System.err.println("Ошибка при выполнении " + method.getMethod() + " ботом " +
+                        context.getBotId() + ": " + TelegramApiClient.unwrap(error).getMessage());
+            }
+        });
+        return result;
     }
 
-    // Вложенный класс для хранения связей между сообщениями
-    private static class MessageLink {
-        private final Long userId;
-        private final Integer userMessageId;
-        private final Integer adminForwardedMessageId;
-        private final Integer adminControlMessageId;
-
-        public MessageLink(Long userId, Integer userMessageId,
-                           Integer adminForwardedMessageId, Integer adminControlMessageId) {
-            this.userId = userId;
-            this.userMessageId = userMessageId;
-            this.adminForwardedMessageId = adminForwardedMessageId;
-            this.adminControlMessageId = adminControlMessageId;
-        }
-
-        public Long getUserId() {
-            return userId;
-        }
-
-        public Integer getUserMessageId() {
-            return userMessageId;
-        }
-
-        public Integer getAdminForwardedMessageId() {
-            return adminForwardedMessageId;
-        }
+    /**
+     * Отправляет запрос и ожидает ответ Telegram
+     */
+    private <T extends Serializable> T sendAndWait(PartialBotApiMethod<T> method) throws TelegramApiException {
+        return OutboundSender.await(sender.send(context.getToken(), method));
+    }
 
-        public Integer getAdminControlMessageId() {
-            return adminControlMessageId;
+    // Вспомогательные методы
+    private String getMessageContent(Proposal proposal) {
+        String caption = proposal.getText() != null ? ": " + proposal.getText() : "";
+        switch (proposal.getType()) {
+            case Proposal.TYPE_TEXT:
+                return proposal.getText();
+            case Proposal.TYPE_PHOTO:
+                return "[Фотография]" + caption;
+            case Proposal.TYPE_VIDEO:
+                return "[Видео]" + caption;
+            case Proposal.TYPE_DOCUMENT:
+                return "[Документ: " + proposal.getFileName() + "]" + caption;
+            case Proposal.TYPE_STICKER:
+                return "[Стикер]";
+            case Proposal.TYPE_VOICE:
+                return "[Голосовое сообщение]";
+            case Proposal.TYPE_VIDEO_NOTE:
+                return "[Видеосообщение]";
+            case Proposal.TYPE_ALBUM:
+                return "[Альбом]" + caption;
+            default:
+                return "[Неизвестный тип сообщения]";
         }
     }
-}
\ No newline at end of file
+}
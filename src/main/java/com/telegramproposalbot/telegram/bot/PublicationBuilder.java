@@ -0,0 +1,138 @@
+package com.telegramproposalbot.telegram.bot;
+
+import com.telegramproposalbot.entity.Proposal;
+import com.telegramproposalbot.entity.ProposalMedia;
+import org.telegram.telegrambots.meta.api.methods.CopyMessage;
+import org.telegram.telegrambots.meta.api.methods.PartialBotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
+import org.telegram.telegrambots.meta.api.methods.send.SendMediaGroup;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.send.SendPhoto;
+import org.telegram.telegrambots.meta.api.methods.send.SendVideo;
+import org.telegram.telegrambots.meta.api.objects.InputFile;
+import org.telegram.telegrambots.meta.api.objects.media.InputMedia;
+import org.telegram.telegrambots.meta.api.objects.media.InputMediaAudio;
+import org.telegram.telegrambots.meta.api.objects.media.InputMediaDocument;
+import org.telegram.telegrambots.meta.api.objects.media.InputMediaPhoto;
+import org.telegram.telegrambots.meta.api.objects.media.InputMediaVideo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Сборка запросов публикации предложения в канал.
+ * Медиа отправляются по file_id, уже хранящемуся на серверах Telegram: файлы не скачиваются
+ * и не загружаются заново. Подпись публикации добавляется к тексту в пределах лимитов Telegram.
+ */
+final class PublicationBuilder {
+
+    // Лимиты Telegram на длину текста сообщения и подписи к медиа
+    static final int MAX_TEXT_LENGTH = 4096;
+    static final int MAX_CAPTION_LENGTH = 1024;
+
+    private static final String FOOTER_SEPARATOR = "\n\n";
+
+    private PublicationBuilder() {
+    }
+
+    /**
+     * Собирает запрос, публикующий предложение в чат канала
+     */
+    static PartialBotApiMethod<?> build(Proposal proposal, List<ProposalMedia> album,
+                                        String chatId, String footer, boolean silent) {
+        switch (proposal.getType()) {
+            case Proposal.TYPE_TEXT -> {
+                SendMessage message = new SendMessage(chatId, withFooter(proposal.getText(), footer, MAX_TEXT_LENGTH));
+                message.setDisableNotification(silent);
+                return message;
+            }
+            case Proposal.TYPE_PHOTO -> {
+                SendPhoto photo = new SendPhoto(chatId, new InputFile(proposal.getFileId()));
+                photo.setCaption(caption(proposal, footer));
+                photo.setDisableNotification(silent);
+                return photo;
+            }
+            case Proposal.TYPE_VIDEO -> {
+                SendVideo video = new SendVideo(chatId, new InputFile(proposal.getFileId()));
+                video.setCaption(caption(proposal, footer));
+                video.setDisableNotification(silent);
+                return video;
+            }
+            case Proposal.TYPE_DOCUMENT -> {
+                SendDocument document = new SendDocument(chatId, new InputFile(proposal.getFileId()));
+                document.setCaption(caption(proposal, footer));
+                document.setDisableNotification(silent);
+                return document;
+            }
+            case Proposal.TYPE_ALBUM -> {
+                SendMediaGroup mediaGroup = new SendMediaGroup(chatId, toInputMedia(album, caption(proposal, footer)));
+                mediaGroup.setDisableNotification(silent);
+                return mediaGroup;
+            }
+            default -> {
+                // Стикеры, голосовые и видеосообщения копируются как есть, подпись к ним не добавляется
+                CopyMessage copy = new CopyMessage(chatId, proposal.getChatId().toString(), proposal.getMessageId());
+                copy.setDisableNotification(silent);
+                return copy;
+            }
+        }
+    }
+
+    /**
+     * Собирает элементы альбома для sendMediaGroup. Подпись альбома ставится на первый элемент.
+     */
+    static List<InputMedia> toInputMedia(List<ProposalMedia> media, String caption) {
+        List<InputMedia> result = new ArrayList<>(media.size());
+        for (ProposalMedia item : media) {
+            InputMedia inputMedia = switch (item.getType()) {
+                case ProposalMedia.TYPE_VIDEO -> new InputMediaVideo(item.getFileId());
+                case ProposalMedia.TYPE_DOCUMENT -> new InputMediaDocument(item.getFileId());
+                case ProposalMedia.TYPE_AUDIO -> new InputMediaAudio(item.getFileId());
+                default -> new InputMediaPhoto(item.getFileId());
+            };
+            if (result.isEmpty()) {
+                inputMedia.setCaption(caption);
+            }
+            result.add(inputMedia);
+        }
+        return result;
+    }
+
+    /**
+     * Добавляет подпись публикации к тексту, не выходя за лимит.
+     * Если вместе они не помещаются, сокращается текст автора. Подпись, которая не помещается
+     * даже без текста, отбрасывается: текст автора важнее.
+     */
+    static String withFooter(String text, String footer, int limit) {
+        String body = text != null ? text : "";
+        if (footer == null || footer.isEmpty()) {
+            return truncate(body, limit);
+        }
+
+        String separator = body.isEmpty() ? "" : FOOTER_SEPARATOR;
+        int room = limit - footer.length() - separator.length();
+        if (room < 0 || (room == 0 && !body.isEmpty())) {
+            return truncate(body, limit);
+        }
+        return truncate(body, room) + separator + footer;
+    }
+
+    private static String caption(Proposal proposal, String footer) {
+        String caption = withFooter(proposal.getText(), footer, MAX_CAPTION_LENGTH);
+        return caption.isEmpty() ? null : caption;
+    }
+
+    /**
+     * Обрезает текст с многоточием, не разрывая суррогатные пары
+     */
+    private static String truncate(String text, int limit) {
+        if (text.length() <= limit) {
+            return text;
+        }
+        int end = limit - 1;
+        if (end > 0 && Character.isHighSurrogate(text.charAt(end - 1))) {
+            end--;
+        }
+        return text.substring(0, end) + "…";
+    }
+}
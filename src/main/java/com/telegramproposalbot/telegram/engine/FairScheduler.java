@@ -0,0 +1,155 @@
+package com.telegramproposalbot.telegram.engine;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntSupplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Планировщик задач нескольких арендаторов по алгоритму deficit round robin.
+ * У каждого арендатора своя очередь задач, арендаторы с задачами обходятся по кругу.
+ * За один обход арендатор получает кредит quantum * weight и запускает задачи, пока кредит
+ * положителен. При запуске списывается наибольшая стоимость задачи maxCost, а после выполнения
+ * списание исправляется на фактическую стоимость (например, число обработанных обновлений).
+ * Поэтому арендатор не может запустить в долг больше задач, чем позволяет его кредит, и занять
+ * все потоки, пока его задачи еще выполняются, а доли потоков под нагрузкой пропорциональны весам.
+ */
+class FairScheduler<K> {
+
+    private final int quantum;
+    private final int maxCost;
+    private final ToIntFunction<K> weigher;
+    private final Map<K, Tenant<K>> tenants = new HashMap<>();
+    // Арендаторы с задачами в порядке обхода
+    private final ArrayDeque<Tenant<K>> active = new ArrayDeque<>();
+    private boolean closed;
+
+    /**
+     * @param quantum кредит арендатора с весом 1 за один обход
+     * @param maxCost наибольшая стоимость одной задачи, списывается при ее запуске
+     * @param weigher текущий вес арендатора, запрашивается при каждом начислении кредита
+     */
+    FairScheduler(int quantum, int maxCost, ToIntFunction<K> weigher) {
+        this.quantum = quantum;
+        this.maxCost = maxCost;
+        this.weigher = weigher;
+    }
+
+    /**
+     * Ставит задачу в очередь арендатора. Задача возвращает свою стоимость.
+     */
+    synchronized void submit(K key, IntSupplier task) {
+        Tenant<K> tenant = tenants.computeIfAbsent(key, Tenant::new);
+        tenant.tasks.add(task);
+        if (!tenant.active) {
+            tenant.active = true;
+            active.addLast(tenant);
+        }
+        // Будим поток на каждую задачу: у активного арендатора может выполняться только одна
+        notify();
+    }
+
+    /**
+     * Выполняет задачи в текущем потоке, пока планировщик не закрыт и не опустел
+     */
+    void runWorker() {
+        while (true) {
+            Work<K> work;
+            try {
+                work = next();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (work == null) {
+                return;
+            }
+
+            int cost = 1;
+            try {
+                cost = work.task.getAsInt();
+            } finally {
+                charge(work.tenant, cost);
+            }
+        }
+    }
+
+    /**
+     * Закрывает планировщик: рабочие потоки завершатся после выполнения оставшихся задач
+     */
+    synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    private synchronized Work<K> next() throws InterruptedException {
+        while (true) {
+            Tenant<K> tenant = active.peekFirst();
+            if (tenant == null) {
+                if (closed) {
+                    return null;
+                }
+                wait();
+                continue;
+            }
+
+            if (!tenant.visited) {
+                // Начало обхода: начисляем кредит, долг прошлого обхода уменьшает его
+                tenant.deficit += (long) quantum * Math.max(1, weigher.applyAsInt(tenant.key));
+                tenant.visited = true;
+            }
+            if (tenant.deficit > 0 && !tenant.tasks.isEmpty()) {
+                // Стоимость станет известна после выполнения, до тех пор считаем ее наибольшей
+                tenant.deficit -= maxCost;
+                tenant.running++;
+                return new Work<>(tenant, tenant.tasks.poll());
+            }
+
+            // Кредит исчерпан или задач нет - ход переходит к следующему арендатору
+            active.pollFirst();
+            tenant.visited = false;
+            if (tenant.tasks.isEmpty()) {
+                // Неиспользованный кредит не копится
+                tenant.active = false;
+                tenant.deficit = 0;
+                removeIfIdle(tenant);
+            } else {
+                active.addLast(tenant);
+            }
+        }
+    }
+
+    private synchronized void charge(Tenant<K> tenant, int cost) {
+        tenant.running--;
+        // Возвращаем разницу между списанной при запуске и фактической стоимостью
+        tenant.deficit += maxCost - cost;
+        if (!tenant.active && tenant.deficit > 0) {
+            // Арендатор без задач: возврат не превращается в накопленный кредит
+            tenant.deficit = 0;
+        }
+        removeIfIdle(tenant);
+    }
+
+    private void removeIfIdle(Tenant<K> tenant) {
+        if (!tenant.active && tenant.running == 0) {
+            tenants.remove(tenant.key, tenant);
+        }
+    }
+
+    private static final class Tenant<K> {
+        private final K key;
+        private final ArrayDeque<IntSupplier> tasks = new ArrayDeque<>();
+        private long deficit;
+        private int running;
+        private boolean active;
+        private boolean visited;
+
+        Tenant(K key) {
+            this.key = key;
+        }
+    }
+
+    private record Work<K>(Tenant<K> tenant, IntSupplier task) {
+    }
+}
@@ -0,0 +1,216 @@
+package com.telegramproposalbot.telegram.engine;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.updates.DeleteWebhook;
+import org.telegram.telegrambots.meta.api.methods.updates.GetUpdates;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+import org.telegram.telegrambots.meta.generics.LongPollingBot;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Движок long polling, обслуживающий любое количество ботов.
+ * Вместо отдельной DefaultBotSession с собственными потоками на каждого бота
+ * все запросы getUpdates выполняются асинхронно через общий TelegramApiClient,
+ * а полученные обновления передаются в единый UpdateDispatcher.
+ */
+@Component
+public class LongPollingEngine {
+
+    private static final int MAX_BACKOFF_SECONDS = 60;
+
+    private final TelegramApiClient apiClient;
+    private final UpdateDispatcher dispatcher;
+    private final ScheduledExecutorService retryScheduler =
+            Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("polling-retry-"));
+
+    // Активные задачи опроса, ключ - токен бота
+    private final Map<String, PollingTask> tasks = new ConcurrentHashMap<>();
+
+    private final int pollTimeoutSeconds;
+    private final int batchLimit;
+
+    public LongPollingEngine(TelegramApiClient apiClient,
+                             UpdateDispatcher dispatcher,
+                             @Value("${telegram.polling.timeout:50}") int pollTimeoutSeconds,
+                             @Value("${telegram.polling.limit:100}") int batchLimit) {
+        this.apiClient = apiClient;
+        this.dispatcher = dispatcher;
+        this.pollTimeoutSeconds = pollTimeoutSeconds;
+        this.batchLimit = batchLimit;
+    }
+
+    /**
+     * Начинает опрос обновлений для бота
+     *
+     * @return false, если бот с таким токеном уже опрашивается
+     */
+    public boolean start(LongPollingBot bot) {
+        PollingTask task = new PollingTask(bot);
+        if (tasks.putIfAbsent(bot.getBotToken(), task) != null) {
+            return false;
+        }
+        task.start();
+        return true;
+    }
+
+    /**
+     * Прекращает опрос обновлений для бота. Незавершенный запрос getUpdates прерывается.
+     * Возвращаемый future завершается, когда цикл опроса полностью остановлен и больше
+     * не передаст обновления в диспетчер, поэтому после него бота можно запускать повторно.
+     */
+    public CompletableFuture<Void> stop(LongPollingBot bot) {
+        PollingTask task = tasks.remove(bot.getBotToken());
+        if (task == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        task.stop();
+        return task.stopped;
+    }
+
+    /**
+     * Проверяет, опрашивается ли бот
+     */
+    public boolean isPolling(LongPollingBot bot) {
+        return tasks.containsKey(bot.getBotToken());
+    }
+
+    /**
+     * Количество опрашиваемых ботов
+     */
+    public int getActiveCount() {
+        return tasks.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        tasks.values().forEach(PollingTask::stop);
+        tasks.clear();
+        retryScheduler.shutdownNow();
+    }
+
+    /**
+     * Цикл опроса одного бота. Следующий запрос getUpdates отправляется после того,
+     * как предыдущая пачка принята в очереди диспетчера, поэтому переполненные очереди
+     * притормаживают опрос, а не накапливают обновления в памяти.
+     */
+    private class PollingTask {
+
+        private final LongPollingBot bot;
+        private final String token;
+        private final CompletableFuture<Void> stopped = new CompletableFuture<>();
+        private volatile boolean running = true;
+        private volatile int offset;
+        private volatile int failures;
+
+        // Текущий запрос getUpdates и запланированный повтор, которые нужно прервать при остановке
+        private volatile CompletableFuture<ArrayList<Update>> inFlight;
+        private volatile ScheduledFuture<?> retry;
+
+        PollingTask(LongPollingBot bot) {
+            this.bot = bot;
+            this.token = bot.getBotToken();
+        }
+
+        void start() {
+            // Long polling не работает при установленном вебхуке
+            apiClient.executeAsync(token, new DeleteWebhook())
+                    .whenComplete((result, error) -> {
+                        if (error != null) {
+                            System.err.println("Не удалось удалить вебхук бота " + bot.getBotUsername() + ": " +
+                                    TelegramApiClient.unwrap(error).getMessage());
+                        }
+                        poll();
+                    });
+        }
+
+        void stop() {
+            running = false;
+            ScheduledFuture<?> pendingRetry = retry;
+            if (pendingRetry != null && pendingRetry.cancel(false)) {
+                stopped.complete(null);
+            }
+            CompletableFuture<ArrayList<Update>> request = inFlight;
+            if (request != null) {
+                request.cancel(true);
+            }
+        }
+
+        private void poll() {
+            retry = null;
+            if (!running) {
+                stopped.complete(null);
+                return;
+            }
+
+            GetUpdates getUpdates = GetUpdates.builder()
+                    .offset(offset)
+                    .limit(batchLimit)
+                    .timeout(pollTimeoutSeconds)
+                    .build();
+
+            CompletableFuture<ArrayList<Update>> request =
+                    apiClient.executeAsync(token, getUpdates, Duration.ofSeconds(pollTimeoutSeconds + 10L));
+            inFlight = request;
+            // stop() мог выполниться до сохранения запроса
+            if (!running) {
+                request.cancel(true);
+            }
+
+            request.thenCompose(this::dispatch)
+                    .whenComplete((result, error) -> {
+                        if (error != null) {
+                            onError(TelegramApiClient.unwrap(error));
+                        } else {
+                            failures = 0;
+                            poll();
+                        }
+                    });
+        }
+
+        private CompletableFuture<Void> dispatch(List<Update> updates) {
+            if (updates.isEmpty() || !running) {
+                return CompletableFuture.completedFuture(null);
+            }
+            offset = updates.get(updates.size() - 1).getUpdateId() + 1;
+            return dispatcher.dispatch(bot, updates);
+        }
+
+        private void onError(Throwable error) {
+            if (!running) {
+                stopped.complete(null);
+                return;
+            }
+
+            failures++;
+            long delay = Math.min(MAX_BACKOFF_SECONDS, 1L << Math.min(failures, 6));
+
+            // Telegram сообщает, через сколько секунд можно повторить запрос
+            if (error instanceof TelegramApiRequestException requestException
+                    && requestException.getParameters() != null
+                    && requestException.getParameters().getRetryAfter() != null) {
+                delay = Math.max(delay, requestException.getParameters().getRetryAfter());
+            }
+
+            System.err.println("Ошибка получения обновлений для бота " + bot.getBotUsername() + ": " +
+                    error.getMessage() + ". Повтор через " + delay + " с.");
+            retry = retryScheduler.schedule(this::poll, delay, TimeUnit.SECONDS);
+            // Повтор, запланированный после stop(), уже не будет отменен
+            if (!running && retry.cancel(false)) {
+                stopped.complete(null);
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.telegramproposalbot.telegram.engine;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.generics.LongPollingBot;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Сборка альбомов из отдельных обновлений.
+ * Telegram присылает каждый элемент медиагруппы отдельным сообщением с общим media_group_id.
+ * Сообщения группы копятся, пока новые приходят чаще окна ожидания, затем вся группа
+ * передается обработчику одним списком. Полный альбом (10 элементов) передается сразу.
+ * Обработчик выполняется в очереди чата диспетчера обновлений: так альбом обрабатывается
+ * по порядку с остальными сообщениями чата и учитывается в распределении потоков между ботами.
+ */
+@Component
+public class MediaGroupCollector {
+
+    // Больше элементов в одном альбоме Telegram не присылает
+    private static final int MAX_GROUP_SIZE = 10;
+
+    private final UpdateDispatcher dispatcher;
+    private final long quietMillis;
+    private final Map<GroupKey, Group> groups = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer;
+
+    public MediaGroupCollector(UpdateDispatcher dispatcher,
+                               @Value("${telegram.media-group.quiet-ms:1000}") long quietMillis,
+                               @Value("${telegram.media-group.threads:2}") int threads) {
+        this.dispatcher = dispatcher;
+        this.quietMillis = quietMillis;
+        this.timer = Executors.newScheduledThreadPool(threads, new NamedThreadFactory("media-group-"));
+    }
+
+    /**
+     * Начинает сбор альбома с первого полученного элемента.
+     * Обработчик вызывается в очереди чата бота с сообщениями в порядке их идентификаторов.
+     */
+    public void open(LongPollingBot bot, Long botId, Message message, Consumer<List<Message>> onComplete) {
+        GroupKey key = new GroupKey(botId, message.getMediaGroupId());
+        Group group = new Group(key, bot, message.getChatId(), onComplete);
+        Group existing = groups.putIfAbsent(key, group);
+        if (existing != null) {
+            add(existing, message);
+        } else {
+            add(group, message);
+        }
+    }
+
+    /**
+     * Добавляет элемент в уже собираемый альбом
+     *
+     * @return false, если альбом не собирается или уже передан обработчику
+     */
+    public boolean append(Long botId, Message message) {
+        Group group = groups.get(new GroupKey(botId, message.getMediaGroupId()));
+        return group != null && add(group, message);
+    }
+
+    /**
+     * Сразу передает в очереди чатов все собираемые альбомы бота, например перед его остановкой
+     */
+    public void flush(Long botId) {
+        for (Group group : groups.values()) {
+            if (group.key.botId().equals(botId)) {
+                complete(group);
+            }
+        }
+    }
+
+    /**
+     * Количество собираемых альбомов
+     */
+    public int size() {
+        return groups.size();
+    }
+
+    private boolean add(Group group, Message message) {
+        synchronized (group) {
+            if (group.completed) {
+                return false;
+            }
+            group.messages.add(message);
+            if (group.timeout != null) {
+                group.timeout.cancel(false);
+            }
+            // Полный альбом больше не пополнится, ждать окна незачем
+            long delay = group.messages.size() >= MAX_GROUP_SIZE ? 0 : quietMillis;
+            group.timeout = timer.schedule(() -> complete(group), delay, TimeUnit.MILLISECONDS);
+        }
+        return true;
+    }
+
+    private void complete(Group group) {
+        List<Message> messages;
+        synchronized (group) {
+            if (group.completed) {
+                return;
+            }
+            group.completed = true;
+            if (group.timeout != null) {
+                group.timeout.cancel(false);
+            }
+            messages = new ArrayList<>(group.messages);
+        }
+        groups.remove(group.key, group);
+
+        messages.sort(Comparator.comparing(Message::getMessageId));
+        dispatcher.execute(group.bot, group.chatId, () -> group.onComplete.accept(messages));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    private record GroupKey(Long botId, String mediaGroupId) {
+    }
+
+    private static class Group {
+        private final GroupKey key;
+        private final LongPollingBot bot;
+        private final long chatId;
+        private final Consumer<List<Message>> onComplete;
+        private final List<Message> messages = new ArrayList<>(MAX_GROUP_SIZE);
+        private ScheduledFuture<?> timeout;
+        private boolean completed;
+
+        private Group(GroupKey key, LongPollingBot bot, long chatId, Consumer<List<Message>> onComplete) {
+            this.key = key;
+            this.bot = bot;
+            this.chatId = chatId;
+            this.onComplete = onComplete;
+        }
+    }
+}
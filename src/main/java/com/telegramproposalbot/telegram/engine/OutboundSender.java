@@ -0,0 +1,338 @@
+package com.telegramproposalbot.telegram.engine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.CopyMessage;
+import org.telegram.telegrambots.meta.api.methods.ForwardMessage;
+import org.telegram.telegrambots.meta.api.methods.PartialBotApiMethod;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Асинхронная отправка исходящих запросов с учетом лимитов Telegram.
+ * <ul>
+ *     <li>общий лимит на токен бота (около 30 запросов в секунду), ему подчиняются все запросы,
+ *     включая answerCallbackQuery и другие запросы без чата;</li>
+ *     <li>лимит на чат: около 1 сообщения в секунду в личном чате и 20 в минуту в группе или канале;</li>
+ *     <li>при ответе 429 отправка по токену приостанавливается на retry_after секунд и запрос повторяется.</li>
+ * </ul>
+ * Сообщения в один чат отправляются строго по очереди. Вызывающий поток не блокируется:
+ * результат возвращается через CompletableFuture.
+ */
+@Component
+public class OutboundSender {
+
+    private static final int MAX_RETRIES = 3;
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    // Метод getChatId у классов запросов, если он есть
+    private static final ClassValue<Method> CHAT_ID_GETTERS = new ClassValue<>() {
+        @Override
+        protected Method computeValue(Class<?> type) {
+            try {
+                return type.getMethod("getChatId");
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+    };
+
+    private final TelegramApiClient apiClient;
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("outbound-scheduler-"));
+    private final Map<String, TokenLane> lanes = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingTotal = new AtomicInteger();
+
+    private final int globalPerSecond;
+    private final int privatePerSecond;
+    private final int groupPerMinute;
+    private final int chatBurst;
+    private final int maxPendingPerToken;
+
+    private final Timer throttleDelay;
+    private final Counter retries;
+
+    public OutboundSender(TelegramApiClient apiClient,
+                          MeterRegistry meterRegistry,
+                          @Value("${telegram.sender.global-per-second:30}") int globalPerSecond,
+                          @Value("${telegram.sender.private-per-second:1}") int privatePerSecond,
+                          @Value("${telegram.sender.group-per-minute:20}") int groupPerMinute,
+                          @Value("${telegram.sender.chat-burst:3}") int chatBurst,
+                          @Value("${telegram.sender.max-pending:10000}") int maxPendingPerToken) {
+        this.apiClient = apiClient;
+        this.globalPerSecond = globalPerSecond;
+        this.privatePerSecond = privatePerSecond;
+        this.groupPerMinute = groupPerMinute;
+        this.chatBurst = chatBurst;
+        this.maxPendingPerToken = maxPendingPerToken;
+
+        this.throttleDelay = Timer.builder("telegram.sender.throttle.delay")
+                .description("Задержка отправки из-за лимитов Telegram")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.retries = Counter.builder("telegram.sender.retries")
+                .description("Повторы после ответа 429")
+                .register(meterRegistry);
+        Gauge.builder("telegram.sender.pending", pendingTotal, AtomicInteger::get)
+                .description("Исходящие запросы в очереди")
+                .register(meterRegistry);
+
+        // Периодически удаляем лимиты простаивающих чатов
+        scheduler.scheduleWithFixedDelay(this::evictIdleChats, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Ставит запрос в очередь отправки
+     */
+    public <T extends Serializable> CompletableFuture<T> send(String token, PartialBotApiMethod<T> method) {
+        TokenLane lane = acquireLane(token);
+        if (lane == null) {
+            return CompletableFuture.failedFuture(
+                    new TelegramApiException("Очередь исходящих сообщений бота переполнена"));
+        }
+        pendingTotal.incrementAndGet();
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        result.whenComplete((value, error) -> {
+            lane.pending.decrementAndGet();
+            pendingTotal.decrementAndGet();
+        });
+
+        String chatId = isRateLimited(method) ? chatIdOf(method) : null;
+        if (chatId == null) {
+            schedule(token, lane, null, method, result, 0);
+            return result;
+        }
+
+        // Следующее сообщение в чат уходит только после завершения предыдущего
+        ChatLane chat;
+        CompletableFuture<?> previous = null;
+        do {
+            chat = lane.chats.computeIfAbsent(chatId, id -> new ChatLane(createChatLimiter(id)));
+            synchronized (chat) {
+                // Очередь чата могли удалить как простаивающую между получением и блокировкой
+                if (!chat.evicted) {
+                    previous = chat.tail;
+                    chat.tail = result;
+                }
+            }
+        } while (previous == null);
+        ChatLane lockedChat = chat;
+        previous.whenComplete((value, error) -> schedule(token, lane, lockedChat, method, result, 0));
+        return result;
+    }
+
+    /**
+     * Ожидает результат отправки, пробрасывая ошибку Telegram API как TelegramApiException
+     */
+    public static <T> T await(CompletableFuture<T> future) throws TelegramApiException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = TelegramApiClient.unwrap(e);
+            if (cause instanceof TelegramApiException telegramApiException) {
+                throw telegramApiException;
+            }
+            throw new TelegramApiException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Количество запросов бота, ожидающих отправки
+     */
+    public int getPendingCount(String token) {
+        TokenLane lane = lanes.get(token);
+        return lane != null ? lane.pending.get() : 0;
+    }
+
+    /**
+     * Освобождает очередь и лимиты остановленного бота, если у него нет ожидающих запросов.
+     * При следующей отправке очередь будет создана заново.
+     */
+    public void release(String token) {
+        TokenLane lane = lanes.get(token);
+        if (lane != null) {
+            synchronized (lane) {
+                if (lane.pending.get() == 0) {
+                    evict(token, lane);
+                }
+            }
+        }
+    }
+
+    /**
+     * Получает очередь токена и учитывает в ней новый запрос
+     *
+     * @return null, если очередь переполнена
+     */
+    private TokenLane acquireLane(String token) {
+        while (true) {
+            TokenLane lane = lanes.computeIfAbsent(token, key -> new TokenLane());
+            synchronized (lane) {
+                // Очередь могли удалить между получением и блокировкой, тогда берем новую
+                if (lane.evicted) {
+                    continue;
+                }
+                if (lane.pending.incrementAndGet() > maxPendingPerToken) {
+                    lane.pending.decrementAndGet();
+                    return null;
+                }
+                return lane;
+            }
+        }
+    }
+
+    private <T extends Serializable> void schedule(String token, TokenLane lane, ChatLane chat,
+                                                   PartialBotApiMethod<T> method, CompletableFuture<T> result,
+                                                   int attempt) {
+        long now = System.nanoTime();
+        long sendAt = Math.max(now, lane.pausedUntil);
+        // Общий лимит токена действует для всех запросов, лимит чата - только для сообщений в чат
+        if (chat != null) {
+            sendAt = chat.limiter.reserve(sendAt);
+        }
+        sendAt = lane.global.reserve(sendAt);
+        long delay = sendAt - now;
+        throttleDelay.record(delay, TimeUnit.NANOSECONDS);
+
+        Runnable task = () -> apiClient.executeAsync(token, method).whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+                return;
+            }
+
+            Throwable cause = TelegramApiClient.unwrap(error);
+            Integer retryAfter = retryAfterOf(cause);
+            if (retryAfter != null && attempt < MAX_RETRIES) {
+                retries.increment();
+                lane.pausedUntil = Math.max(lane.pausedUntil, System.nanoTime() + retryAfter * SECOND);
+                schedule(token, lane, chat, method, result, attempt + 1);
+            } else {
+                result.completeExceptionally(cause);
+            }
+        });
+
+        if (delay <= 0) {
+            task.run();
+        } else {
+            scheduler.schedule(task, delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private RateLimiter createChatLimiter(String chatId) {
+        // Отрицательные ID и @username - группы и каналы
+        boolean group = chatId.startsWith("-") || chatId.startsWith("@");
+        return group
+                ? new RateLimiter(groupPerMinute, MINUTE, chatBurst)
+                : new RateLimiter(privatePerSecond, SECOND, chatBurst);
+    }
+
+    private void evictIdleChats() {
+        long now = System.nanoTime();
+        lanes.forEach((token, lane) -> {
+            lane.chats.forEach((chatId, chat) -> {
+                synchronized (chat) {
+                    if (chat.tail.isDone() && chat.limiter.isIdle(now)) {
+                        chat.evicted = true;
+                        lane.chats.remove(chatId, chat);
+                    }
+                }
+            });
+            // Проверка и удаление под блокировкой очереди: send не сможет учесть в ней новый запрос
+            synchronized (lane) {
+                if (lane.isIdle(now)) {
+                    evict(token, lane);
+                }
+            }
+        });
+    }
+
+    private void evict(String token, TokenLane lane) {
+        lane.evicted = true;
+        lanes.remove(token, lane);
+    }
+
+    /**
+     * Лимиты применяются к отправке и редактированию сообщений
+     */
+    private static boolean isRateLimited(PartialBotApiMethod<?> method) {
+        String packageName = method.getClass().getPackageName();
+        return packageName.endsWith(".methods.send")
+                || packageName.endsWith(".methods.updatingmessages")
+                || method instanceof ForwardMessage
+                || method instanceof CopyMessage;
+    }
+
+    private static String chatIdOf(PartialBotApiMethod<?> method) {
+        Method getter = CHAT_ID_GETTERS.get(method.getClass());
+        if (getter == null) {
+            return null;
+        }
+        try {
+            Object chatId = getter.invoke(method);
+            return chatId != null ? chatId.toString() : null;
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static Integer retryAfterOf(Throwable error) {
+        if (error instanceof TelegramApiRequestException requestException
+                && requestException.getParameters() != null) {
+            return requestException.getParameters().getRetryAfter();
+        }
+        return null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Очередь и лимиты одного токена
+     */
+    private class TokenLane {
+        private final RateLimiter global = new RateLimiter(globalPerSecond, SECOND, globalPerSecond);
+        private final Map<String, ChatLane> chats = new ConcurrentHashMap<>();
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile long pausedUntil = System.nanoTime();
+        // Удалена из lanes, доступ под блокировкой очереди
+        private boolean evicted;
+
+        boolean isIdle(long now) {
+            return pending.get() == 0 && chats.isEmpty() && global.isIdle(now) && pausedUntil <= now;
+        }
+    }
+
+    /**
+     * Очередь и лимит одного чата
+     */
+    private static class ChatLane {
+        private final RateLimiter limiter;
+        private CompletableFuture<?> tail = CompletableFuture.completedFuture(null);
+        // Удалена из очередей чатов, доступ под блокировкой очереди чата
+        private boolean evicted;
+
+        ChatLane(RateLimiter limiter) {
+            this.limiter = limiter;
+        }
+    }
+}
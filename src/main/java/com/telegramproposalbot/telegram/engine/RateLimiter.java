@@ -0,0 +1,44 @@
+package com.telegramproposalbot.telegram.engine;
+
+/**
+ * Ограничитель частоты по алгоритму GCRA (эквивалент token bucket).
+ * Не блокирует вызывающий поток: reserve возвращает момент, когда можно выполнить запрос,
+ * и сразу резервирует его.
+ */
+public class RateLimiter {
+
+    private final long intervalNanos;
+    private final long burstToleranceNanos;
+
+    // Теоретическое время прибытия следующего запроса
+    private long theoreticalArrival;
+
+    /**
+     * @param permits количество запросов за период
+     * @param periodNanos период в наносекундах
+     * @param burst сколько запросов можно выполнить подряд без ожидания
+     */
+    public RateLimiter(int permits, long periodNanos, int burst) {
+        this.intervalNanos = periodNanos / Math.max(1, permits);
+        this.burstToleranceNanos = intervalNanos * (Math.max(1, burst) - 1);
+        this.theoreticalArrival = System.nanoTime();
+    }
+
+    /**
+     * Резервирует разрешение не раньше указанного момента
+     *
+     * @return момент (System.nanoTime), начиная с которого запрос можно выполнять
+     */
+    public synchronized long reserve(long notBefore) {
+        long allowedAt = Math.max(notBefore, theoreticalArrival - burstToleranceNanos);
+        theoreticalArrival = Math.max(theoreticalArrival, allowedAt) + intervalNanos;
+        return allowedAt;
+    }
+
+    /**
+     * Проверяет, восстановился ли лимит полностью к указанному моменту
+     */
+    public synchronized boolean isIdle(long now) {
+        return theoreticalArrival <= now;
+    }
+}
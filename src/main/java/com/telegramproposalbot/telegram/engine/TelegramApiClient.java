@@ -0,0 +1,146 @@
+package com.telegramproposalbot.telegram.engine;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.PartialBotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
+import org.telegram.telegrambots.meta.api.methods.send.SendMediaGroup;
+import org.telegram.telegrambots.meta.api.methods.send.SendPhoto;
+import org.telegram.telegrambots.meta.api.methods.send.SendVideo;
+import org.telegram.telegrambots.meta.api.objects.media.InputMedia;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import java.io.Serializable;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Неблокирующий клиент Telegram Bot API, общий для всех ботов.
+ * Все запросы выполняются через один HttpClient с небольшим фиксированным пулом потоков,
+ * поэтому число потоков не зависит от количества ботов.
+ */
+@Component
+public class TelegramApiClient {
+
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+
+    // Методы с файлами библиотека описывает только для multipart-загрузки.
+    // Файлы, уже лежащие на серверах Telegram, передаются по file_id обычным JSON
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .addMixIn(SendPhoto.class, FileByIdJson.class)
+            .addMixIn(SendVideo.class, FileByIdJson.class)
+            .addMixIn(SendDocument.class, FileByIdJson.class)
+            .addMixIn(SendMediaGroup.class, SendMediaGroupJson.class);
+    private final ExecutorService ioExecutor;
+    private final HttpClient httpClient;
+    private final String apiUrl;
+
+    public TelegramApiClient(@Value("${telegram.api.url:https://api.telegram.org}") String apiUrl,
+                             @Value("${telegram.api.io-threads:4}") int ioThreads) {
+        this.apiUrl = apiUrl.endsWith("/") ? apiUrl.substring(0, apiUrl.length() - 1) : apiUrl;
+        this.ioExecutor = Executors.newFixedThreadPool(ioThreads, new NamedThreadFactory("telegram-io-"));
+        this.httpClient = HttpClient.newBuilder()
+                .executor(ioExecutor)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    /**
+     * Выполняет метод Bot API асинхронно с таймаутом по умолчанию
+     */
+    public <T extends Serializable> CompletableFuture<T> executeAsync(String token, PartialBotApiMethod<T> method) {
+        return executeAsync(token, method, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Выполняет метод Bot API асинхронно.
+     * Ошибки API возвращаются как TelegramApiRequestException с кодом ошибки и параметрами ответа.
+     */
+    public <T extends Serializable> CompletableFuture<T> executeAsync(String token, PartialBotApiMethod<T> method,
+                                                                      Duration timeout) {
+        HttpRequest request;
+        try {
+            method.validate();
+            request = HttpRequest.newBuilder()
+                    .uri(URI.create(apiUrl + "/bot" + token + "/" + method.getMethod()))
+                    .timeout(timeout)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(method),
+                            StandardCharsets.UTF_8))
+                    .build();
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e instanceof TelegramApiException
+                    ? e
+                    : new TelegramApiException("Unable to serialize " + method.getMethod() + " method", e));
+        }
+
+        CompletableFuture<HttpResponse<String>> exchange =
+                httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        CompletableFuture<T> result = exchange
+                .handle((response, error) -> {
+                    if (error != null) {
+                        throw new CompletionException(new TelegramApiException(
+                                "Unable to execute " + method.getMethod() + " method", unwrap(error)));
+                    }
+                    try {
+                        return method.deserializeResponse(response.body());
+                    } catch (TelegramApiException e) {
+                        throw new CompletionException(e);
+                    }
+                });
+        // Отмена результата прерывает HTTP-запрос, например незавершенный long polling остановленного бота
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Извлекает исходную причину из CompletionException
+     */
+    public static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ioExecutor.shutdownNow();
+    }
+
+    /**
+     * Имена полей методов с файлами в формате Bot API. Файл сериализуется своим file_id,
+     * служебные поля multipart-загрузки не передаются.
+     */
+    @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonIgnoreProperties({"file", "file_field"})
+    private abstract static class FileByIdJson {
+    }
+
+    private abstract static class SendMediaGroupJson extends FileByIdJson {
+
+        @JsonProperty("media")
+        abstract List<InputMedia> getMedias();
+    }
+}
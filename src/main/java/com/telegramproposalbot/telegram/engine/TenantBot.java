@@ -0,0 +1,18 @@
+package com.telegramproposalbot.telegram.engine;
+
+/**
+ * Бот-арендатор общего диспетчера. Вес определяет долю потоков обработки,
+ * которую бот получает, когда обновлений больше, чем свободных потоков.
+ */
+public interface TenantBot {
+
+    /**
+     * Идентификатор арендатора для метрик
+     */
+    String getTenantId();
+
+    /**
+     * Вес арендатора, не меньше 1
+     */
+    int getTenantWeight();
+}
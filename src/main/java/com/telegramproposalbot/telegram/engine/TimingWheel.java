@@ -0,0 +1,181 @@
+package com.telegramproposalbot.telegram.engine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Иерархическое колесо таймеров. Добавление и отмена выполняются за O(1),
+ * продвижение времени затрагивает только непустые ячейки.
+ * Нижний уровень делится на ячейки по tickMillis, каждый следующий уровень охватывает
+ * целый оборот предыдущего. Задача срабатывает не раньше своего срока и не позже чем через один тик.
+ * Методы синхронизированы, продвигать время должен один поток.
+ */
+public class TimingWheel<T> {
+
+    private final long tickMillis;
+    private final int wheelSize;
+    private final Level root;
+
+    // Непустые ячейки всех уровней в порядке срабатывания
+    private final PriorityQueue<Bucket> buckets = new PriorityQueue<>((a, b) -> Long.compare(a.expiration, b.expiration));
+    private final Map<Long, Entry<T>> entries = new HashMap<>();
+    private final List<T> expired = new ArrayList<>();
+
+    /**
+     * @param tickMillis длительность тика нижнего уровня
+     * @param wheelSize количество ячеек на каждом уровне
+     * @param startMillis начальный момент времени
+     */
+    public TimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.root = new Level(tickMillis, startMillis);
+    }
+
+    /**
+     * Планирует задачу на указанный момент. Задача с тем же id переносится.
+     */
+    public synchronized void schedule(long id, long deadlineMillis, T task) {
+        cancel(id);
+        // Округляем вверх до границы тика, чтобы задача не сработала раньше срока
+        Entry<T> entry = new Entry<>(id, deadlineMillis + tickMillis - 1, task);
+        entries.put(id, entry);
+        if (!root.add(entry)) {
+            entries.remove(id);
+            expired.add(task);
+        }
+    }
+
+    /**
+     * Отменяет задачу
+     *
+     * @return true, если задача была запланирована
+     */
+    public synchronized boolean cancel(long id) {
+        Entry<T> entry = entries.remove(id);
+        if (entry == null) {
+            return false;
+        }
+        // Из ячейки запись уберется при ее срабатывании
+        entry.cancelled = true;
+        return true;
+    }
+
+    /**
+     * Проверяет, запланирована ли задача
+     */
+    public synchronized boolean contains(long id) {
+        return entries.containsKey(id);
+    }
+
+    /**
+     * Количество запланированных задач
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Продвигает время и возвращает задачи, срок которых наступил
+     */
+    public synchronized List<T> advance(long nowMillis) {
+        List<T> due = new ArrayList<>(expired);
+        expired.clear();
+
+        while (!buckets.isEmpty() && buckets.peek().expiration <= nowMillis) {
+            Bucket bucket = buckets.poll();
+            root.advanceClock(bucket.expiration);
+            List<Entry<T>> bucketEntries = bucket.flush();
+            // Записи переходят на нижние уровни или срабатывают
+            for (Entry<T> entry : bucketEntries) {
+                if (!entry.cancelled && !root.add(entry)) {
+                    entries.remove(entry.id);
+                    due.add(entry.task);
+                }
+            }
+        }
+        return due;
+    }
+
+    private static final class Entry<T> {
+        private final long id;
+        private final long expiration;
+        private final T task;
+        private boolean cancelled;
+
+        Entry(long id, long expiration, T task) {
+            this.id = id;
+            this.expiration = expiration;
+            this.task = task;
+        }
+    }
+
+    private final class Bucket {
+        private List<Entry<T>> items = new ArrayList<>();
+        private long expiration = -1;
+
+        void add(Entry<T> entry, long bucketExpiration) {
+            items.add(entry);
+            // Ячейка попадает в очередь при первом заполнении после срабатывания
+            if (expiration != bucketExpiration) {
+                expiration = bucketExpiration;
+                buckets.add(this);
+            }
+        }
+
+        List<Entry<T>> flush() {
+            List<Entry<T>> flushed = items;
+            items = new ArrayList<>();
+            expiration = -1;
+            return flushed;
+        }
+    }
+
+    private final class Level {
+        private final long tick;
+        private final long interval;
+        private final List<Bucket> slots;
+        private long currentTime;
+        private Level overflow;
+
+        Level(long tick, long startMillis) {
+            this.tick = tick;
+            this.interval = tick * wheelSize;
+            this.currentTime = startMillis - startMillis % tick;
+            this.slots = new ArrayList<>(wheelSize);
+            for (int i = 0; i < wheelSize; i++) {
+                slots.add(new Bucket());
+            }
+        }
+
+        /**
+         * @return false, если срок записи уже наступил
+         */
+        boolean add(Entry<T> entry) {
+            if (entry.expiration < currentTime + tick) {
+                return false;
+            }
+            if (entry.expiration < currentTime + interval) {
+                long virtualId = entry.expiration / tick;
+                slots.get((int) (virtualId % wheelSize)).add(entry, virtualId * tick);
+                return true;
+            }
+            if (overflow == null) {
+                overflow = new Level(interval, currentTime);
+            }
+            return overflow.add(entry);
+        }
+
+        void advanceClock(long timeMillis) {
+            if (timeMillis >= currentTime + tick) {
+                currentTime = timeMillis - timeMillis % tick;
+                if (overflow != null) {
+                    overflow.advanceClock(currentTime);
+                }
+            }
+        }
+    }
+}
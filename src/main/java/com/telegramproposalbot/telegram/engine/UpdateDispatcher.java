@@ -0,0 +1,350 @@
+package com.telegramproposalbot.telegram.engine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.generics.LongPollingBot;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Единый диспетчер входящих обновлений для всех ботов.
+ * Обновления раскладываются по разделам (бот, чат): внутри раздела они обрабатываются
+ * строго по порядку, а разные разделы обрабатываются параллельно в общем пуле потоков.
+ * Поэтому медленный вызов API в одном чате не задерживает остальных пользователей бота.
+ * Потоки распределяются между ботами по весам (FairScheduler), поэтому всплеск трафика
+ * одного бота не задерживает обработку у остальных.
+ */
+@Component
+public class UpdateDispatcher {
+
+    // Сколько обновлений раздел обрабатывает подряд, прежде чем уступить поток другим разделам
+    private static final int DRAIN_BATCH = 16;
+
+    private final ExecutorService workers;
+    private final FairScheduler<LongPollingBot> scheduler;
+    private final MeterRegistry meterRegistry;
+    private final int partitionCapacity;
+    private final Map<PartitionKey, ChatPartition> partitions = new ConcurrentHashMap<>();
+    private final AtomicInteger queuedUpdates = new AtomicInteger();
+    // Задержка от постановки в очередь до окончания обработки по каждому боту
+    private final Map<LongPollingBot, Timer> tenantLatency = new ConcurrentHashMap<>();
+
+    private final Timer queueLag;
+    private final Timer handleTime;
+    private final Counter rejected;
+
+    public UpdateDispatcher(@Value("${telegram.dispatcher.threads:16}") int threads,
+                            @Value("${telegram.dispatcher.partition-capacity:100}") int partitionCapacity,
+                            MeterRegistry meterRegistry) {
+        this.workers = Executors.newFixedThreadPool(threads, new NamedThreadFactory("update-worker-"));
+        this.partitionCapacity = partitionCapacity;
+        this.meterRegistry = meterRegistry;
+
+        // За обход бот с весом 1 обрабатывает до DRAIN_BATCH обновлений, одна задача - не больше DRAIN_BATCH
+        this.scheduler = new FairScheduler<>(DRAIN_BATCH, DRAIN_BATCH, UpdateDispatcher::weightOf);
+        for (int i = 0; i < threads; i++) {
+            workers.execute(scheduler::runWorker);
+        }
+
+        this.queueLag = Timer.builder("telegram.dispatcher.queue.lag")
+                .description("Время ожидания обновления в очереди чата")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.handleTime = Timer.builder("telegram.dispatcher.handle.time")
+                .description("Время обработки одного обновления")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("telegram.dispatcher.rejected")
+                .description("Обновления, отклоненные из-за переполнения очереди чата")
+                .register(meterRegistry);
+        Gauge.builder("telegram.dispatcher.queued", queuedUpdates, AtomicInteger::get)
+                .description("Обновления, ожидающие обработки")
+                .register(meterRegistry);
+        Gauge.builder("telegram.dispatcher.partitions", partitions, Map::size)
+                .description("Чаты с непустой очередью")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ставит пачку обновлений бота в очереди чатов, сохраняя порядок.
+     * Возвращаемый future завершается, когда все обновления приняты в очереди;
+     * если очередь чата заполнена, он ждет освобождения места.
+     */
+    public CompletableFuture<Void> dispatch(LongPollingBot bot, List<Update> updates) {
+        return enqueueFrom(bot, updates, 0);
+    }
+
+    /**
+     * Ставит одно обновление в очередь чата без ожидания
+     *
+     * @return false, если очередь чата заполнена
+     */
+    public boolean tryDispatch(LongPollingBot bot, Update update) {
+        if (offer(bot, update, false) != null) {
+            rejected.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Выполняет задачу в очереди чата бота после уже принятых обновлений этого чата,
+     * например обработку собранного альбома. Задача принимается и в заполненную очередь,
+     * чтобы не потерять уже принятые обновления, из которых она собрана.
+     */
+    public void execute(LongPollingBot bot, long chatId, Runnable task) {
+        offer(new PartitionKey(bot, chatId), new QueuedUpdate(null, task, System.nanoTime()), false, true);
+    }
+
+    /**
+     * Количество обновлений, ожидающих обработки
+     */
+    public int getQueuedCount() {
+        return queuedUpdates.get();
+    }
+
+    /**
+     * Есть ли у бота обновления в очередях или в обработке.
+     * Раздел удаляется только после обработки последнего обновления, поэтому
+     * отсутствие разделов бота означает, что все принятые обновления обработаны.
+     */
+    public boolean hasPending(LongPollingBot bot) {
+        for (PartitionKey key : partitions.keySet()) {
+            if (key.bot() == bot) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Удаляет метрики остановленного бота
+     */
+    public void release(LongPollingBot bot) {
+        Timer timer = tenantLatency.remove(bot);
+        if (timer != null) {
+            meterRegistry.remove(timer);
+        }
+    }
+
+    private CompletableFuture<Void> enqueueFrom(LongPollingBot bot, List<Update> updates, int from) {
+        for (int i = from; i < updates.size(); i++) {
+            CompletableFuture<Void> space = offer(bot, updates.get(i), true);
+            if (space != null) {
+                int next = i;
+                return space.thenCompose(ignored -> enqueueFrom(bot, updates, next));
+            }
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Добавляет обновление в очередь его чата
+     *
+     * @return null, если обновление принято, иначе future, завершающийся при освобождении места
+     */
+    private CompletableFuture<Void> offer(LongPollingBot bot, Update update, boolean waitForSpace) {
+        return offer(new PartitionKey(bot, chatIdOf(update)), new QueuedUpdate(update, null, System.nanoTime()),
+                waitForSpace, false);
+    }
+
+    /**
+     * Добавляет обновление или задачу в очередь раздела
+     *
+     * @param force принять, даже если очередь заполнена
+     */
+    private CompletableFuture<Void> offer(PartitionKey key, QueuedUpdate item, boolean waitForSpace, boolean force) {
+        OfferResult result = new OfferResult();
+
+        partitions.compute(key, (k, partition) -> {
+            if (partition == null) {
+                partition = new ChatPartition();
+            }
+            if (!force && partition.queue.size() >= partitionCapacity) {
+                if (waitForSpace) {
+                    result.space = new CompletableFuture<>();
+                    partition.spaceWaiters.add(result.space);
+                } else {
+                    result.space = CompletableFuture.completedFuture(null);
+                }
+                return partition;
+            }
+            partition.queue.add(item);
+            if (!partition.scheduled) {
+                partition.scheduled = true;
+                result.schedule = true;
+            }
+            return partition;
+        });
+
+        if (result.space == null) {
+            queuedUpdates.incrementAndGet();
+        }
+        if (result.schedule) {
+            schedule(key);
+        }
+        return result.space;
+    }
+
+    private void schedule(PartitionKey key) {
+        scheduler.submit(key.bot(), () -> drain(key));
+    }
+
+    /**
+     * Обрабатывает очередь одного чата. Одновременно раздел обрабатывается только одним потоком.
+     *
+     * @return количество обработанных обновлений - стоимость задачи для планировщика
+     */
+    private int drain(PartitionKey key) {
+        Timer latency = tenantLatency.computeIfAbsent(key.bot(), this::createTenantTimer);
+        for (int i = 0; i < DRAIN_BATCH; i++) {
+            TakeResult taken = take(key);
+            taken.wakeWaiters();
+            if (taken.update == null) {
+                return Math.max(i, 1);
+            }
+
+            queuedUpdates.decrementAndGet();
+            queueLag.record(System.nanoTime() - taken.update.enqueuedAt, TimeUnit.NANOSECONDS);
+            handleTime.record(() -> handle(key.bot(), taken.update));
+            latency.record(System.nanoTime() - taken.update.enqueuedAt, TimeUnit.NANOSECONDS);
+        }
+
+        // Уступаем поток другим чатам и ботам и продолжаем позже
+        schedule(key);
+        return DRAIN_BATCH;
+    }
+
+    private Timer createTenantTimer(LongPollingBot bot) {
+        String tenant = bot instanceof TenantBot tenantBot ? tenantBot.getTenantId() : bot.getBotUsername();
+        return Timer.builder("telegram.dispatcher.tenant.latency")
+                .description("Время от получения обновления бота до окончания его обработки")
+                .tag("tenant", tenant)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    private static int weightOf(LongPollingBot bot) {
+        return bot instanceof TenantBot tenantBot ? tenantBot.getTenantWeight() : 1;
+    }
+
+    private TakeResult take(PartitionKey key) {
+        TakeResult result = new TakeResult();
+        partitions.computeIfPresent(key, (k, partition) -> {
+            result.update = partition.queue.poll();
+            if (!partition.spaceWaiters.isEmpty() && partition.queue.size() < partitionCapacity) {
+                result.waiters = new ArrayList<>(partition.spaceWaiters);
+                partition.spaceWaiters.clear();
+            }
+            if (result.update == null) {
+                // Очередь пуста - раздел больше не нужен
+                partition.scheduled = false;
+                return null;
+            }
+            return partition;
+        });
+        return result;
+    }
+
+    private void handle(LongPollingBot bot, QueuedUpdate queued) {
+        try {
+            if (queued.task != null) {
+                queued.task.run();
+            } else {
+                bot.onUpdateReceived(queued.update);
+            }
+        } catch (Exception e) {
+            String subject = queued.update != null ? "обновления " + queued.update.getUpdateId() : "задачи";
+            System.err.println("Ошибка при обработке " + subject + " ботом " + bot.getBotUsername() + ": " +
+                    e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Определяет чат, к которому относится обновление
+     */
+    static long chatIdOf(Update update) {
+        if (update.hasMessage()) {
+            return update.getMessage().getChatId();
+        } else if (update.hasCallbackQuery()) {
+            CallbackQuery callbackQuery = update.getCallbackQuery();
+            return callbackQuery.getMessage() != null
+                    ? callbackQuery.getMessage().getChatId()
+                    : callbackQuery.getFrom().getId();
+        } else if (update.hasEditedMessage()) {
+            return update.getEditedMessage().getChatId();
+        } else if (update.hasChannelPost()) {
+            return update.getChannelPost().getChatId();
+        } else if (update.hasEditedChannelPost()) {
+            return update.getEditedChannelPost().getChatId();
+        } else if (update.hasInlineQuery()) {
+            return update.getInlineQuery().getFrom().getId();
+        } else if (update.hasChosenInlineQuery()) {
+            return update.getChosenInlineQuery().getFrom().getId();
+        } else if (update.hasPreCheckoutQuery()) {
+            return update.getPreCheckoutQuery().getFrom().getId();
+        } else if (update.hasShippingQuery()) {
+            return update.getShippingQuery().getFrom().getId();
+        } else if (update.hasMyChatMember()) {
+            return update.getMyChatMember().getChat().getId();
+        } else if (update.hasChatMember()) {
+            return update.getChatMember().getChat().getId();
+        } else if (update.hasChatJoinRequest()) {
+            return update.getChatJoinRequest().getChat().getId();
+        }
+        return 0L;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Рабочие потоки завершатся, обработав оставшиеся задачи
+        scheduler.close();
+        workers.shutdown();
+    }
+
+    private record PartitionKey(LongPollingBot bot, long chatId) {
+    }
+
+    // Обновление бота или задача, выполняемая в очереди чата
+    private record QueuedUpdate(Update update, Runnable task, long enqueuedAt) {
+    }
+
+    // Состояние раздела изменяется только внутри compute карты partitions
+    private static class ChatPartition {
+        private final ArrayDeque<QueuedUpdate> queue = new ArrayDeque<>();
+        private final List<CompletableFuture<Void>> spaceWaiters = new ArrayList<>(0);
+        private boolean scheduled;
+    }
+
+    private static class OfferResult {
+        private CompletableFuture<Void> space;
+        private boolean schedule;
+    }
+
+    private static class TakeResult {
+        private QueuedUpdate update;
+        private List<CompletableFuture<Void>> waiters;
+
+        void wakeWaiters() {
+            if (waiters != null) {
+                waiters.forEach(waiter -> waiter.complete(null));
+            }
+        }
+    }
+}
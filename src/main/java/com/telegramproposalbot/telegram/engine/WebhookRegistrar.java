@@ -0,0 +1,90 @@
+package com.telegramproposalbot.telegram.engine;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.updates.DeleteWebhook;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Регистрирует вебхуки ботов вида {base-url}/tg/{botId}/{secret}.
+ * Секрет вычисляется из токена бота и серверного ключа, поэтому его не нужно хранить в БД
+ * и он остается тем же после перезапуска приложения.
+ */
+@Component
+public class WebhookRegistrar {
+
+    public static final String SECRET_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+
+    private final TelegramApiClient apiClient;
+    private final String baseUrl;
+    private final String secretKey;
+    private final int maxConnections;
+
+    public WebhookRegistrar(TelegramApiClient apiClient,
+                            @Value("${telegram.webhook.base-url:}") String baseUrl,
+                            @Value("${telegram.webhook.secret-key:${security.telegram.auth.secret}}") String secretKey,
+                            @Value("${telegram.webhook.max-connections:40}") int maxConnections) {
+        this.apiClient = apiClient;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.secretKey = secretKey;
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * Устанавливает вебхук для бота
+     */
+    public CompletableFuture<Boolean> register(Long botId, String token) {
+        if (baseUrl.isEmpty()) {
+            return CompletableFuture.failedFuture(
+                    new IllegalStateException("Не задан telegram.webhook.base-url для режима вебхуков"));
+        }
+
+        String secret = secretFor(token);
+        SetWebhook setWebhook = SetWebhook.builder()
+                .url(baseUrl + "/tg/" + botId + "/" + secret)
+                .secretToken(secret)
+                .maxConnections(maxConnections)
+                .build();
+        return apiClient.executeAsync(token, setWebhook);
+    }
+
+    /**
+     * Удаляет вебхук бота
+     */
+    public CompletableFuture<Boolean> unregister(String token) {
+        return apiClient.executeAsync(token, new DeleteWebhook());
+    }
+
+    /**
+     * Проверяет секрет из URL (и заголовка, если Telegram его передал)
+     */
+    public boolean isValidSecret(String token, String pathSecret, String headerSecret) {
+        byte[] expected = secretFor(token).getBytes(StandardCharsets.UTF_8);
+        if (!MessageDigest.isEqual(expected, pathSecret.getBytes(StandardCharsets.UTF_8))) {
+            return false;
+        }
+        return headerSecret == null
+                || MessageDigest.isEqual(expected, headerSecret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Вычисляет секрет вебхука: HMAC-SHA256 от токена в URL-безопасном Base64
+     */
+    String secretFor(String token) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            byte[] digest = mac.doFinal(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (Exception e) {
+            throw new IllegalStateException("Не удалось вычислить секрет вебхука", e);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.telegramproposalbot.telegram.miniapp;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.telegramproposalbot.dto.BotSettingsDTO;
 import com.telegramproposalbot.service.BotService;
 import com.telegramproposalbot.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -119,26 +120,26 @@ public class MiniAppHandler {
                 return;
             }
 
-            // Обновляем настройки
+            // Собираем все изменения, чтобы применить их одной транзакцией и одной новой версией
+            BotSettingsDTO settings = new BotSettingsDTO();
             if (jsonData.has("name")) {
-                String name = jsonData.get("name").asText();
-                botService.updateBotName(botId, name);
+                settings.setName(jsonData.get("name").asText());
             }
 
             if (jsonData.has("welcome_message")) {
-                String welcomeMessage = jsonData.get("welcome_message").asText();
-                botService.updateBotWelcomeMessage(botId, welcomeMessage);
+                settings.setWelcomeMessage(jsonData.get("welcome_message").asText());
             }
 
             if (jsonData.has("confirmation_message")) {
-                String confirmationMessage = jsonData.get("confirmation_message").asText();
-                botService.updateBotConfirmationMessage(botId, confirmationMessage);
+                settings.setConfirmationMessage(jsonData.get("confirmation_message").asText());
             }
 
             if (jsonData.has("publication_footer")) {
-                String publicationFooter = jsonData.get("publication_footer").asText();
-                botService.saveBotSetting(botId, "publication_footer", publicationFooter);
+                settings.setPublicationFooter(jsonData.get("publication_footer").asText());
             }
+
+            // Запущенный бот получит новую конфигурацию без перезапуска
+            botService.updateBotSettings(botId, settings);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -0,0 +1,68 @@
+package com.telegramproposalbot.telegram.runtime;
+
+import com.telegramproposalbot.entity.Bot;
+
+import java.util.Date;
+
+/**
+ * Неизменяемая конфигурация запущенного бота.
+ * При изменении настроек конфигурация заменяется целиком, поэтому обработчик обновления
+ * всегда видит согласованный набор полей. Версия совпадает с bots.settings_version.
+ */
+public final class BotConfig {
+
+    private final Long botId;
+    private final Long ownerId;
+    private final String name;
+    private final String welcomeMessage;
+    private final String confirmationMessage;
+    private final Date createdAt;
+    private final long version;
+
+    public BotConfig(Long botId, Long ownerId, String name, String welcomeMessage, String confirmationMessage,
+                     Date createdAt, long version) {
+        this.botId = botId;
+        this.ownerId = ownerId;
+        this.name = name;
+        this.welcomeMessage = welcomeMessage;
+        this.confirmationMessage = confirmationMessage;
+        this.createdAt = createdAt != null ? new Date(createdAt.getTime()) : null;
+        this.version = version;
+    }
+
+    /**
+     * Создает конфигурацию из сущности бота
+     */
+    public static BotConfig from(Bot bot) {
+        return new BotConfig(bot.getId(), bot.getOwnerId(), bot.getName(), bot.getWelcomeMessage(),
+                bot.getConfirmationMessage(), bot.getCreatedAt(), bot.getSettingsVersion());
+    }
+
+    public Long getBotId() {
+        return botId;
+    }
+
+    public Long getOwnerId() {
+        return ownerId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getWelcomeMessage() {
+        return welcomeMessage;
+    }
+
+    public String getConfirmationMessage() {
+        return confirmationMessage;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt != null ? new Date(createdAt.getTime()) : null;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
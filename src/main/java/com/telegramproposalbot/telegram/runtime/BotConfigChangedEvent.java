@@ -0,0 +1,17 @@
+package com.telegramproposalbot.telegram.runtime;
+
+/**
+ * Событие изменения конфигурации бота, публикуется после фиксации транзакции
+ */
+public class BotConfigChangedEvent {
+
+    private final BotConfig config;
+
+    public BotConfigChangedEvent(BotConfig config) {
+        this.config = config;
+    }
+
+    public BotConfig getConfig() {
+        return config;
+    }
+}
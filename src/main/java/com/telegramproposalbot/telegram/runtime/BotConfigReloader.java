@@ -0,0 +1,96 @@
+package com.telegramproposalbot.telegram.runtime;
+
+import com.telegramproposalbot.entity.Bot;
+import com.telegramproposalbot.repository.BotRepository;
+import com.telegramproposalbot.service.SubscriptionService;
+import com.telegramproposalbot.telegram.bot.ProposalBot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Применяет изменения конфигурации к запущенным ботам без перезапуска.
+ * Изменения на этом экземпляре приходят событием сразу после фиксации,
+ * изменения на других экземплярах обнаруживаются по версии в bots.settings_version.
+ * Также периодически обновляет веса ботов в диспетчере по подпискам владельцев.
+ */
+@Component
+public class BotConfigReloader {
+
+    private final BotRuntimeRegistry runtimeRegistry;
+    private final BotRepository botRepository;
+    private final SubscriptionService subscriptionService;
+
+    @Autowired
+    public BotConfigReloader(BotRuntimeRegistry runtimeRegistry,
+                             BotRepository botRepository,
+                             SubscriptionService subscriptionService) {
+        this.runtimeRegistry = runtimeRegistry;
+        this.botRepository = botRepository;
+        this.subscriptionService = subscriptionService;
+    }
+
+    /**
+     * Передает новую конфигурацию запущенному экземпляру бота
+     */
+    @EventListener
+    public void onConfigChanged(BotConfigChangedEvent event) {
+        ProposalBot bot = runtimeRegistry.get(event.getConfig().getBotId());
+        if (bot != null) {
+            bot.getContext().applyConfig(event.getConfig());
+        }
+    }
+
+    /**
+     * Перечитывает конфигурацию ботов, измененных на других экземплярах
+     */
+    @Scheduled(fixedDelayString = "${telegram.settings.version-check-ms:30000}")
+    public void reloadStale() {
+        if (runtimeRegistry.size() == 0) {
+            return;
+        }
+
+        List<Long> botIds = new ArrayList<>();
+        runtimeRegistry.getAll().forEach(bot -> botIds.add(bot.getContext().getBotId()));
+
+        List<Long> stale = new ArrayList<>();
+        for (Object[] row : botRepository.findSettingsVersions(botIds)) {
+            ProposalBot bot = runtimeRegistry.get((Long) row[0]);
+            long version = row[1] != null ? (Long) row[1] : 0L;
+            if (bot != null && bot.getContext().getConfig().getVersion() < version) {
+                stale.add((Long) row[0]);
+            }
+        }
+
+        for (Bot bot : botRepository.findAllById(stale)) {
+            onConfigChanged(new BotConfigChangedEvent(BotConfig.from(bot)));
+        }
+    }
+
+    /**
+     * Пересчитывает веса запущенных ботов: подписка владельца могла измениться или истечь
+     */
+    @Scheduled(fixedDelayString = "${telegram.dispatcher.weight-refresh-ms:60000}")
+    public void refreshWeights() {
+        if (runtimeRegistry.size() == 0) {
+            return;
+        }
+
+        Set<Long> ownerIds = new HashSet<>();
+        runtimeRegistry.getAll().forEach(bot -> ownerIds.add(bot.getContext().getConfig().getOwnerId()));
+        Map<Long, Integer> weights = subscriptionService.getDispatchWeights(ownerIds);
+        for (ProposalBot bot : runtimeRegistry.getAll()) {
+            Integer weight = weights.get(bot.getContext().getConfig().getOwnerId());
+            if (weight != null) {
+                bot.getContext().setWeight(weight);
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.telegramproposalbot.telegram.runtime;
+
+import com.telegramproposalbot.entity.Bot;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Состояние одного запущенного бота-предложки: токен и конфигурация.
+ * Экземпляр создается на каждого бота и не разделяется между ботами.
+ * Конфигурация заменяется на лету, без перезапуска и повторной регистрации в Telegram.
+ */
+public class BotContext {
+
+    private final Long botId;
+    private final String token;
+    private final AtomicReference<BotConfig> config;
+    // Вес бота в диспетчере обновлений, зависит от подписки владельца
+    private volatile int weight = 1;
+
+    public BotContext(Bot bot) {
+        this.botId = bot.getId();
+        this.token = bot.getToken();
+        this.config = new AtomicReference<>(BotConfig.from(bot));
+    }
+
+    public Long getBotId() {
+        return botId;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public void setWeight(int weight) {
+        this.weight = Math.max(1, weight);
+    }
+
+    public BotConfig getConfig() {
+        return config.get();
+    }
+
+    /**
+     * Атомарно заменяет конфигурацию, если новая не старее текущей.
+     * События могут прийти не по порядку, поэтому устаревшая версия отбрасывается.
+     *
+     * @return true, если конфигурация заменена
+     */
+    public boolean applyConfig(BotConfig newConfig) {
+        BotConfig current;
+        do {
+            current = config.get();
+            if (newConfig.getVersion() < current.getVersion()) {
+                return false;
+            }
+        } while (!config.compareAndSet(current, newConfig));
+        return true;
+    }
+}
@@ -0,0 +1,70 @@
+package com.telegramproposalbot.telegram.runtime;
+
+import com.telegramproposalbot.telegram.bot.ProposalBot;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Реестр запущенных ботов-предложек, индексированный по ID бота
+ */
+@Component
+public class BotRuntimeRegistry {
+
+    private final Map<Long, ProposalBot> runtimes = new ConcurrentHashMap<>();
+
+    /**
+     * Регистрирует экземпляр бота, если для этого ID еще нет запущенного
+     *
+     * @return true, если бот был зарегистрирован
+     */
+    public boolean register(ProposalBot bot) {
+        return runtimes.putIfAbsent(bot.getContext().getBotId(), bot) == null;
+    }
+
+    /**
+     * Получает экземпляр бота по ID
+     */
+    public ProposalBot get(Long botId) {
+        return runtimes.get(botId);
+    }
+
+    /**
+     * Проверяет, запущен ли бот
+     */
+    public boolean contains(Long botId) {
+        return runtimes.containsKey(botId);
+    }
+
+    /**
+     * Удаляет бота из реестра
+     */
+    public ProposalBot remove(Long botId) {
+        return runtimes.remove(botId);
+    }
+
+    /**
+     * Возвращает все запущенные экземпляры
+     */
+    public Collection<ProposalBot> getAll() {
+        return Collections.unmodifiableCollection(runtimes.values());
+    }
+
+    /**
+     * Возвращает ID запущенных ботов
+     */
+    public Set<Long> getBotIds() {
+        return Collections.unmodifiableSet(runtimes.keySet());
+    }
+
+    /**
+     * Количество запущенных ботов
+     */
+    public int size() {
+        return runtimes.size();
+    }
+}
@@ -0,0 +1,34 @@
+package com.telegramproposalbot.telegram.runtime;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Готовность экземпляра: OUT_OF_SERVICE, пока идет первый запуск ботов-предложек
+ */
+@Component
+public class BotStartupHealthIndicator implements HealthIndicator {
+
+    private final BotWarmStarter warmStarter;
+    private final BotRuntimeRegistry runtimeRegistry;
+
+    @Autowired
+    public BotStartupHealthIndicator(BotWarmStarter warmStarter, BotRuntimeRegistry runtimeRegistry) {
+        this.warmStarter = warmStarter;
+        this.runtimeRegistry = runtimeRegistry;
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder builder = warmStarter.isReady() ? Health.up() : Health.outOfService();
+        return builder
+                .withDetail("running", runtimeRegistry.size())
+                .withDetail("requested", warmStarter.getRequestedCount())
+                .withDetail("started", warmStarter.getStartedCount())
+                .withDetail("failed", warmStarter.getFailedCount())
+                .withDetail("initialStartMillis", warmStarter.getInitialStartMillis())
+                .build();
+    }
+}
@@ -0,0 +1,195 @@
+package com.telegramproposalbot.telegram.runtime;
+
+import com.telegramproposalbot.entity.Bot;
+import com.telegramproposalbot.repository.BotRepository;
+import com.telegramproposalbot.service.BlockedUserService;
+import com.telegramproposalbot.service.BotAdminService;
+import com.telegramproposalbot.service.BotService;
+import com.telegramproposalbot.service.BotSettingsService;
+import com.telegramproposalbot.service.ChannelService;
+import com.telegramproposalbot.telegram.engine.NamedThreadFactory;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Параллельный запуск ботов-предложек.
+ * Боты загружаются из БД страницами, каждый запускается в ограниченном пуле:
+ * сначала прогреваются его кэши (настройки, администраторы, блокировки, каналы),
+ * затем он подключается к опросу или вебхуку. Время запуска растет как N / parallelism,
+ * а не линейно с числом ботов. Первый завершенный запуск отмечает экземпляр готовым.
+ * В том же пуле останавливаются боты, переехавшие на другие экземпляры: остановка ждет
+ * обработки очередей и не должна занимать поток планировщика.
+ */
+@Component
+public class BotWarmStarter {
+
+    private final BotService botService;
+    private final BotRepository botRepository;
+    private final BotSettingsService botSettingsService;
+    private final BotAdminService botAdminService;
+    private final BlockedUserService blockedUserService;
+    private final ChannelService channelService;
+    private final BotRuntimeRegistry runtimeRegistry;
+    private final int pageSize;
+
+    // Страницы обрабатываются по очереди в одном потоке, боты страницы - параллельно
+    private final ExecutorService driver = Executors.newSingleThreadExecutor(new NamedThreadFactory("bot-startup-"));
+    private final ExecutorService workers;
+
+    // Боты, запуск которых уже поставлен в очередь
+    private final Set<Long> starting = ConcurrentHashMap.newKeySet();
+    // Боты, остановка которых уже поставлена в очередь
+    private final Set<Long> stopping = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger requested = new AtomicInteger();
+    private final AtomicInteger started = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private volatile boolean ready;
+    private volatile long initialStartMillis = -1;
+
+    @Autowired
+    public BotWarmStarter(BotService botService,
+                          BotRepository botRepository,
+                          BotSettingsService botSettingsService,
+                          BotAdminService botAdminService,
+                          BlockedUserService blockedUserService,
+                          ChannelService channelService,
+                          BotRuntimeRegistry runtimeRegistry,
+                          @Value("${telegram.startup.parallelism:16}") int parallelism,
+                          @Value("${telegram.startup.page-size:200}") int pageSize) {
+        this.botService = botService;
+        this.botRepository = botRepository;
+        this.botSettingsService = botSettingsService;
+        this.botAdminService = botAdminService;
+        this.blockedUserService = blockedUserService;
+        this.channelService = channelService;
+        this.runtimeRegistry = runtimeRegistry;
+        this.pageSize = pageSize;
+        this.workers = Executors.newFixedThreadPool(parallelism, new NamedThreadFactory("bot-startup-worker-"));
+    }
+
+    /**
+     * Ставит ботов в очередь на запуск, не блокируя вызывающий поток.
+     * Уже запущенные и ожидающие запуска боты пропускаются.
+     */
+    public CompletableFuture<Void> start(Collection<Long> botIds) {
+        List<Long> pending = new ArrayList<>();
+        for (Long botId : botIds) {
+            // Останавливаемого бота запустит следующее распределение
+            if (!runtimeRegistry.contains(botId) && !stopping.contains(botId) && starting.add(botId)) {
+                pending.add(botId);
+            }
+        }
+        requested.addAndGet(pending.size());
+        return CompletableFuture.runAsync(() -> startPages(pending), driver);
+    }
+
+    /**
+     * Останавливает ботов в фоне параллельно, не блокируя вызывающий поток.
+     * Боты, остановка которых уже идет, пропускаются.
+     */
+    public CompletableFuture<Void> stop(Collection<Long> botIds) {
+        List<CompletableFuture<Void>> stops = new ArrayList<>();
+        for (Long botId : botIds) {
+            if (stopping.add(botId)) {
+                stops.add(CompletableFuture.runAsync(() -> stopBot(botId), workers));
+            }
+        }
+        return CompletableFuture.allOf(stops.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * Готов ли экземпляр: первый запуск ботов завершен
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int getRequestedCount() {
+        return requested.get();
+    }
+
+    public int getStartedCount() {
+        return started.get();
+    }
+
+    public int getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * Длительность первого запуска в миллисекундах или -1, если он еще идет
+     */
+    public long getInitialStartMillis() {
+        return initialStartMillis;
+    }
+
+    private void startPages(List<Long> botIds) {
+        long startedAt = System.currentTimeMillis();
+        for (int i = 0; i < botIds.size(); i += pageSize) {
+            List<Long> page = botIds.subList(i, Math.min(i + pageSize, botIds.size()));
+            List<CompletableFuture<Void>> starts = new ArrayList<>(page.size());
+            for (Bot bot : botRepository.findAllById(page)) {
+                if (bot.isActive()) {
+                    starts.add(CompletableFuture.runAsync(() -> startBot(bot), workers));
+                }
+            }
+            CompletableFuture.allOf(starts.toArray(new CompletableFuture[0])).join();
+            // Неактивные и удаленные боты тоже снимаем с очереди
+            page.forEach(starting::remove);
+        }
+
+        if (!ready) {
+            initialStartMillis = System.currentTimeMillis() - startedAt;
+            ready = true;
+            System.out.println("Запущено ботов: " + started.get() + ", ошибок: " + failed.get() +
+                    ", за " + initialStartMillis + " мс");
+        }
+    }
+
+    private void startBot(Bot bot) {
+        try {
+            // Прогреваем кэши, чтобы первые обновления не шли в БД
+            botSettingsService.getSnapshot(bot.getId());
+            botAdminService.getAdminIds(bot.getId());
+            blockedUserService.isBlocked(bot.getId(), 0L);
+            channelService.getRegisteredChannels(bot.getId());
+
+            botService.startBot(bot);
+            started.incrementAndGet();
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            System.err.println("Не удалось запустить бота " + bot.getId() + ": " + e.getMessage());
+        } finally {
+            starting.remove(bot.getId());
+        }
+    }
+
+    private void stopBot(Long botId) {
+        try {
+            botService.stopBot(botId);
+        } catch (Exception e) {
+            System.err.println("Не удалось остановить бота " + botId + ": " + e.getMessage());
+        } finally {
+            stopping.remove(botId);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        driver.shutdownNow();
+        workers.shutdownNow();
+    }
+}
@@ -0,0 +1,135 @@
+package com.telegramproposalbot.telegram.runtime;
+
+import com.telegramproposalbot.entity.MessageLink;
+import com.telegramproposalbot.entity.Proposal;
+import com.telegramproposalbot.service.MessageLinkService;
+import com.telegramproposalbot.service.ProposalService;
+import com.telegramproposalbot.telegram.bot.ProposalBot;
+import com.telegramproposalbot.telegram.engine.NamedThreadFactory;
+import com.telegramproposalbot.telegram.engine.OutboundSender;
+import com.telegramproposalbot.telegram.engine.TelegramApiClient;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Обновление сообщений с кнопками управления у всех администраторов бота.
+ * После смены статуса предложения сообщения обновляются одной пачкой EditMessageText
+ * по истечении окна ожидания: смены статуса внутри окна схлопываются, и каждое сообщение
+ * редактируется один раз, сразу в последнее состояние предложения.
+ */
+@Component
+public class ControlMessageUpdater {
+
+    private final BotRuntimeRegistry runtimeRegistry;
+    private final ProposalService proposalService;
+    private final MessageLinkService messageLinkService;
+    private final OutboundSender sender;
+    private final long debounceMillis;
+
+    // Предложения, ожидающие обновления сообщений, и экземпляр бота, который их отрисует
+    private final Map<ProposalKey, ProposalBot> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer =
+            Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("control-messages-"));
+
+    @Autowired
+    public ControlMessageUpdater(BotRuntimeRegistry runtimeRegistry,
+                                 ProposalService proposalService,
+                                 MessageLinkService messageLinkService,
+                                 OutboundSender sender,
+                                 @Value("${telegram.control-messages.debounce-ms:300}") long debounceMillis) {
+        this.runtimeRegistry = runtimeRegistry;
+        this.proposalService = proposalService;
+        this.messageLinkService = messageLinkService;
+        this.sender = sender;
+        this.debounceMillis = debounceMillis;
+    }
+
+    /**
+     * Планирует обновление сообщений администраторов после смены статуса предложения.
+     * Сообщения обновляет экземпляр, на котором запущен бот.
+     */
+    @EventListener
+    public void onStatusChanged(ProposalStatusChangedEvent event) {
+        Proposal proposal = event.getProposal();
+        ProposalBot bot = runtimeRegistry.get(proposal.getBotId());
+        if (bot == null) {
+            return;
+        }
+
+        ProposalKey key = new ProposalKey(proposal.getBotId(), proposal.getChatId(), proposal.getMessageId());
+        // Окно уже открыто: обновление отправится вместе с ним
+        if (pending.putIfAbsent(key, bot) == null) {
+            timer.schedule(() -> flush(key), debounceMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Сразу отправляет ожидающие обновления сообщений бота, например перед его остановкой
+     */
+    public void flush(Long botId) {
+        for (ProposalKey key : pending.keySet()) {
+            if (key.botId().equals(botId)) {
+                flush(key);
+            }
+        }
+    }
+
+    /**
+     * Количество предложений, ожидающих обновления сообщений
+     */
+    public int size() {
+        return pending.size();
+    }
+
+    private void flush(ProposalKey key) {
+        ProposalBot bot = pending.remove(key);
+        if (bot == null) {
+            return;
+        }
+
+        try {
+            // Статус читается в момент отправки, поэтому все смены внутри окна дают одно обновление
+            Proposal proposal = proposalService.getProposal(key.botId(), key.chatId(), key.messageId());
+            if (proposal == null) {
+                return;
+            }
+
+            EditMessageText content = bot.renderControlMessage(proposal);
+            String token = bot.getContext().getToken();
+            for (MessageLink link : messageLinkService.findByUserMessage(key.botId(), proposal.getUserId(),
+                    proposal.getMessageId())) {
+                EditMessageText edit = new EditMessageText();
+                edit.setChatId(link.getAdminChatId().toString());
+                edit.setMessageId(link.getAdminControlMessageId());
+                edit.setText(content.getText());
+                edit.setReplyMarkup(content.getReplyMarkup());
+                sender.send(token, edit).whenComplete((sent, error) -> {
+                    if (error != null) {
+                        System.err.println("Не удалось обновить сообщение администратора " + link.getAdminChatId() +
+                                ": " + TelegramApiClient.unwrap(error).getMessage());
+                    }
+                });
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    private record ProposalKey(Long botId, Long chatId, Integer messageId) {
+    }
+}
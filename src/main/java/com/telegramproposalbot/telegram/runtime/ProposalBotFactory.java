@@ -0,0 +1,76 @@
+package com.telegramproposalbot.telegram.runtime;
+
+import com.telegramproposalbot.entity.Bot;
+import com.telegramproposalbot.service.BlockedUserService;
+import com.telegramproposalbot.service.BotService;
+import com.telegramproposalbot.service.ChannelPublicationService;
+import com.telegramproposalbot.service.ChannelService;
+import com.telegramproposalbot.service.DuplicateDetectionService;
+import com.telegramproposalbot.service.FloodControlService;
+import com.telegramproposalbot.service.MessageLinkService;
+import com.telegramproposalbot.service.ProposalService;
+import com.telegramproposalbot.service.SubscriptionService;
+import com.telegramproposalbot.telegram.bot.ProposalBot;
+import com.telegramproposalbot.telegram.engine.MediaGroupCollector;
+import com.telegramproposalbot.telegram.engine.OutboundSender;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Фабрика экземпляров ProposalBot: на каждого бота создается собственный
+ * экземпляр со своим BotContext, общие сервисы передаются всем экземплярам.
+ */
+@Component
+public class ProposalBotFactory {
+
+    private final OutboundSender sender;
+    private final BotService botService;
+    private final BlockedUserService blockedUserService;
+    private final ChannelService channelService;
+    private final ProposalService proposalService;
+    private final MessageLinkService messageLinkService;
+    private final SubscriptionService subscriptionService;
+    private final FloodControlService floodControlService;
+    private final DuplicateDetectionService duplicateDetectionService;
+    private final MediaGroupCollector mediaGroupCollector;
+    private final ChannelPublicationService channelPublicationService;
+
+    @Autowired
+    public ProposalBotFactory(OutboundSender sender,
+                              @Lazy BotService botService,
+                              BlockedUserService blockedUserService,
+                              ChannelService channelService,
+                              ProposalService proposalService,
+                              MessageLinkService messageLinkService,
+                              SubscriptionService subscriptionService,
+                              FloodControlService floodControlService,
+                              DuplicateDetectionService duplicateDetectionService,
+                              MediaGroupCollector mediaGroupCollector,
+                              ChannelPublicationService channelPublicationService) {
+        this.sender = sender;
+        this.botService = botService;
+        this.blockedUserService = blockedUserService;
+        this.channelService = channelService;
+        this.proposalService = proposalService;
+        this.messageLinkService = messageLinkService;
+        this.subscriptionService = subscriptionService;
+        this.floodControlService = floodControlService;
+        this.duplicateDetectionService = duplicateDetectionService;
+        this.mediaGroupCollector = mediaGroupCollector;
+        this.channelPublicationService = channelPublicationService;
+    }
+
+    /**
+     * Создает новый экземпляр бота для указанной конфигурации
+     */
+    public ProposalBot create(Bot bot) {
+        BotContext context = new BotContext(bot);
+        context.setWeight(subscriptionService.getDispatchWeights(List.of(bot.getOwnerId())).get(bot.getOwnerId()));
+        return new ProposalBot(context, sender, botService, blockedUserService, channelService,
+                proposalService, messageLinkService, floodControlService, duplicateDetectionService,
+                mediaGroupCollector, channelPublicationService);
+    }
+}
@@ -0,0 +1,20 @@
+package com.telegramproposalbot.telegram.runtime;
+
+import com.telegramproposalbot.entity.Proposal;
+
+/**
+ * Событие смены статуса предложения или других данных, показанных в сообщениях администраторов,
+ * публикуется после фиксации транзакции
+ */
+public class ProposalStatusChangedEvent {
+
+    private final Proposal proposal;
+
+    public ProposalStatusChangedEvent(Proposal proposal) {
+        this.proposal = proposal;
+    }
+
+    public Proposal getProposal() {
+        return proposal;
+    }
+}
@@ -0,0 +1,86 @@
+package com.telegramproposalbot.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * SimHash текста: нормализация, малое расстояние у почти одинаковых текстов
+ * и большое у несвязанных.
+ */
+class ContentFingerprintTest {
+
+    private static final int MAX_DISTANCE = 10;
+
+    private static final String TEXT = "В субботу в городском парке пройдет ярмарка местных фермеров, "
+            + "вход свободный, начало в десять утра, приходите всей семьей и приводите друзей, "
+            + "будут мастер-классы для детей и концерт на главной сцене";
+
+    @Test
+    void caseAndPunctuationAreIgnored() {
+        ContentFingerprint original = ContentFingerprint.of(null, "Ёлка в парке: вход свободный!");
+        ContentFingerprint normalized = ContentFingerprint.of(null, "елка в ПАРКЕ вход свободный");
+
+        assertEquals(original.getSimHash(), normalized.getSimHash());
+    }
+
+    @Test
+    void nearIdenticalTextsDifferInFewBits() {
+        ContentFingerprint original = ContentFingerprint.of(null, TEXT);
+
+        // Замена или удаление любого одного слова
+        String[] words = TEXT.split(" ");
+        for (int i = 0; i < words.length; i++) {
+            String[] replaced = words.clone();
+            replaced[i] = "замена";
+            String removed = String.join(" ", Arrays.copyOfRange(words, 0, i))
+                    + " " + String.join(" ", Arrays.copyOfRange(words, i + 1, words.length));
+
+            for (String edited : List.of(String.join(" ", replaced), removed)) {
+                int distance = distance(original, ContentFingerprint.of(null, edited));
+                assertTrue(distance <= original.allowedDistance(MAX_DISTANCE), "расстояние " + distance + ": " + edited);
+            }
+        }
+    }
+
+    @Test
+    void unrelatedTextsAreFarApart() {
+        ContentFingerprint first = ContentFingerprint.of(null, TEXT);
+        ContentFingerprint second = ContentFingerprint.of(null, "Продам велосипед в хорошем состоянии, "
+                + "покупали два года назад, есть небольшие царапины на раме, торг уместен, звоните вечером");
+
+        int distance = distance(first, second);
+        assertTrue(distance > 2 * MAX_DISTANCE, "расстояние " + distance);
+    }
+
+    @Test
+    void shortTextsMatchOnlyExactly() {
+        ContentFingerprint shortText = ContentFingerprint.of(null, "продам велосипед");
+
+        assertEquals(0, shortText.allowedDistance(MAX_DISTANCE));
+        assertEquals(MAX_DISTANCE, ContentFingerprint.of(null, TEXT).allowedDistance(MAX_DISTANCE));
+    }
+
+    @Test
+    void mediaIsComparedByFileUniqueId() {
+        ContentFingerprint media = ContentFingerprint.of("AQADxyz", "подпись");
+
+        assertTrue(media.isMedia());
+        assertEquals("AQADxyz", media.getFileUniqueId());
+    }
+
+    @Test
+    void nothingToCompare() {
+        assertNull(ContentFingerprint.of(null, null));
+        assertNull(ContentFingerprint.of("", " ... !!! "));
+    }
+
+    private static int distance(ContentFingerprint first, ContentFingerprint second) {
+        return Long.bitCount(first.getSimHash() ^ second.getSimHash());
+    }
+}
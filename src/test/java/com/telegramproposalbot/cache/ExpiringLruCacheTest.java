@@ -0,0 +1,80 @@
+package com.telegramproposalbot.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * LRU-кэш: вытеснение давно не использованных записей при переполнении
+ * и удаление устаревших записей.
+ */
+class ExpiringLruCacheTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toNanos(1);
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        ExpiringLruCache<String, Integer> cache = new ExpiringLruCache<>(2, HOUR);
+        cache.put("a", 1);
+        cache.put("b", 2);
+
+        // Обращение к "a" делает вытесняемой запись "b"
+        assertEquals(1, cache.get("a"));
+        cache.put("c", 3);
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(3, cache.get("c"));
+    }
+
+    @Test
+    void putOfExistingKeyDoesNotEvict() {
+        ExpiringLruCache<String, Integer> cache = new ExpiringLruCache<>(2, HOUR);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("a", 10);
+
+        assertEquals(10, cache.get("a"));
+        assertEquals(2, cache.get("b"));
+    }
+
+    @Test
+    void expiredEntryIsNotReturned() {
+        ExpiringLruCache<String, Integer> cache = new ExpiringLruCache<>(10, 0);
+        cache.put("a", 1);
+
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void evictExpiredRemovesOnlyExpiredEntries() throws InterruptedException {
+        long ttl = TimeUnit.MILLISECONDS.toNanos(200);
+        ExpiringLruCache<String, Integer> cache = new ExpiringLruCache<>(10, ttl);
+        cache.put("old", 1);
+        TimeUnit.NANOSECONDS.sleep(2 * ttl);
+        cache.put("fresh", 2);
+
+        cache.evictExpired();
+
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.get("fresh"));
+    }
+
+    @Test
+    void removeIfFiltersByKeyAndValue() {
+        ExpiringLruCache<String, Integer> cache = new ExpiringLruCache<>(10, HOUR);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+
+        cache.removeIf((key, value) -> key.equals("a") || value == 3);
+
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.get("b"));
+    }
+}
@@ -0,0 +1,74 @@
+package com.telegramproposalbot.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Индекс отпечатков: поиск почти одинаковых текстов и медиа, окно по времени,
+ * удаление и вытеснение старых записей.
+ */
+class FingerprintIndexTest {
+
+    private static final int MAX_DISTANCE = 10;
+
+    private static final String TEXT = "В субботу в городском парке пройдет ярмарка местных фермеров, "
+            + "вход свободный, начало в десять утра, приходите всей семьей и приводите друзей";
+
+    private final FingerprintIndex<Long> index = new FingerprintIndex<>(100);
+
+    @Test
+    void findsNearDuplicateButNotUnrelatedText() {
+        index.add(text(TEXT), 1L, 1_000L);
+
+        assertEquals(1L, index.find(text(TEXT.toUpperCase() + "!!!"), MAX_DISTANCE, 0L));
+        assertNull(index.find(text("Продам велосипед в хорошем состоянии, торг уместен, звоните вечером"),
+                MAX_DISTANCE, 0L));
+    }
+
+    @Test
+    void ignoresEntriesOutsideWindow() {
+        index.add(text(TEXT), 1L, 1_000L);
+
+        assertNull(index.find(text(TEXT), MAX_DISTANCE, 1_001L));
+    }
+
+    @Test
+    void findsMediaByFileUniqueId() {
+        index.add(ContentFingerprint.of("AQADxyz", null), 1L, 1_000L);
+
+        assertEquals(1L, index.find(ContentFingerprint.of("AQADxyz", "другая подпись"), MAX_DISTANCE, 0L));
+        assertNull(index.find(ContentFingerprint.of("AQADabc", null), MAX_DISTANCE, 0L));
+    }
+
+    @Test
+    void removedProposalIsNotFound() {
+        index.add(text(TEXT), 1L, 1_000L);
+        index.add(ContentFingerprint.of("AQADxyz", null), 1L, 1_000L);
+
+        index.remove(1L);
+
+        assertNull(index.find(text(TEXT), MAX_DISTANCE, 0L));
+        assertNull(index.find(ContentFingerprint.of("AQADxyz", null), MAX_DISTANCE, 0L));
+    }
+
+    @Test
+    void oldestEntriesAreEvictedOnOverflow() {
+        FingerprintIndex<Long> small = new FingerprintIndex<>(20);
+        for (long i = 0; i < 30; i++) {
+            small.add(text("объявление номер " + i), i, 1_000L);
+            small.add(ContentFingerprint.of("file" + i, null), i, 1_000L);
+        }
+
+        assertNull(small.find(text("объявление номер 9"), MAX_DISTANCE, 0L));
+        assertEquals(10L, small.find(text("объявление номер 10"), MAX_DISTANCE, 0L));
+        assertEquals(29L, small.find(text("объявление номер 29"), MAX_DISTANCE, 0L));
+        assertNull(small.find(ContentFingerprint.of("file9", null), MAX_DISTANCE, 0L));
+        assertEquals(10L, small.find(ContentFingerprint.of("file10", null), MAX_DISTANCE, 0L));
+    }
+
+    private static ContentFingerprint text(String text) {
+        return ContentFingerprint.of(null, text);
+    }
+}
@@ -0,0 +1,78 @@
+package com.telegramproposalbot.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Множество long: совпадение с HashSet на случайных данных, крайние значения,
+ * дубликаты и пустое множество.
+ */
+class LongHashSetTest {
+
+    @Test
+    void matchesHashSetOnRandomValues() {
+        Random random = new Random(7);
+        long[] values = new long[5_000];
+        Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < values.length; i++) {
+            // Последовательные ID вперемешку со случайными
+            values[i] = i % 2 == 0 ? 1_000_000L + i : random.nextLong();
+            expected.add(values[i]);
+        }
+
+        LongHashSet set = LongHashSet.of(values);
+
+        assertEquals(expected.size(), set.size());
+        for (long value : values) {
+            assertTrue(set.contains(value));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            long probe = random.nextLong();
+            assertEquals(expected.contains(probe), set.contains(probe));
+        }
+    }
+
+    @Test
+    void containsEdgeValues() {
+        LongHashSet set = LongHashSet.of(new long[]{0L, -1L, Long.MIN_VALUE, Long.MAX_VALUE});
+
+        assertTrue(set.contains(0L));
+        assertTrue(set.contains(-1L));
+        assertTrue(set.contains(Long.MIN_VALUE));
+        assertTrue(set.contains(Long.MAX_VALUE));
+        assertFalse(set.contains(1L));
+    }
+
+    @Test
+    void duplicatesAreKeptOnceInInsertionOrder() {
+        LongHashSet set = LongHashSet.of(new long[]{5L, 3L, 5L, 9L, 3L});
+
+        assertEquals(3, set.size());
+        assertArrayEquals(new long[]{5L, 3L, 9L}, set.toArray());
+    }
+
+    @Test
+    void toArrayReturnsCopy() {
+        LongHashSet set = LongHashSet.of(new long[]{1L, 2L});
+
+        set.toArray()[0] = 42L;
+
+        assertArrayEquals(new long[]{1L, 2L}, set.toArray());
+    }
+
+    @Test
+    void emptySetContainsNothing() {
+        LongHashSet set = LongHashSet.of(new long[0]);
+
+        assertEquals(0, set.size());
+        assertFalse(set.contains(0L));
+    }
+}
@@ -0,0 +1,65 @@
+package com.telegramproposalbot.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Кэш членства: список бота загружается один раз, сбрасывается при изменении
+ * на этом экземпляре и при росте версии в БД.
+ */
+class MembershipCacheTest {
+
+    private final Map<Long, long[]> members = new ConcurrentHashMap<>();
+    private final Map<Long, Long> versions = new ConcurrentHashMap<>();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private final MembershipCache cache = new MembershipCache(botId -> {
+        loads.incrementAndGet();
+        return members.getOrDefault(botId, new long[0]);
+    }, botId -> versions.getOrDefault(botId, 0L));
+
+    @Test
+    void listIsLoadedOncePerBot() {
+        members.put(1L, new long[]{10L, 20L});
+
+        assertTrue(cache.contains(1L, 10L));
+        assertFalse(cache.contains(1L, 30L));
+        assertTrue(cache.contains(1L, 20L));
+
+        assertEquals(1, loads.get());
+        assertEquals(Set.of(1L), cache.cachedBotIds());
+    }
+
+    @Test
+    void invalidateReloadsList() {
+        members.put(1L, new long[]{10L});
+        assertFalse(cache.contains(1L, 20L));
+
+        members.put(1L, new long[]{10L, 20L});
+        cache.invalidate(1L);
+
+        assertTrue(cache.contains(1L, 20L));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void evictStaleDropsOnlyOutdatedSnapshots() {
+        versions.put(1L, 5L);
+        versions.put(2L, 5L);
+        cache.contains(1L, 10L);
+        cache.contains(2L, 10L);
+
+        // На другом экземпляре изменился список первого бота
+        cache.evictStale(Map.of(1L, 6L, 2L, 5L));
+
+        assertEquals(Set.of(2L), cache.cachedBotIds());
+    }
+}
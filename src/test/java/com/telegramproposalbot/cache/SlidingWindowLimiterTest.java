@@ -0,0 +1,76 @@
+package com.telegramproposalbot.cache;
+
+import com.telegramproposalbot.cache.SlidingWindowLimiter.Rule;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Скользящее окно: лимит внутри окна, частичный учет предыдущего окна после смены
+ * и полный сброс после паузы длиннее окна.
+ */
+class SlidingWindowLimiterTest {
+
+    private static final long BOT = 1L;
+    private static final long USER = 42L;
+    private static final long WINDOW = 60_000L;
+
+    private final SlidingWindowLimiter limiter = new SlidingWindowLimiter();
+    private final Rule[] rules = {new Rule(10, WINDOW)};
+
+    @Test
+    void rejectsMessagesOverLimitWithinWindow() {
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire(BOT, USER, rules, i * 100L));
+        }
+        assertFalse(limiter.tryAcquire(BOT, USER, rules, 1_000L));
+        // Другой пользователь считается отдельно
+        assertTrue(limiter.tryAcquire(BOT, USER + 1, rules, 1_000L));
+    }
+
+    @Test
+    void previousWindowIsWeightedAfterRollover() {
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire(BOT, USER, rules, 0));
+        }
+
+        // В начале следующего окна предыдущее учитывается почти полностью
+        assertFalse(limiter.tryAcquire(BOT, USER, rules, WINDOW + 1_000L));
+
+        // К середине окна от предыдущих 10 сообщений остается половина: оценка 5 + 2 <= 10
+        assertTrue(limiter.tryAcquire(BOT, USER, rules, WINDOW + WINDOW / 2));
+    }
+
+    @Test
+    void pauseLongerThanTwoWindowsResetsCounters() {
+        for (int i = 0; i < 15; i++) {
+            limiter.tryAcquire(BOT, USER, rules, 0);
+        }
+        assertFalse(limiter.tryAcquire(BOT, USER, rules, 1L));
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire(BOT, USER, rules, 2 * WINDOW + i));
+        }
+    }
+
+    @Test
+    void messageIsRejectedIfAnyRuleIsExceeded() {
+        Rule[] twoRules = {new Rule(100, WINDOW), new Rule(3, 1_000L)};
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limiter.tryAcquire(BOT, USER, twoRules, i));
+        }
+        assertFalse(limiter.tryAcquire(BOT, USER, twoRules, 10L));
+    }
+
+    @Test
+    void evictIdleRemovesOnlySilentUsers() {
+        limiter.tryAcquire(BOT, USER, rules, 0);
+        limiter.tryAcquire(BOT, USER + 1, rules, 50_000L);
+
+        limiter.evictIdle(100_000L, 60_000L);
+
+        assertEquals(1, limiter.size());
+    }
+}
@@ -0,0 +1,87 @@
+package com.telegramproposalbot.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Кольцо консистентного хеширования: при входе или выходе узла переезжают только его ключи,
+ * ключи распределяются между узлами примерно поровну.
+ */
+class ConsistentHashRingTest {
+
+    private static final int VIRTUAL_NODES = 128;
+    private static final int KEYS = 100_000;
+
+    private static final List<String> NODES = List.of("node-a", "node-b", "node-c", "node-d");
+
+    @Test
+    void joiningNodeTakesOnlyItsShareOfKeys() {
+        ConsistentHashRing before = new ConsistentHashRing(NODES, VIRTUAL_NODES);
+        ConsistentHashRing after = new ConsistentHashRing(withNode("node-e"), VIRTUAL_NODES);
+
+        int moved = 0;
+        for (long key = 1; key <= KEYS; key++) {
+            String owner = after.ownerOf(key);
+            if (!owner.equals(before.ownerOf(key))) {
+                // Ключи переезжают только на новый узел, а не между старыми
+                assertEquals("node-e", owner);
+                moved++;
+            }
+        }
+        // Новому узлу достается около 1/5 ключей
+        assertTrue(moved > KEYS * 0.12 && moved < KEYS * 0.28, "переехало " + moved + " ключей");
+    }
+
+    @Test
+    void leavingNodeReleasesOnlyItsKeys() {
+        ConsistentHashRing before = new ConsistentHashRing(NODES, VIRTUAL_NODES);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("node-a", "node-c", "node-d"), VIRTUAL_NODES);
+
+        for (long key = 1; key <= KEYS; key++) {
+            String owner = before.ownerOf(key);
+            if (!owner.equals("node-b")) {
+                assertEquals(owner, after.ownerOf(key));
+            }
+        }
+    }
+
+    @Test
+    void keysAreSpreadEvenly() {
+        ConsistentHashRing ring = new ConsistentHashRing(NODES, VIRTUAL_NODES);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (long key = 1; key <= KEYS; key++) {
+            counts.merge(ring.ownerOf(key), 1, Integer::sum);
+        }
+        assertEquals(NODES.size(), counts.size());
+        counts.forEach((node, count) ->
+                assertTrue(count > KEYS * 0.15 && count < KEYS * 0.35, node + " владеет " + count + " ключами"));
+    }
+
+    @Test
+    void ownersDoNotDependOnNodeOrder() {
+        ConsistentHashRing ring = new ConsistentHashRing(NODES, VIRTUAL_NODES);
+        ConsistentHashRing reversed = new ConsistentHashRing(List.of("node-d", "node-c", "node-b", "node-a"), VIRTUAL_NODES);
+
+        for (long key = 1; key <= 1_000; key++) {
+            assertEquals(ring.ownerOf(key), reversed.ownerOf(key));
+        }
+    }
+
+    @Test
+    void emptyRingHasNoOwner() {
+        assertNull(new ConsistentHashRing(List.of(), VIRTUAL_NODES).ownerOf(1L));
+    }
+
+    private static List<String> withNode(String node) {
+        return Stream.concat(NODES.stream(), Stream.of(node)).toList();
+    }
+}
@@ -0,0 +1,147 @@
+package com.telegramproposalbot.telegram.bot;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.telegramproposalbot.entity.Proposal;
+import com.telegramproposalbot.entity.ProposalMedia;
+import com.telegramproposalbot.telegram.engine.TelegramApiClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.methods.PartialBotApiMethod;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Публикация медиа на заглушке Bot API: каждый запрос - небольшой JSON со ссылкой на file_id,
+ * файлы не запрашиваются и не загружаются, подпись публикации укладывается в лимит Telegram.
+ */
+class PublicationBuilderTest {
+
+    private static final String TOKEN = "123:test";
+    private static final String CHANNEL = "-1001";
+    private static final String FOOTER = "— Подписывайтесь на канал";
+
+    // Запрос с file_id и подписью в лимите заведомо меньше этого размера
+    private static final int MAX_REQUEST_BYTES = 2048;
+
+    private final List<Request> requests = new CopyOnWriteArrayList<>();
+
+    private HttpServer server;
+    private TelegramApiClient apiClient;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        apiClient = new TelegramApiClient("http://127.0.0.1:" + server.getAddress().getPort(), 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        apiClient.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    void mediaIsPublishedByFileIdWithoutTransfer() throws Exception {
+        String longCaption = "очень длинная подпись ".repeat(100);
+
+        List<PartialBotApiMethod<?>> methods = new ArrayList<>();
+        methods.add(PublicationBuilder.build(proposal(Proposal.TYPE_PHOTO, "photo-id", longCaption),
+                List.of(), CHANNEL, FOOTER, false));
+        methods.add(PublicationBuilder.build(proposal(Proposal.TYPE_VIDEO, "video-id", "видео"),
+                List.of(), CHANNEL, FOOTER, true));
+        methods.add(PublicationBuilder.build(proposal(Proposal.TYPE_DOCUMENT, "document-id", null),
+                List.of(), CHANNEL, FOOTER, false));
+        methods.add(PublicationBuilder.build(proposal(Proposal.TYPE_ALBUM, "album-1", "альбом"),
+                List.of(new ProposalMedia(0, ProposalMedia.TYPE_PHOTO, "album-1", "u1"),
+                        new ProposalMedia(1, ProposalMedia.TYPE_VIDEO, "album-2", "u2")),
+                CHANNEL, FOOTER, false));
+
+        for (PartialBotApiMethod<?> method : methods) {
+            apiClient.executeAsync(TOKEN, method).get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(4, requests.size());
+        for (Request request : requests) {
+            // Никаких getFile, скачивания файлов и multipart-загрузок
+            assertTrue(request.contentType().startsWith("application/json"), request.path());
+            assertFalse(request.path().contains("getfile") || request.path().contains("/file/"), request.path());
+            assertTrue(request.body().length() < MAX_REQUEST_BYTES, request.path() + ": " + request.body().length());
+        }
+
+        assertTrue(requests.get(0).path().endsWith("/sendphoto"));
+        assertTrue(requests.get(0).body().contains("\"photo\":\"photo-id\""));
+        assertTrue(requests.get(0).body().contains(FOOTER));
+        assertTrue(requests.get(1).body().contains("\"video\":\"video-id\""));
+        assertTrue(requests.get(1).body().contains("\"disable_notification\":true"));
+        assertTrue(requests.get(2).body().contains("\"document\":\"document-id\""));
+        assertTrue(requests.get(3).path().endsWith("/sendmediagroup"));
+        assertTrue(requests.get(3).body().contains("\"media\":\"album-1\""));
+        assertTrue(requests.get(3).body().contains("\"media\":\"album-2\""));
+    }
+
+    @Test
+    void footerIsMergedWithinLimit() {
+        assertEquals("текст\n\n" + FOOTER, PublicationBuilder.withFooter("текст", FOOTER, 1024));
+        assertEquals(FOOTER, PublicationBuilder.withFooter(null, FOOTER, 1024));
+        assertEquals("текст", PublicationBuilder.withFooter("текст", "", 1024));
+
+        // Сокращается текст автора, подпись публикации сохраняется
+        String merged = PublicationBuilder.withFooter("а".repeat(2000), FOOTER, 1024);
+        assertEquals(1024, merged.length());
+        assertTrue(merged.endsWith("…\n\n" + FOOTER));
+
+        // Подпись длиннее лимита отбрасывается, текст автора остается
+        assertEquals("текст", PublicationBuilder.withFooter("текст", "п".repeat(2000), 1024));
+
+        // Суррогатная пара на границе не разрывается
+        String emoji = PublicationBuilder.withFooter("а".repeat(9) + "😀😀", null, 11);
+        assertEquals("а".repeat(9) + "…", emoji);
+    }
+
+    private static Proposal proposal(String type, String fileId, String text) {
+        Proposal proposal = new Proposal(1L, 42L, 42L, 7, type);
+        proposal.setFileId(fileId);
+        proposal.setText(text);
+        return proposal;
+    }
+
+    /**
+     * Заглушка Bot API: запоминает запрос и возвращает отправленное сообщение
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath().toLowerCase();
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        requests.add(new Request(path, contentType != null ? contentType : "", body));
+
+        String message = "{\"message_id\":" + requests.size() + ",\"date\":0,\"chat\":{\"id\":" + CHANNEL +
+                ",\"type\":\"channel\"}}";
+        String response = "{\"ok\":true,\"result\":" +
+                (path.endsWith("/sendmediagroup") ? "[" + message + "," + message + "]" : message) + "}";
+
+        byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+        try (OutputStream out = exchange.getResponseBody()) {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private record Request(String path, String contentType, String body) {
+    }
+}
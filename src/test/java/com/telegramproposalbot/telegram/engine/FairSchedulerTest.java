@@ -0,0 +1,153 @@
+package com.telegramproposalbot.telegram.engine;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Распределение потоков между арендаторами: арендатор с большой очередью не занимает все потоки,
+ * доли потоков пропорциональны весам, а стоимость задачи учитывается по факту выполнения.
+ */
+class FairSchedulerTest {
+
+    private static final int QUANTUM = 16;
+
+    private final ExecutorService workers = Executors.newCachedThreadPool();
+    private FairScheduler<String> scheduler;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        scheduler.close();
+        workers.shutdown();
+        assertTrue(workers.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void lightTenantStartsWhileFlooderHasBacklog() throws Exception {
+        int threads = 4;
+        int floodTasks = 50;
+        scheduler = new FairScheduler<>(QUANTUM, QUANTUM, key -> 1);
+
+        // Задачи нагруженного арендатора не завершатся, пока не запустится задача легкого
+        CountDownLatch lightStarted = new CountDownLatch(1);
+        AtomicInteger floodStarted = new AtomicInteger();
+        for (int i = 0; i < floodTasks; i++) {
+            scheduler.submit("flood", () -> {
+                floodStarted.incrementAndGet();
+                await(lightStarted);
+                return QUANTUM;
+            });
+        }
+        AtomicInteger floodStartedBeforeLight = new AtomicInteger(-1);
+        scheduler.submit("light", () -> {
+            floodStartedBeforeLight.set(floodStarted.get());
+            lightStarted.countDown();
+            return 1;
+        });
+
+        startWorkers(threads);
+
+        assertTrue(lightStarted.await(5, TimeUnit.SECONDS), "задача легкого арендатора не запустилась");
+        // Нагруженный арендатор получил не все потоки, и его очередь еще не разобрана
+        assertTrue(floodStartedBeforeLight.get() < threads,
+                "до легкого арендатора запущено " + floodStartedBeforeLight.get() + " задач");
+        assertTrue(floodStartedBeforeLight.get() < floodTasks);
+    }
+
+    @Test
+    void idleWorkerPicksUpNextTaskOfBusyTenant() throws Exception {
+        scheduler = new FairScheduler<>(QUANTUM, QUANTUM, key -> 1);
+        startWorkers(2);
+        // Оба потока успевают уснуть в ожидании задач
+        Thread.sleep(100);
+
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch secondStarted = new CountDownLatch(1);
+        scheduler.submit("tenant", () -> {
+            await(release);
+            return 1;
+        });
+        scheduler.submit("tenant", () -> {
+            secondStarted.countDown();
+            return 1;
+        });
+
+        assertTrue(secondStarted.await(1, TimeUnit.SECONDS), "вторая задача ждет первую при свободном потоке");
+        release.countDown();
+    }
+
+    @Test
+    void sharesAreProportionalToWeights() throws Exception {
+        scheduler = new FairScheduler<>(QUANTUM, QUANTUM, key -> key.equals("heavy") ? 3 : 1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(80);
+        for (int i = 0; i < 40; i++) {
+            for (String tenant : List.of("heavy", "light")) {
+                scheduler.submit(tenant, () -> {
+                    order.add(tenant);
+                    done.countDown();
+                    return QUANTUM;
+                });
+            }
+        }
+
+        startWorkers(1);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        // Пока у обоих есть задачи, на каждую задачу легкого приходится три задачи тяжелого
+        List<String> contended = order.subList(0, 40);
+        assertEquals(30, Collections.frequency(contended, "heavy"));
+        assertEquals(10, Collections.frequency(contended, "light"));
+    }
+
+    @Test
+    void cheapTasksAreChargedByActualCost() throws Exception {
+        scheduler = new FairScheduler<>(QUANTUM, QUANTUM, key -> 1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        Map<String, Integer> costs = Map.of("full", QUANTUM, "cheap", 1);
+        CountDownLatch done = new CountDownLatch(2 * 40);
+        for (int i = 0; i < 40; i++) {
+            for (String tenant : List.of("full", "cheap")) {
+                scheduler.submit(tenant, () -> {
+                    order.add(tenant);
+                    done.countDown();
+                    return costs.get(tenant);
+                });
+            }
+        }
+
+        startWorkers(1);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        // За обход полная задача стоит весь кредит, а дешевых помещается QUANTUM
+        List<String> firstRound = order.subList(0, QUANTUM + 1);
+        assertEquals(1, Collections.frequency(firstRound, "full"));
+        assertEquals(QUANTUM, Collections.frequency(firstRound, "cheap"));
+    }
+
+    private void startWorkers(int threads) {
+        for (int i = 0; i < threads; i++) {
+            workers.execute(scheduler::runWorker);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.telegramproposalbot.telegram.engine;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.telegramproposalbot.cluster.ClusterMembership;
+import com.telegramproposalbot.entity.Bot;
+import com.telegramproposalbot.repository.BotRepository;
+import com.telegramproposalbot.repository.BotSettingsRepository;
+import com.telegramproposalbot.service.BlockedUserService;
+import com.telegramproposalbot.service.BotAdminService;
+import com.telegramproposalbot.service.BotService;
+import com.telegramproposalbot.service.BotSettingsService;
+import com.telegramproposalbot.service.ChannelService;
+import com.telegramproposalbot.service.DuplicateDetectionService;
+import com.telegramproposalbot.service.FloodControlService;
+import com.telegramproposalbot.service.MessageLinkService;
+import com.telegramproposalbot.service.OutboxService;
+import com.telegramproposalbot.service.ProposalService;
+import com.telegramproposalbot.service.ScheduledPostService;
+import com.telegramproposalbot.service.SubscriptionService;
+import com.telegramproposalbot.telegram.bot.ProposalBot;
+import com.telegramproposalbot.telegram.runtime.BotContext;
+import com.telegramproposalbot.telegram.runtime.BotRuntimeRegistry;
+import com.telegramproposalbot.telegram.runtime.ControlMessageUpdater;
+import com.telegramproposalbot.telegram.runtime.ProposalBotFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Многократный перезапуск бота через BotService на заглушке Bot API:
+ * остановка закрывает опрос, дожидается обработки обновлений и отправки ответов,
+ * а число потоков приложения не растет с числом перезапусков.
+ * Движок, диспетчер и очереди отправки настоящие, репозитории и сервисы с БД заменены заглушками.
+ */
+class LongPollingEngineLifecycleTest {
+
+    private static final long BOT_ID = 1L;
+    private static final String TOKEN = "123:test";
+    private static final int WARMUP_CYCLES = 20;
+    private static final int CYCLES = 100;
+
+    private final AtomicInteger updateIds = new AtomicInteger();
+    private final AtomicInteger sentMessages = new AtomicInteger();
+    private final AtomicInteger handled = new AtomicInteger();
+    // Экземпляр бота, созданный последним запуском
+    private final AtomicReference<ProposalBot> current = new AtomicReference<>();
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private TelegramApiClient apiClient;
+    private UpdateDispatcher dispatcher;
+    private OutboundSender sender;
+    private LongPollingEngine engine;
+    private MediaGroupCollector mediaGroupCollector;
+    private ControlMessageUpdater controlMessageUpdater;
+    private BotRuntimeRegistry runtimeRegistry;
+    private BotService botService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        serverExecutor = Executors.newFixedThreadPool(4);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(serverExecutor);
+        server.start();
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        apiClient = new TelegramApiClient("http://127.0.0.1:" + server.getAddress().getPort(), 2);
+        dispatcher = new UpdateDispatcher(2, 100, meterRegistry);
+        sender = new OutboundSender(apiClient, meterRegistry, 1000, 1000, 1000, 1000, 10000);
+        engine = new LongPollingEngine(apiClient, dispatcher, 50, 100);
+        mediaGroupCollector = new MediaGroupCollector(dispatcher, 1000, 1);
+        runtimeRegistry = new BotRuntimeRegistry();
+        ProposalService proposalService = mock(ProposalService.class);
+        MessageLinkService messageLinkService = mock(MessageLinkService.class);
+        controlMessageUpdater = new ControlMessageUpdater(runtimeRegistry, proposalService, messageLinkService,
+                sender, 300);
+
+        Bot bot = new Bot();
+        bot.setId(BOT_ID);
+        bot.setToken(TOKEN);
+        bot.setName("test_bot");
+        BotRepository botRepository = mock(BotRepository.class);
+        when(botRepository.findById(BOT_ID)).thenReturn(Optional.of(bot));
+        ClusterMembership clusterMembership = mock(ClusterMembership.class);
+        when(clusterMembership.isLocal(anyLong())).thenReturn(true);
+        ProposalBotFactory proposalBotFactory = mock(ProposalBotFactory.class);
+        when(proposalBotFactory.create(any())).thenAnswer(invocation -> createBot(invocation.getArgument(0)));
+
+        botService = new BotService(botRepository, mock(BotSettingsRepository.class), mock(BotSettingsService.class),
+                mock(BotAdminService.class), engine, mock(WebhookRegistrar.class), dispatcher, mediaGroupCollector,
+                controlMessageUpdater, sender, mock(SubscriptionService.class), mock(ChannelService.class),
+                mock(BlockedUserService.class), proposalService, messageLinkService, mock(ScheduledPostService.class),
+                mock(OutboxService.class), mock(FloodControlService.class), mock(DuplicateDetectionService.class),
+                proposalBotFactory, runtimeRegistry, clusterMembership, mock(ApplicationEventPublisher.class),
+                mock(PlatformTransactionManager.class));
+        // Значения @Value по умолчанию
+        ReflectionTestUtils.setField(botService, "ingestionMode", "polling");
+        ReflectionTestUtils.setField(botService, "drainTimeoutMillis", 5000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        botService.stopBot(BOT_ID);
+        controlMessageUpdater.shutdown();
+        mediaGroupCollector.shutdown();
+        engine.shutdown();
+        sender.shutdown();
+        dispatcher.shutdown();
+        apiClient.shutdown();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void threadCountStaysFlatOverRestarts() throws Exception {
+        for (int i = 0; i < WARMUP_CYCLES; i++) {
+            restart();
+        }
+        int baseline = Thread.activeCount();
+
+        for (int i = 0; i < CYCLES; i++) {
+            restart();
+        }
+
+        ProposalBot last = current.get();
+        botService.stopBot(BOT_ID);
+        assertFalse(runtimeRegistry.contains(BOT_ID));
+        assertEquals(0, engine.getActiveCount());
+        assertFalse(dispatcher.hasPending(last));
+        assertEquals(0, sender.getPendingCount(TOKEN));
+        // Каждое обновление обработано, и каждый ответ отправлен
+        assertEquals(handled.get(), sentMessages.get());
+        // Пулы фиксированного размера: допускаем лишь добор потоков, не созданных при прогреве
+        assertTrue(Thread.activeCount() <= baseline + 4,
+                "Потоков до перезапусков: " + baseline + ", после: " + Thread.activeCount());
+    }
+
+    /**
+     * Один цикл перезапуска: BotService останавливает прежний экземпляр бота и запускает новый,
+     * который получает обновление
+     */
+    private void restart() throws Exception {
+        ProposalBot previous = current.get();
+        int handledBefore = handled.get();
+
+        botService.restartBot(BOT_ID);
+
+        ProposalBot started = current.get();
+        assertNotSame(previous, started);
+        if (previous != null) {
+            // restartBot возвращается, когда прежний экземпляр остановлен и его очереди разобраны
+            assertFalse(dispatcher.hasPending(previous));
+        }
+        // Опрос токена ведет только новый экземпляр
+        assertEquals(1, engine.getActiveCount());
+        assertTrue(engine.isPolling(started));
+        assertTrue(awaitUntil(() -> handled.get() > handledBefore), "Бот не получил обновления");
+    }
+
+    private static boolean awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    /**
+     * Заглушка Bot API: getUpdates отдает одно сообщение после короткой задержки
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath().toLowerCase();
+        String body;
+        if (path.endsWith("/getupdates")) {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            body = "{\"ok\":true,\"result\":[{\"update_id\":" + updateIds.incrementAndGet() +
+                    ",\"message\":{\"message_id\":1,\"date\":0,\"text\":\"hi\"," +
+                    "\"chat\":{\"id\":42,\"type\":\"private\"}}}]}";
+        } else if (path.endsWith("/sendmessage")) {
+            sentMessages.incrementAndGet();
+            body = "{\"ok\":true,\"result\":{\"message_id\":2,\"date\":0,\"chat\":{\"id\":42,\"type\":\"private\"}}}";
+        } else {
+            body = "{\"ok\":true,\"result\":true}";
+        }
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        try (OutputStream out = exchange.getResponseBody()) {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            out.write(bytes);
+        } catch (IOException e) {
+            // Клиент прервал запрос при остановке опроса
+        }
+    }
+
+    /**
+     * Экземпляр бота, который отвечает на каждое обновление, как это делает ProposalBot
+     */
+    private ProposalBot createBot(Bot bot) {
+        BotContext context = new BotContext(bot);
+        ProposalBot proposalBot = mock(ProposalBot.class);
+        when(proposalBot.getContext()).thenReturn(context);
+        when(proposalBot.getBotToken()).thenReturn(TOKEN);
+        when(proposalBot.getBotUsername()).thenReturn(bot.getName());
+        when(proposalBot.getTenantId()).thenReturn(bot.getId().toString());
+        when(proposalBot.getTenantWeight()).thenReturn(1);
+        doAnswer(invocation -> {
+            Update update = invocation.getArgument(0);
+            sender.send(TOKEN, new SendMessage(update.getMessage().getChatId().toString(), "ok"));
+            handled.incrementAndGet();
+            return null;
+        }).when(proposalBot).onUpdateReceived(any());
+        current.set(proposalBot);
+        return proposalBot;
+    }
+}
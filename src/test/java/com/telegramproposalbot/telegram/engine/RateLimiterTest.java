@@ -0,0 +1,78 @@
+package com.telegramproposalbot.telegram.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * GCRA: пачка из burst запросов проходит сразу, дальше запросы разносятся на интервал,
+ * после простоя пачка снова доступна.
+ */
+class RateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void burstPassesImmediatelyThenRequestsAreSpaced() {
+        RateLimiter limiter = new RateLimiter(1, SECOND, 3);
+        long start = System.nanoTime();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(start, limiter.reserve(start));
+        }
+        assertEquals(start + SECOND, limiter.reserve(start));
+        assertEquals(start + 2 * SECOND, limiter.reserve(start));
+    }
+
+    @Test
+    void intervalIsPeriodDividedByPermits() {
+        long minute = TimeUnit.MINUTES.toNanos(1);
+        RateLimiter limiter = new RateLimiter(20, minute, 1);
+        long start = System.nanoTime();
+
+        assertEquals(start, limiter.reserve(start));
+        assertEquals(start + minute / 20, limiter.reserve(start));
+        assertEquals(start + 2 * minute / 20, limiter.reserve(start));
+    }
+
+    @Test
+    void burstIsRestoredAfterIdle() {
+        RateLimiter limiter = new RateLimiter(1, SECOND, 3);
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            limiter.reserve(start);
+        }
+
+        long later = start + 10 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            assertEquals(later, limiter.reserve(later));
+        }
+        assertEquals(later + SECOND, limiter.reserve(later));
+    }
+
+    @Test
+    void reservationIsNotEarlierThanRequested() {
+        RateLimiter limiter = new RateLimiter(1, SECOND, 1);
+        long start = System.nanoTime();
+
+        long notBefore = start + 5 * SECOND;
+        assertEquals(notBefore, limiter.reserve(notBefore));
+        // Следующий запрос считается от зарезервированного момента, а не от текущего
+        assertEquals(notBefore + SECOND, limiter.reserve(start));
+    }
+
+    @Test
+    void isIdleOnceAllReservationsHaveElapsed() {
+        RateLimiter limiter = new RateLimiter(1, SECOND, 3);
+        long start = System.nanoTime();
+        limiter.reserve(start);
+        limiter.reserve(start);
+
+        assertFalse(limiter.isIdle(start + SECOND));
+        assertTrue(limiter.isIdle(start + 2 * SECOND));
+    }
+}
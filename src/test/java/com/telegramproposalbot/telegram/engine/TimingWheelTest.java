@@ -0,0 +1,87 @@
+package com.telegramproposalbot.telegram.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Колесо таймеров: задача срабатывает не раньше срока и не позже чем через тик,
+ * в том числе после переноса с верхних уровней; отмена и перенос задачи.
+ */
+class TimingWheelTest {
+
+    private static final long TICK = 10L;
+    private static final int WHEEL_SIZE = 8;
+    private static final long START = 1_000_003L;
+
+    @Test
+    void neverFiresEarlyAcrossLevelCascades() {
+        TimingWheel<Long> wheel = new TimingWheel<>(TICK, WHEEL_SIZE, START);
+        Random random = new Random(42);
+        // Сроки до 20 секунд задействуют четыре уровня: 80 мс, 640 мс, 5.12 с и 40.96 с
+        int tasks = 2_000;
+        for (int id = 0; id < tasks; id++) {
+            long deadline = START + random.nextInt(20_000);
+            wheel.schedule(id, deadline, deadline);
+        }
+
+        int fired = 0;
+        for (long now = START; now <= START + 20_000 + TICK; now++) {
+            for (long deadline : wheel.advance(now)) {
+                assertTrue(now >= deadline, "задача на " + deadline + " сработала в " + now);
+                assertTrue(now - deadline < TICK, "задача на " + deadline + " сработала в " + now);
+                fired++;
+            }
+        }
+        assertEquals(tasks, fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void firesOnTimeWhenTimeJumpsForward() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, WHEEL_SIZE, START);
+        wheel.schedule(1, START + 3_000, "far");
+
+        assertTrue(wheel.advance(START + 2_999).isEmpty());
+        // Срок округляется вверх до границы тика
+        assertEquals(List.of("far"), wheel.advance(START + 3_000 + TICK));
+    }
+
+    @Test
+    void pastDeadlineFiresOnNextAdvance() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, WHEEL_SIZE, START);
+        wheel.advance(START + 500);
+        wheel.schedule(1, START + 100, "late");
+
+        assertEquals(List.of("late"), wheel.advance(START + 500));
+        assertFalse(wheel.contains(1));
+    }
+
+    @Test
+    void cancelledTaskDoesNotFire() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, WHEEL_SIZE, START);
+        wheel.schedule(1, START + 1_000, "cancelled");
+        wheel.schedule(2, START + 1_000, "kept");
+
+        assertTrue(wheel.cancel(1));
+        assertFalse(wheel.cancel(1));
+        assertEquals(List.of("kept"), wheel.advance(START + 1_000 + TICK));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void rescheduleMovesTask() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, WHEEL_SIZE, START);
+        wheel.schedule(1, START + 1_000, "first");
+        wheel.schedule(1, START + 2_000, "second");
+
+        assertEquals(1, wheel.size());
+        assertTrue(wheel.advance(START + 1_500).isEmpty());
+        assertEquals(List.of("second"), wheel.advance(START + 2_000 + TICK));
+    }
+}
@@ -0,0 +1,188 @@
+package com.telegramproposalbot.telegram.engine;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.generics.BotOptions;
+import org.telegram.telegrambots.meta.generics.LongPollingBot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Разделы (бот, чат): обновления одного чата обрабатываются по порядку и по одному,
+ * медленный чат не задерживает остальные, а задачи чата выполняются после уже принятых обновлений.
+ */
+class UpdateDispatcherTest {
+
+    private UpdateDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void updatesOfOneChatAreHandledInOrderOneAtATime() throws Exception {
+        dispatcher = new UpdateDispatcher(4, 1000, new SimpleMeterRegistry());
+        int chats = 4;
+        int perChat = 200;
+
+        Map<Long, List<Integer>> handled = new ConcurrentHashMap<>();
+        Map<Long, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(chats * perChat);
+        TestBot bot = new TestBot(update -> {
+            long chatId = update.getMessage().getChatId();
+            AtomicInteger running = inFlight.computeIfAbsent(chatId, id -> new AtomicInteger());
+            maxInFlight.accumulateAndGet(running.incrementAndGet(), Math::max);
+            handled.computeIfAbsent(chatId, id -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(update.getUpdateId());
+            running.decrementAndGet();
+            done.countDown();
+        });
+
+        List<Update> updates = new ArrayList<>();
+        for (int i = 0; i < perChat; i++) {
+            for (long chatId = 1; chatId <= chats; chatId++) {
+                updates.add(update(i, chatId));
+            }
+        }
+        dispatcher.dispatch(bot, updates).get(5, TimeUnit.SECONDS);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, maxInFlight.get());
+        for (long chatId = 1; chatId <= chats; chatId++) {
+            List<Integer> ids = handled.get(chatId);
+            assertEquals(perChat, ids.size());
+            for (int i = 0; i < perChat; i++) {
+                assertEquals(i, ids.get(i));
+            }
+        }
+        assertTrue(waitUntilIdle(bot));
+    }
+
+    @Test
+    void slowChatDoesNotBlockOtherChats() throws Exception {
+        dispatcher = new UpdateDispatcher(2, 100, new SimpleMeterRegistry());
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch fastHandled = new CountDownLatch(1);
+        TestBot bot = new TestBot(update -> {
+            if (update.getMessage().getChatId() == 1L) {
+                await(release);
+            } else {
+                fastHandled.countDown();
+            }
+        });
+
+        dispatcher.dispatch(bot, List.of(update(1, 1L), update(2, 1L), update(3, 2L))).get(5, TimeUnit.SECONDS);
+
+        assertTrue(fastHandled.await(5, TimeUnit.SECONDS), "обновление второго чата ждет медленный чат");
+        release.countDown();
+        assertTrue(waitUntilIdle(bot));
+    }
+
+    @Test
+    void executedTaskRunsAfterAcceptedUpdatesEvenIfQueueIsFull() throws Exception {
+        dispatcher = new UpdateDispatcher(2, 2, new SimpleMeterRegistry());
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        TestBot bot = new TestBot(update -> {
+            if (update.getUpdateId() == 1) {
+                firstStarted.countDown();
+                await(release);
+            }
+            order.add("update" + update.getUpdateId());
+        });
+
+        assertTrue(dispatcher.tryDispatch(bot, update(1, 7L)));
+        assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+        assertTrue(dispatcher.tryDispatch(bot, update(2, 7L)));
+        assertTrue(dispatcher.tryDispatch(bot, update(3, 7L)));
+        // Очередь чата заполнена: обновление отклоняется, а задача принимается
+        assertEquals(false, dispatcher.tryDispatch(bot, update(4, 7L)));
+        dispatcher.execute(bot, 7L, () -> order.add("task"));
+
+        release.countDown();
+        assertTrue(waitUntilIdle(bot));
+        assertEquals(List.of("update1", "update2", "update3", "task"), order);
+    }
+
+    private boolean waitUntilIdle(LongPollingBot bot) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (dispatcher.hasPending(bot)) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private static Update update(int updateId, long chatId) {
+        Chat chat = new Chat(chatId, "private");
+        Message message = new Message();
+        message.setChat(chat);
+        message.setMessageId(updateId);
+
+        Update update = new Update();
+        update.setUpdateId(updateId);
+        update.setMessage(message);
+        return update;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class TestBot implements LongPollingBot {
+
+        private final Consumer<Update> handler;
+
+        TestBot(Consumer<Update> handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void onUpdateReceived(Update update) {
+            handler.accept(update);
+        }
+
+        @Override
+        public BotOptions getOptions() {
+            return null;
+        }
+
+        @Override
+        public void clearWebhook() {
+        }
+
+        @Override
+        public String getBotUsername() {
+            return "test_bot";
+        }
+
+        @Override
+        public String getBotToken() {
+            return "123:test";
+        }
+    }
+}